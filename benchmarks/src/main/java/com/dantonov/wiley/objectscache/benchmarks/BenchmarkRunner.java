@@ -0,0 +1,53 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs benchmarks once per thread count and writes results of each run as JSON, so results
+ * of different versions can be compared.<br>
+ * <ul>System properties:
+ * <li><code>benchmark.threads</code> - comma separated thread counts, default is
+ * {@value #DEFAULT_THREADS}</li>
+ * <li><code>benchmark.results</code> - directory for <code>threads-N.json</code> results,
+ * default is {@value #DEFAULT_RESULTS_DIRECTORY}</li>
+ * </ul>
+ * Arguments are usual JMH options, like a benchmark name pattern or <code>-p objectSize=128
+ * </code>. Thread count and result options are set by the runner.<br>
+ * Forks log by {@value #LOG_CONFIGURATION}: warnings to console only, so the log of the cache
+ * is not written to the working directory.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        Path resultsDirectory = Paths.get(System.getProperty(RESULTS_PROPERTY,
+                DEFAULT_RESULTS_DIRECTORY));
+        Files.createDirectories(resultsDirectory);
+        List<String> jvmArgs = new ArrayList<>(commandLineOptions.getJvmArgsAppend().orElse(new
+                ArrayList<>()));
+        jvmArgs.add("-Dlog4j.configuration=" + LOG_CONFIGURATION);
+        for (String threads : System.getProperty(THREADS_PROPERTY, DEFAULT_THREADS).split(",")) {
+            int threadsCount = Integer.parseInt(threads.trim());
+            Options options = new OptionsBuilder().parent(commandLineOptions).threads
+                    (threadsCount).jvmArgsAppend(jvmArgs.toArray(new String[0])).resultFormat(ResultFormatType.JSON).result(resultsDirectory
+                    .resolve("threads-" + threadsCount + ".json").toString()).build();
+            new Runner(options).run();
+        }
+    }
+
+    private static final String THREADS_PROPERTY = "benchmark.threads";
+    private static final String RESULTS_PROPERTY = "benchmark.results";
+    private static final String DEFAULT_THREADS = "1,4";
+    private static final String DEFAULT_RESULTS_DIRECTORY = "target/benchmark-results";
+    private static final String LOG_CONFIGURATION = "log4j-benchmarks.xml";
+}
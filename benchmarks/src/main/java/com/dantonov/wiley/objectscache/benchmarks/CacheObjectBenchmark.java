@@ -0,0 +1,106 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.impl.ObjectCacheImpl;
+import com.dantonov.wiley.objectscache.impl.ObjectCacheStrategyImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link ObjectCacheImpl#cacheObject(Object)}.<br>
+ * Each thread keeps a window of its latest cached objects and releases the oldest one when it
+ * caches a new one, so the amount of live objects is steady. The window is larger than the
+ * top tier, so objects are moved down by the reallocation run after each call, which is
+ * measured too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheObjectBenchmark {
+
+    /**
+     * Objects cache shared by benchmark threads
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            caches = TieredCaches.create(depth, objectSize, TIER_CAPACITY);
+            objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                    ObjectCacheStrategyImpl()).setCacheLevelModel(caches.getHierarchy()).build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            objectsCache.close();
+            caches.close();
+        }
+
+        @Param({"1", "2", "3"})
+        public int depth;
+
+        @Param({"128", "4096"})
+        public int objectSize;
+
+        private TieredCaches caches;
+        private ObjectCacheImpl objectsCache;
+    }
+
+    /**
+     * Window of objects cached by one thread
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        @Setup(Level.Trial)
+        public void setUp(CacheState cacheState) {
+            payload = new Payload(Thread.currentThread().getId(), cacheState.objectSize);
+            window = new CachedObject[WINDOW_SIZE];
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown(CacheState cacheState) {
+            for (CachedObject cachedObject : window) {
+                if (cachedObject != null) {
+                    cacheState.objectsCache.releaseCachedObject(cachedObject);
+                }
+            }
+        }
+
+        private Payload payload;
+        private CachedObject[] window;
+        private int next;
+    }
+
+    @Benchmark
+    public CachedObject cacheObject(CacheState cacheState, ThreadState threadState) throws
+            Exception {
+        CachedObject oldestObject = threadState.window[threadState.next];
+        if (oldestObject != null) {
+            cacheState.objectsCache.releaseCachedObject(oldestObject);
+        }
+        CachedObject cachedObject = cacheState.objectsCache.cacheObject(threadState.payload);
+        threadState.window[threadState.next] = cachedObject;
+        threadState.next = (threadState.next + 1) % WINDOW_SIZE;
+        return cachedObject;
+    }
+
+    private static final int TIER_CAPACITY = 1024;
+    private static final int WINDOW_SIZE = 2048;
+}
@@ -0,0 +1,115 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link FileSystemStorage#store(UUID, byte[])} and
+ * {@link FileSystemStorage#retrieve(UUID)}.<br>
+ * Storage is filled with the given amount of small entries first, so the cost of large
+ * directories and the effect of sharding are visible. Each thread then stores and retrieves
+ * its own keys, store replaces data of an existing key, so the amount of entries is steady.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileSystemStorageBenchmark {
+
+    /**
+     * Storage shared by benchmark threads
+     */
+    @State(Scope.Benchmark)
+    public static class StorageState {
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            directory = Files.createTempDirectory(TieredCaches.DIRECTORY_PREFIX);
+            storage = new FileSystemStorage.Builder().setBaseDirectory(directory.toString())
+                    .setShardingLevels(shardingLevels).build();
+            byte[] smallData = new byte[FILLER_SIZE];
+            for (int i = 0; i < entries; i++) {
+                storage.store(UUID.randomUUID(), smallData);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            storage.close();
+            TieredCaches.deleteDirectory(directory);
+        }
+
+        @Param({"128", "4096", "65536"})
+        public int objectSize;
+
+        @Param({"0", "2"})
+        public int shardingLevels;
+
+        @Param({"1000", "50000"})
+        public int entries;
+
+        private Path directory;
+        private FileSystemStorage storage;
+    }
+
+    /**
+     * Keys of one thread
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        @Setup(Level.Trial)
+        public void setUp(StorageState storageState) throws Exception {
+            data = new byte[storageState.objectSize];
+            new Random(Thread.currentThread().getId()).nextBytes(data);
+            keys = new UUID[KEYS_PER_THREAD];
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                keys[i] = UUID.randomUUID();
+                storageState.storage.store(keys[i], data);
+            }
+        }
+
+        private UUID nextKey() {
+            UUID key = keys[next];
+            next = (next + 1) % KEYS_PER_THREAD;
+            return key;
+        }
+
+        private byte[] data;
+        private UUID[] keys;
+        private int next;
+    }
+
+    @Benchmark
+    public void store(StorageState storageState, ThreadState threadState) throws Exception {
+        storageState.storage.store(threadState.nextKey(), threadState.data);
+    }
+
+    @Benchmark
+    public byte[] retrieve(StorageState storageState, ThreadState threadState) throws
+            Exception {
+        return storageState.storage.retrieve(threadState.nextKey());
+    }
+
+    private static final int FILLER_SIZE = 16;
+    private static final int KEYS_PER_THREAD = 64;
+}
@@ -0,0 +1,103 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.impl.ObjectCacheImpl;
+import com.dantonov.wiley.objectscache.impl.ObjectCacheStrategyImpl;
+import com.dantonov.wiley.objectscache.impl.ObjectInCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link CachedObject#getObject()} hits in each tier.<br>
+ * Hierarchy goes down to the measured tier, so a lookup misses all upper tiers before the hit.
+ * Probe objects are cached first and pushed down to the measured tier by filler objects cached
+ * after them. Objects are not promoted, so probes stay in the tier while they are read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GetObjectBenchmark {
+
+    /**
+     * Objects cache with probes placed in the measured tier
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            caches = TieredCaches.create(tier + 1, objectSize, TIER_CAPACITY);
+            objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                    ObjectCacheStrategyImpl()).setCacheLevelModel(caches.getHierarchy()).build();
+            probes = new ArrayList<>(PROBES_COUNT);
+            for (int i = 0; i < PROBES_COUNT; i++) {
+                probes.add(objectsCache.cacheObject(new Payload(i, objectSize)));
+            }
+            Cache measuredTier = caches.getTier(tier);
+            Payload filler = new Payload(-1, objectSize);
+            int fillers = 0;
+            while (!probes.stream().allMatch(probe -> measuredTier.contains(ObjectInCache.from
+                    (probe.getUuid())))) {
+                if (fillers++ > MAX_FILLERS) {
+                    throw new IllegalStateException(String.format("Probes have not been moved " +
+                            "to tier %s", tier));
+                }
+                objectsCache.cacheObject(filler);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            objectsCache.close();
+            caches.close();
+        }
+
+        @Param({"0", "1", "2"})
+        public int tier;
+
+        @Param({"128", "4096"})
+        public int objectSize;
+
+        private TieredCaches caches;
+        private ObjectCacheImpl objectsCache;
+        private List<CachedObject> probes;
+    }
+
+    /**
+     * Position of one thread in the probes
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private int next;
+    }
+
+    @Benchmark
+    public Object getObject(CacheState cacheState, ThreadState threadState) throws Exception {
+        CachedObject probe = cacheState.probes.get(threadState.next);
+        threadState.next = (threadState.next + 1) % PROBES_COUNT;
+        return probe.getObject();
+    }
+
+    private static final int TIER_CAPACITY = 1024;
+    private static final int PROBES_COUNT = 256;
+    private static final int MAX_FILLERS = TIER_CAPACITY * TieredCaches.MAX_DEPTH * 4;
+}
@@ -0,0 +1,116 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import com.dantonov.wiley.objectscache.CacheHierarchy;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.impl.InMemoryCache;
+import com.dantonov.wiley.objectscache.impl.ObjectCacheImpl;
+import com.dantonov.wiley.objectscache.impl.ObjectCacheStrategyImpl;
+import com.dantonov.wiley.objectscache.impl.SimpleChacheListHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a mix of {@link ObjectCacheImpl#cacheObject(Object)},
+ * {@link CachedObject#getObject()} and {@link ObjectCacheImpl#releaseCachedObject(CachedObject)}
+ * calls on two in-memory tiers.<br>
+ * Each thread works with its own objects, so threads should not block each other and
+ * throughput should grow with threads count up to amount of cores. Compare results of
+ * {@link BenchmarkRunner} runs with different thread counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedWorkloadBenchmark {
+
+    /**
+     * Objects cache shared by benchmark threads
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            CacheHierarchy cacheHierarchy = new SimpleChacheListHierarchy.Builder()
+                    .addCache(new InMemoryCache.Builder().setMaxCacheSize(1000).setDangerLoad(80)
+                            .build())
+                    .addCache(new InMemoryCache.Builder().setMaxCacheSize(1_000_000).build())
+                    .build();
+            objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                    ObjectCacheStrategyImpl()).setCacheLevelModel(cacheHierarchy).build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            objectsCache.close();
+        }
+
+        private ObjectCacheImpl objectsCache;
+    }
+
+    /**
+     * Live objects of one thread
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            liveObjects = new CachedObject[LIVE_OBJECTS_PER_THREAD];
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown(CacheState cacheState) {
+            for (CachedObject cachedObject : liveObjects) {
+                if (cachedObject != null) {
+                    cacheState.objectsCache.releaseCachedObject(cachedObject);
+                }
+            }
+        }
+
+        private CachedObject[] liveObjects;
+        private int next;
+        private int count;
+    }
+
+    /**
+     * Cache one object, read {@value #READS_PER_WRITE} random live objects and release the
+     * oldest one
+     */
+    @Benchmark
+    public Object cacheReadRelease(CacheState cacheState, ThreadState threadState) throws
+            Exception {
+        CachedObject oldestObject = threadState.liveObjects[threadState.next];
+        if (oldestObject != null) {
+            cacheState.objectsCache.releaseCachedObject(oldestObject);
+        } else {
+            threadState.count++;
+        }
+        threadState.liveObjects[threadState.next] = cacheState.objectsCache.cacheObject
+                (threadState.next);
+        threadState.next = (threadState.next + 1) % LIVE_OBJECTS_PER_THREAD;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Object object = null;
+        for (int read = 0; read < READS_PER_WRITE; read++) {
+            object = threadState.liveObjects[random.nextInt(threadState.count)].getObject();
+        }
+        return object;
+    }
+
+    private static final int READS_PER_WRITE = 4;
+    private static final int LIVE_OBJECTS_PER_THREAD = 500;
+}
@@ -0,0 +1,41 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Serializable object of configurable size cached by benchmarks
+ */
+public class Payload implements Serializable {
+
+    /**
+     * Constructor for {@link Payload}. Data is random, so compressing codecs do not shrink it
+     *
+     * @param id   identifier of the payload
+     * @param size size of data in bytes
+     */
+    public Payload(long id, int size) {
+        this.id = id;
+        this.data = new byte[size];
+        new Random(id).nextBytes(data);
+    }
+
+    /**
+     * @return identifier of the payload
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return size of data in bytes
+     */
+    public int getSize() {
+        return data.length;
+    }
+
+    private final long id;
+    private final byte[] data;
+
+    private static final long serialVersionUID = 1L;
+}
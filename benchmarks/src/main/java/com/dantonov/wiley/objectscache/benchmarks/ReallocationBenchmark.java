@@ -0,0 +1,145 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CacheHierarchy;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ObjectCacheStrategy;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.impl.ObjectCacheImpl;
+import com.dantonov.wiley.objectscache.impl.ObjectCacheStrategyImpl;
+import com.dantonov.wiley.objectscache.impl.ObjectInCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of demotion by {@link ObjectCacheStrategyImpl#reallocateObjects(CacheHierarchy)}.
+ * <br>
+ * Before each invocation a batch of three times the tier capacity objects is put to the top
+ * tier. The invocation moves the excess down, through all tiers of the hierarchy as each of
+ * them overflows. The batch is released after the invocation.<br>
+ * Each thread works with its own hierarchy, because the batch is prepared per invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReallocationBenchmark {
+
+    /**
+     * Hierarchy of one thread with objects waiting for reallocation
+     */
+    @State(Scope.Thread)
+    public static class HierarchyState {
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            caches = TieredCaches.create(depth, objectSize, TIER_CAPACITY);
+            strategy = new ObjectCacheStrategyImpl();
+            objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                    DeferredReallocationStrategy(strategy)).setCacheLevelModel(caches
+                    .getHierarchy()).build();
+            payload = new Payload(Thread.currentThread().getId(), objectSize);
+        }
+
+        @Setup(Level.Invocation)
+        public void cacheBatch() throws AllocationException {
+            List<Payload> payloads = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                payloads.add(payload);
+            }
+            // the whole batch is put to the top tier, reallocation is deferred
+            batch = objectsCache.cacheAll(payloads);
+        }
+
+        @TearDown(Level.Invocation)
+        public void releaseBatch() {
+            objectsCache.releaseAll(batch);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            objectsCache.close();
+            caches.close();
+        }
+
+        @Param({"2", "3"})
+        public int depth;
+
+        @Param({"128", "4096"})
+        public int objectSize;
+
+        private TieredCaches caches;
+        private ObjectCacheStrategyImpl strategy;
+        private ObjectCacheImpl objectsCache;
+        private Payload payload;
+        private List<CachedObject> batch;
+    }
+
+    @Benchmark
+    public void reallocateObjects(HierarchyState state) {
+        state.strategy.reallocateObjects(state.caches.getHierarchy());
+    }
+
+    // runs reallocation only when the benchmark asks for it
+    private static class DeferredReallocationStrategy implements ObjectCacheStrategy {
+
+        DeferredReallocationStrategy(ObjectCacheStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        @Override
+        public void allocateObject(ObjectInCache objectInCache, CacheHierarchy cacheHierarchy)
+                throws AllocationException {
+            strategy.allocateObject(objectInCache, cacheHierarchy);
+        }
+
+        @Override
+        public void allocateObjects(List<ObjectInCache> objectsInCache, CacheHierarchy
+                cacheHierarchy) throws AllocationException {
+            strategy.allocateObjects(objectsInCache, cacheHierarchy);
+        }
+
+        @Override
+        public void releaseObject(ObjectInCache objectInCache, CacheHierarchy cacheHierarchy) {
+            strategy.releaseObject(objectInCache, cacheHierarchy);
+        }
+
+        @Override
+        public void releaseObjects(List<ObjectInCache> objectsInCache, CacheHierarchy
+                cacheHierarchy) {
+            strategy.releaseObjects(objectsInCache, cacheHierarchy);
+        }
+
+        @Override
+        public void onHit(ObjectInCache objectInCache, Cache cache) {
+            strategy.onHit(objectInCache, cache);
+        }
+
+        @Override
+        public void reallocateObjects(CacheHierarchy cacheHierarchy) {
+            // reallocation is measured by the benchmark
+        }
+
+        private final ObjectCacheStrategy strategy;
+    }
+
+    private static final int TIER_CAPACITY = 256;
+    // overflows the off-heap tier too, if it is not the last one
+    private static final int BATCH_SIZE = TIER_CAPACITY * 3;
+}
@@ -0,0 +1,53 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import com.dantonov.wiley.objectscache.impl.storage.SerializationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link SerializationUtil} round trips: serialization to a new array and to the
+ * reused buffer of the thread, each followed by deserialization
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = new Payload(Thread.currentThread().getId(), objectSize);
+    }
+
+    @Benchmark
+    public Object roundTrip() throws Exception {
+        return SerializationUtil.deserializeObject(SerializationUtil.serializeObject(payload));
+    }
+
+    @Benchmark
+    public Object bufferRoundTrip() throws Exception {
+        ByteBuffer buffer = SerializationUtil.serializeObjectToBuffer(payload);
+        return SerializationUtil.deserializeObject(buffer.array(), buffer.arrayOffset() + buffer
+                .position(), buffer.remaining());
+    }
+
+    @Param({"128", "4096", "65536"})
+    public int objectSize;
+
+    private Payload payload;
+}
@@ -0,0 +1,136 @@
+package com.dantonov.wiley.objectscache.benchmarks;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CacheHierarchy;
+import com.dantonov.wiley.objectscache.impl.InMemoryCache;
+import com.dantonov.wiley.objectscache.impl.OffHeapCache;
+import com.dantonov.wiley.objectscache.impl.SerializableStorageCache;
+import com.dantonov.wiley.objectscache.impl.SimpleChacheListHierarchy;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cache hierarchy of the given depth used by benchmarks.<br>
+ * <ul>Tiers from the top:
+ * <li>{@link InMemoryCache} holding up to the tier capacity objects</li>
+ * <li>{@link OffHeapCache} sized for about the tier capacity objects</li>
+ * <li>{@link SerializableStorageCache} over {@link FileSystemStorage} in a temporary
+ * directory, not limited</li>
+ * </ul>
+ * Directory is deleted on close.
+ */
+class TieredCaches implements AutoCloseable {
+
+    private TieredCaches(CacheHierarchy hierarchy, FileSystemStorage storage,
+                         SerializableStorageCache storageCache, Path directory) {
+        this.hierarchy = hierarchy;
+        this.storage = storage;
+        this.storageCache = storageCache;
+        this.directory = directory;
+    }
+
+    /**
+     * Build caches of the hierarchy
+     *
+     * @param depth        amount of tiers, from 1 to {@link #MAX_DEPTH}
+     * @param objectSize   size of cached {@link Payload} data in bytes
+     * @param tierCapacity amount of objects the in-memory and off-heap tiers hold
+     * @return new {@link TieredCaches}
+     * @throws Exception in case when any cache has not been built
+     */
+    static TieredCaches create(int depth, int objectSize, int tierCapacity) throws Exception {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException(String.format("Depth must be in [1,%s] range. " +
+                    "Provided value is %s", MAX_DEPTH, depth));
+        }
+        SimpleChacheListHierarchy.Builder builder = new SimpleChacheListHierarchy.Builder()
+                .addCache(new InMemoryCache.Builder().setMaxCacheSize(tierCapacity)
+                        .setDangerLoad(100).build());
+        if (depth > 1) {
+            // serialized payload takes its data and a small header, chunks are powers of two
+            long chunkSize = Long.highestOneBit((objectSize + SERIALIZATION_OVERHEAD) * 2L - 1);
+            builder.addCache(new OffHeapCache.Builder().setMaxCacheSize(chunkSize *
+                    tierCapacity).setDangerLoad(100).build());
+        }
+        FileSystemStorage storage = null;
+        SerializableStorageCache storageCache = null;
+        Path directory = null;
+        if (depth > 2) {
+            directory = Files.createTempDirectory(DIRECTORY_PREFIX);
+            storage = new FileSystemStorage.Builder().setBaseDirectory(directory.toString())
+                    .build();
+            storageCache = new SerializableStorageCache.Builder().setSerializableStorage
+                    (storage).build();
+            builder.addCache(storageCache);
+        }
+        return new TieredCaches(builder.build(), storage, storageCache, directory);
+    }
+
+    /**
+     * @return {@link CacheHierarchy} of the caches
+     */
+    CacheHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * @param index index of the tier, 0 is the top one
+     * @return {@link Cache} of the tier
+     */
+    Cache getTier(int index) {
+        return hierarchy.getCacheList().get(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (storageCache != null) {
+            storageCache.close();
+            storage.close();
+        }
+        if (directory != null) {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Delete the directory with all its content
+     *
+     * @param directory {@link Path} of the directory
+     * @throws IOException in case when the directory has not been deleted
+     */
+    static void deleteDirectory(Path directory) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        try {
+            paths.forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final CacheHierarchy hierarchy;
+    // null for hierarchies without the file system tier
+    private final FileSystemStorage storage;
+    private final SerializableStorageCache storageCache;
+    private final Path directory;
+
+    static final int MAX_DEPTH = 3;
+    static final String DIRECTORY_PREFIX = "objects-cache-benchmark";
+    private static final int SERIALIZATION_OVERHEAD = 128;
+}
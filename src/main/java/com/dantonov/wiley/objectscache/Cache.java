@@ -3,7 +3,10 @@ package com.dantonov.wiley.objectscache;
 import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
 import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
 import com.dantonov.wiley.objectscache.impl.ObjectInCache;
+import com.dantonov.wiley.objectscache.impl.metrics.TierMetrics;
+import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -38,6 +41,30 @@ public interface Cache {
      */
     ObjectInCache freeObject(ObjectInCache cachedObject) throws ObjectNotFoundInCache, AllocationInCacheException;
 
+    /**
+     * Method to remove a batch of objects which are not needed anymore, like released or
+     * expired ones, from this {@link Cache}. Objects are not returned, so the cache does not
+     * have to read them. Objects not found in the cache are skipped.<br>
+     * Default implementation removes objects one by one by {@link #freeObject(ObjectInCache)}
+     * and logs objects which have failed to be removed
+     *
+     * @param cachedObjects {@link Collection} of {@link ObjectInCache} references to the cached
+     *                      objects to be removed from this cache
+     */
+    default void removeObjects(Collection<ObjectInCache> cachedObjects) {
+        for (ObjectInCache cachedObject : cachedObjects) {
+            try {
+                freeObject(cachedObject);
+            } catch (ObjectNotFoundInCache e) {
+                // object is not in this cache
+            } catch (AllocationInCacheException e) {
+                // interface can not keep a private logger
+                LoggerFactory.getLogger(getClass()).warn(String.format("Object %s has not been " +
+                        "removed from %s", cachedObject.getUuid(), getCacheName()), e);
+            }
+        }
+    }
+
     /**
      * Method to return object from the {@link Cache}. Object is still stored in the cache.
      *
@@ -59,6 +86,27 @@ public interface Cache {
      */
     Boolean contains(ObjectInCache objectInCache);
 
+    /**
+     * Method to tell if the {@link Cache} waits for I/O, like a file system, to return objects.
+     * Objects of blocking caches are retrieved in parallel by batch operations
+     *
+     * @return <code>true</code> if retrieving objects blocks on I/O
+     */
+    default boolean isBlocking() {
+        return false;
+    }
+
+    /**
+     * Method to get {@link TierMetrics} of this {@link Cache}. Objects cache and strategy
+     * record hits, misses and moved objects to it.<br>
+     * Default is {@link TierMetrics#DISABLED}, which records nothing
+     *
+     * @return {@link TierMetrics} kept by this cache
+     */
+    default TierMetrics getMetrics() {
+        return TierMetrics.DISABLED;
+    }
+
     /**
      * Method to get {@link Cache} name
      *
@@ -3,7 +3,10 @@ package com.dantonov.wiley.objectscache;
 import java.util.List;
 
 /**
- * Models hierarchy of {@link Cache} caches
+ * Models hierarchy of {@link Cache} caches.<br>
+ * Tiers are numbered from 0, the top level cache. Default navigation methods are based on
+ * {@link #getCacheList()}, implementations keeping an index of tiers override them to avoid
+ * copying and scanning the list
  */
 public interface CacheHierarchy {
     /**
@@ -13,4 +16,64 @@ public interface CacheHierarchy {
      * @return {@link List} of {@link Cache} instances
      */
     List<Cache> getCacheList();
+
+    /**
+     * Method to get amount of tiers in the hierarchy
+     *
+     * @return amount of {@link Cache} instances
+     */
+    default int getTierCount() {
+        return getCacheList().size();
+    }
+
+    /**
+     * Method to get {@link Cache} of the tier
+     *
+     * @param index index of the tier, 0 is the top level cache
+     * @return {@link Cache} of the tier
+     * @throws IndexOutOfBoundsException in case when there is no such tier
+     */
+    default Cache getTier(int index) {
+        return getCacheList().get(index);
+    }
+
+    /**
+     * Method to get index of the tier of the {@link Cache}
+     *
+     * @param cache {@link Cache} instance
+     * @return index of the tier, <code>-1</code> if the cache is not in the hierarchy
+     */
+    default int indexOf(Cache cache) {
+        List<Cache> caches = getCacheList();
+        for (int i = 0; i < caches.size(); i++) {
+            if (caches.get(i) == cache) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to get {@link Cache} of the tier below the given one
+     *
+     * @param cache {@link Cache} instance
+     * @return {@link Cache} of the next tier, <code>null</code> if the cache is the last one or
+     * is not in the hierarchy
+     */
+    default Cache getNextCache(Cache cache) {
+        int index = indexOf(cache);
+        return index < 0 || index + 1 >= getTierCount() ? null : getTier(index + 1);
+    }
+
+    /**
+     * Method to get {@link Cache} of the tier above the given one
+     *
+     * @param cache {@link Cache} instance
+     * @return {@link Cache} of the previous tier, <code>null</code> if the cache is the top one
+     * or is not in the hierarchy
+     */
+    default Cache getPreviousCache(Cache cache) {
+        int index = indexOf(cache);
+        return index <= 0 ? null : getTier(index - 1);
+    }
 }
@@ -0,0 +1,104 @@
+package com.dantonov.wiley.objectscache;
+
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines when a cached object expires. Expired object is released from all caches, as if
+ * {@link ObjectsCache#releaseCachedObject(CachedObject)} has been called.<br>
+ * <ul>Object expires when any of configured durations elapses:
+ * <li>expire after write: since the object has been cached</li>
+ * <li>expire after access: since the object has been retrieved last time, or cached</li>
+ * </ul>
+ * Duration equal to 0 is not used. Expiry without durations never expires.
+ */
+public final class Expiry {
+
+    private Expiry(long expireAfterWriteMillis, long expireAfterAccessMillis) {
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+        this.expireAfterAccessMillis = expireAfterAccessMillis;
+    }
+
+    /**
+     * Builder for {@link Expiry}
+     */
+    public static class Builder {
+
+        /**
+         * Configure duration of the object life since it has been cached
+         *
+         * @param duration duration value. 0 means the object does not expire after write
+         * @param unit     {@link TimeUnit} for duration value
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setExpireAfterWrite(long duration, TimeUnit unit) throws
+                UnacceptableCacheBuildParameter {
+            this.expireAfterWriteMillis = toMillis(duration, unit);
+            return this;
+        }
+
+        /**
+         * Configure duration of the object life since it has been retrieved last time
+         *
+         * @param duration duration value. 0 means the object does not expire after access
+         * @param unit     {@link TimeUnit} for duration value
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setExpireAfterAccess(long duration, TimeUnit unit) throws
+                UnacceptableCacheBuildParameter {
+            this.expireAfterAccessMillis = toMillis(duration, unit);
+            return this;
+        }
+
+        /**
+         * Build {@link Expiry} instance
+         *
+         * @return new {@link Expiry} instance
+         */
+        public Expiry build() {
+            return new Expiry(expireAfterWriteMillis, expireAfterAccessMillis);
+        }
+
+        private static long toMillis(long duration, TimeUnit unit) throws
+                UnacceptableCacheBuildParameter {
+            if (duration < 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Expiry duration can " +
+                        "not be negative. Provided value is %s", duration));
+            }
+            // shorter durations are rounded up, so they do not mean "never"
+            return duration == 0 ? 0 : Math.max(1, unit.toMillis(duration));
+        }
+
+        private long expireAfterWriteMillis = 0;
+        private long expireAfterAccessMillis = 0;
+    }
+
+    /**
+     * @return duration of the object life since it has been cached in milliseconds, 0 if it is
+     * not limited
+     */
+    public long getExpireAfterWriteMillis() {
+        return expireAfterWriteMillis;
+    }
+
+    /**
+     * @return duration of the object life since it has been retrieved last time in
+     * milliseconds, 0 if it is not limited
+     */
+    public long getExpireAfterAccessMillis() {
+        return expireAfterAccessMillis;
+    }
+
+    /**
+     * @return <code>true</code> if objects with this expiry never expire
+     */
+    public boolean isEternal() {
+        return expireAfterWriteMillis == 0 && expireAfterAccessMillis == 0;
+    }
+
+    private final long expireAfterWriteMillis;
+    private final long expireAfterAccessMillis;
+}
@@ -0,0 +1,20 @@
+package com.dantonov.wiley.objectscache;
+
+import java.util.UUID;
+
+/**
+ * Generates identifiers of cached objects, see {@link CachedObject#getUuid()}.<br>
+ * Identifiers are keys of objects in every {@link Cache}, including storages keeping objects
+ * after restart, so they must be unique among all objects of the cache, not only live ones.
+ * Implementation must be thread safe.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    /**
+     * Method to generate identifier for a new cached object
+     *
+     * @return unique {@link UUID}
+     */
+    UUID nextId();
+}
@@ -3,6 +3,8 @@ package com.dantonov.wiley.objectscache;
 import com.dantonov.wiley.objectscache.exceptions.AllocationException;
 import com.dantonov.wiley.objectscache.impl.ObjectInCache;
 
+import java.util.List;
+
 /**
  * Models behaviour of storing objects in {@link CacheHierarchy}.<br>
  * {@link ObjectCacheStrategy} is responsible for moving objects between underlying {@link Cache} caches
@@ -17,6 +19,21 @@ public interface ObjectCacheStrategy {
      */
     void allocateObject(ObjectInCache objectInCache, CacheHierarchy cacheHierarchy) throws AllocationException;
 
+    /**
+     * Method to implement allocation of a batch of new objects in {@link CacheHierarchy}.<br>
+     * Default implementation allocates objects one by one
+     *
+     * @param objectsInCache {@link List} of {@link ObjectInCache} references for cached objects
+     * @param cacheHierarchy {@link CacheHierarchy} representing underlying caches
+     * @throws AllocationException in case if objects have not been allocated
+     */
+    default void allocateObjects(List<ObjectInCache> objectsInCache, CacheHierarchy
+            cacheHierarchy) throws AllocationException {
+        for (ObjectInCache objectInCache : objectsInCache) {
+            allocateObject(objectInCache, cacheHierarchy);
+        }
+    }
+
     /**
      * Method to implement releasing of cached object
      *
@@ -27,6 +44,31 @@ public interface ObjectCacheStrategy {
         // do nothing. illustrate interface expansion without modifying extended instances
     }
 
+    /**
+     * Method to implement releasing of a batch of cached objects.<br>
+     * Default implementation releases objects one by one
+     *
+     * @param objectsInCache {@link List} of {@link ObjectInCache} references for cached objects
+     * @param cacheHierarchy {@link CacheHierarchy} representing underlying caches
+     */
+    default void releaseObjects(List<ObjectInCache> objectsInCache, CacheHierarchy
+            cacheHierarchy) {
+        objectsInCache.forEach(objectInCache -> releaseObject(objectInCache, cacheHierarchy));
+    }
+
+    /**
+     * Method to be notified that cached object has been retrieved from particular cache.<br>
+     * Called on the reader thread, so implementation should not block.<br>
+     * Strategy may use it to track accesses or to promote the object to an upper cache
+     *
+     * @param objectInCache {@link ObjectInCache} reference for retrieved object. Contains the
+     *                      retrieved object
+     * @param cache         {@link Cache} the object has been retrieved from
+     */
+    default void onHit(ObjectInCache objectInCache, Cache cache) {
+        // do nothing. strategy does not track accesses
+    }
+
     /**
      * Method to implement objects' migration between underlying caches from {@link CacheHierarchy}
      *
@@ -1,6 +1,13 @@
 package com.dantonov.wiley.objectscache;
 
 import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Top level abstraction for cache representation
@@ -16,6 +23,20 @@ public interface ObjectsCache {
      */
     CachedObject cacheObject(Object object) throws AllocationException;
 
+    /**
+     * Method to cache {@link Object} object which expires by given {@link Expiry}. Expired object
+     * is released as if {@link #releaseCachedObject(CachedObject)} has been called<br>
+     * Default implementation ignores the expiry: object is kept until it is released
+     *
+     * @param object {@link Object} object to cache
+     * @param expiry {@link Expiry} of the object. It replaces expiry configured for the cache
+     * @return {@link CachedObject} reference to cached object
+     * @throws AllocationException in case when object has not been cached
+     */
+    default CachedObject cacheObject(Object object, Expiry expiry) throws AllocationException {
+        return cacheObject(object);
+    }
+
     /**
      * Method to release {@link CachedObject} referenced to cached object<br>
      * Calling means cached objects is not more needed to be stored
@@ -23,4 +44,101 @@ public interface ObjectsCache {
      * @param cachedObject {@link CachedObject} reference to cached object
      */
     void releaseCachedObject(CachedObject cachedObject);
+
+    /**
+     * Method to cache a batch of objects<br>
+     * Default implementation caches objects one by one. Implementations should place the
+     * whole batch at once
+     *
+     * @param objects {@link Collection} of objects to cache
+     * @return {@link List} of {@link CachedObject} references in order of the objects
+     * @throws AllocationException in case when objects have not been cached
+     */
+    default List<CachedObject> cacheAll(Collection<?> objects) throws AllocationException {
+        List<CachedObject> cachedObjects = new ArrayList<>(objects.size());
+        for (Object object : objects) {
+            cachedObjects.add(cacheObject(object));
+        }
+        return cachedObjects;
+    }
+
+    /**
+     * Method to retrieve a batch of cached objects<br>
+     * Default implementation retrieves objects one by one
+     *
+     * @param cachedObjects {@link List} of {@link CachedObject} references
+     * @return {@link List} of objects in order of the references
+     * @throws ObjectNotFoundInCache      in case when any object has not been found
+     * @throws AllocationInCacheException in case when underlying cache has failed to retrieve
+     *                                    any object
+     */
+    default List<Object> getAll(List<? extends CachedObject> cachedObjects) throws
+            ObjectNotFoundInCache, AllocationInCacheException {
+        List<Object> objects = new ArrayList<>(cachedObjects.size());
+        for (CachedObject cachedObject : cachedObjects) {
+            objects.add(cachedObject.getObject());
+        }
+        return objects;
+    }
+
+    /**
+     * Method to release a batch of {@link CachedObject} references<br>
+     * Default implementation releases objects one by one
+     *
+     * @param cachedObjects {@link Collection} of {@link CachedObject} references
+     */
+    default void releaseAll(Collection<? extends CachedObject> cachedObjects) {
+        cachedObjects.forEach(this::releaseCachedObject);
+    }
+
+    /**
+     * Asynchronous companion of {@link #cacheObject(Object)}<br>
+     * Default implementation caches the object on the caller thread and returns completed
+     * future
+     *
+     * @param object {@link Object} object to cache
+     * @return {@link CompletableFuture} completed by {@link CachedObject} reference, or
+     * exceptionally by {@link AllocationException}
+     */
+    default CompletableFuture<CachedObject> cacheObjectAsync(Object object) {
+        CompletableFuture<CachedObject> future = new CompletableFuture<>();
+        try {
+            future.complete(cacheObject(object));
+        } catch (AllocationException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Asynchronous companion of {@link CachedObject#getObject()}<br>
+     * Default implementation retrieves the object on the caller thread and returns completed
+     * future
+     *
+     * @param cachedObject {@link CachedObject} reference to cached object
+     * @return {@link CompletableFuture} completed by the object, or exceptionally by
+     * {@link ObjectNotFoundInCache} or {@link AllocationInCacheException}
+     */
+    default CompletableFuture<Object> getObjectAsync(CachedObject cachedObject) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        try {
+            future.complete(cachedObject.getObject());
+        } catch (ObjectNotFoundInCache | AllocationInCacheException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Asynchronous companion of {@link #releaseCachedObject(CachedObject)}<br>
+     * Default implementation releases the object on the caller thread and returns completed
+     * future
+     *
+     * @param cachedObject {@link CachedObject} reference to cached object
+     * @return {@link CompletableFuture} completed when the object is released
+     */
+    default CompletableFuture<Void> releaseAsync(CachedObject cachedObject) {
+        releaseCachedObject(cachedObject);
+        return CompletableFuture.completedFuture(null);
+    }
 }
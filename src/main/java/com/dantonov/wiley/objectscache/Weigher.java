@@ -0,0 +1,20 @@
+package com.dantonov.wiley.objectscache;
+
+/**
+ * Calculates weight of an object stored in a {@link Cache}.<br>
+ * Cache configured with a {@link Weigher} limits total weight of stored objects instead of
+ * their amount. Weight is usually an estimated size of the object in bytes.<br>
+ * Weight of an object is calculated once, when the object is put to the cache, so it must not
+ * depend on object state changed after that.
+ */
+@FunctionalInterface
+public interface Weigher {
+
+    /**
+     * Method to calculate weight of the object
+     *
+     * @param object object to be stored in cache. May be <code>null</code>
+     * @return weight of the object. Can not be negative
+     */
+    long weigh(Object object);
+}
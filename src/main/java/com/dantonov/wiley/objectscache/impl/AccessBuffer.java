@@ -0,0 +1,113 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Lossy buffer of access events. Lets readers record accesses without locking, events are
+ * applied later in batches by one thread.<br>
+ * <ul>Details of implementation:
+ * <li>buffer is striped by thread, each stripe is a bounded ring</li>
+ * <li>recording is one CAS. If the stripe is full or the CAS fails, the event is dropped:
+ * access order is a hint, losing a few events under heavy load is acceptable</li>
+ * <li>events are drained by one thread at a time, guarded by a drain lock. Other threads do
+ * not wait for it</li>
+ * </ul>
+ *
+ * @param <E> type of the event
+ */
+class AccessBuffer<E> {
+
+    /**
+     * Constructor for {@link AccessBuffer}
+     */
+    AccessBuffer() {
+        int stripesCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime()
+                .availableProcessors()) * 2 - 1);
+        stripes = newStripes(stripesCount);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        drainLock = new ReentrantLock();
+    }
+
+    /**
+     * Record an event
+     *
+     * @param event event to record
+     * @return <code>true</code> if the stripe of current thread is full and should be drained
+     */
+    boolean record(E event) {
+        Stripe<E> stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        return !stripe.offer(event);
+    }
+
+    /**
+     * Apply all recorded events, unless another thread is draining the buffer
+     *
+     * @param consumer {@link Consumer} to apply events
+     */
+    void drain(Consumer<E> consumer) {
+        if (!drainLock.tryLock()) {
+            return;
+        }
+        try {
+            for (Stripe<E> stripe : stripes) {
+                stripe.drain(consumer);
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    // generic array can not be created, stripes are of the element type only
+    @SuppressWarnings("unchecked")
+    private static <E> Stripe<E>[] newStripes(int count) {
+        return (Stripe<E>[]) new Stripe<?>[count];
+    }
+
+    private static class Stripe<E> {
+
+        boolean offer(E event) {
+            long write = writeCounter.get();
+            if (write - readCounter >= STRIPE_SIZE) {
+                return false;
+            }
+            if (writeCounter.compareAndSet(write, write + 1)) {
+                events.lazySet((int) (write & STRIPE_MASK), event);
+                return true;
+            }
+            return false;
+        }
+
+        void drain(Consumer<E> consumer) {
+            long read = readCounter;
+            long write = writeCounter.get();
+            for (; read < write; read++) {
+                int index = (int) (read & STRIPE_MASK);
+                E event = events.get(index);
+                if (event == null) {
+                    // slot is claimed, but the event is not published yet
+                    break;
+                }
+                events.lazySet(index, null);
+                consumer.accept(event);
+            }
+            readCounter = read;
+        }
+
+        private final AtomicReferenceArray<E> events = new AtomicReferenceArray<>(STRIPE_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        // written only by the draining thread
+        private volatile long readCounter;
+    }
+
+    private static final int STRIPE_SIZE = 64;
+    private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+
+    private final Stripe<E>[] stripes;
+    private final Lock drainLock;
+}
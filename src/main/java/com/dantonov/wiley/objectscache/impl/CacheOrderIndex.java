@@ -0,0 +1,208 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Intrusive ordering of objects stored in one {@link Cache}. Used by
+ * {@link ObjectCacheStrategyImpl} to pick objects to move out of the cache.<br>
+ * <ul>Details of implementation:
+ * <li>entries are linked in a doubly linked list. Append, unlink and move to the tail are
+ * O(1)</li>
+ * <li>entry knows the index it is linked to, so it can be unlinked knowing only the entry</li>
+ * <li>list is guarded by the index monitor, held only for a few pointer updates</li>
+ * <li>drain lock is held by a thread moving objects out of the cache for the whole move</li>
+ * </ul>
+ */
+class CacheOrderIndex {
+
+    /**
+     * Constructor for {@link CacheOrderIndex}
+     *
+     * @param cache {@link Cache} which objects are ordered by this index. May be
+     *              <code>null</code> for an index ordering a region of a cache
+     */
+    CacheOrderIndex(Cache cache) {
+        this.cache = cache;
+        this.drainLock = new ReentrantLock();
+        head = new Entry(null);
+        head.previous = head;
+        head.next = head;
+    }
+
+    /**
+     * Object tracked by {@link ObjectCacheStrategyImpl}. Linked to at most one
+     * {@link CacheOrderIndex} at a time
+     */
+    static class Entry {
+
+        /**
+         * Constructor for {@link Entry}
+         *
+         * @param uuid identifier of the tracked object
+         */
+        Entry(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        /**
+         * @return identifier of the tracked object
+         */
+        UUID getUuid() {
+            return uuid;
+        }
+
+        /**
+         * @return {@link CacheOrderIndex} the entry is linked to, or <code>null</code> if the
+         * entry is not linked (released or being moved)
+         */
+        CacheOrderIndex getIndex() {
+            return index;
+        }
+
+        /**
+         * Count a hit of the object in its current cache
+         *
+         * @return amount of hits since the object has been placed to its current cache
+         */
+        int incrementHits() {
+            return HITS_UPDATER.incrementAndGet(this);
+        }
+
+        /**
+         * Forget hits. Called when the object is placed to another cache
+         */
+        void resetHits() {
+            hits = 0;
+        }
+
+        private static final AtomicIntegerFieldUpdater<Entry> HITS_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "hits");
+
+        private final UUID uuid;
+        private volatile CacheOrderIndex index;
+        private volatile int hits;
+        private Entry previous;
+        private Entry next;
+    }
+
+    /**
+     * Link entry to the tail of the index. Entry must not be linked to any index
+     *
+     * @param entry {@link Entry} to link
+     */
+    synchronized void addLast(Entry entry) {
+        link(entry, head.previous);
+    }
+
+    /**
+     * Link entry to the head of the index. Entry must not be linked to any index
+     *
+     * @param entry {@link Entry} to link
+     */
+    synchronized void addFirst(Entry entry) {
+        link(entry, head);
+    }
+
+    /**
+     * Unlink entry if it is linked to this index
+     *
+     * @param entry {@link Entry} to unlink
+     * @return <code>true</code> if entry has been unlinked
+     */
+    synchronized boolean unlink(Entry entry) {
+        if (entry.index != this) {
+            return false;
+        }
+        unlinkLinked(entry);
+        return true;
+    }
+
+    /**
+     * Move entry to the tail of the index if it is linked to this index
+     *
+     * @param entry {@link Entry} to move
+     * @return <code>true</code> if entry has been moved
+     */
+    synchronized boolean moveToLast(Entry entry) {
+        if (entry.index != this) {
+            return false;
+        }
+        unlinkLinked(entry);
+        link(entry, head.previous);
+        return true;
+    }
+
+    /**
+     * Provide the head entry without unlinking it
+     *
+     * @return head {@link Entry} or <code>null</code> if index is empty
+     */
+    synchronized Entry peekFirst() {
+        Entry first = head.next;
+        return first == head ? null : first;
+    }
+
+    /**
+     * Unlink the head entry
+     *
+     * @return unlinked {@link Entry} or <code>null</code> if index is empty
+     */
+    synchronized Entry pollFirst() {
+        Entry first = head.next;
+        if (first == head) {
+            return null;
+        }
+        unlinkLinked(first);
+        return first;
+    }
+
+    /**
+     * @return amount of linked entries
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return {@link Cache} which objects are ordered by this index
+     */
+    Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return {@link Lock} to be held while objects are moved out of the cache
+     */
+    Lock getDrainLock() {
+        return drainLock;
+    }
+
+    private void link(Entry entry, Entry after) {
+        entry.previous = after;
+        entry.next = after.next;
+        after.next.previous = entry;
+        after.next = entry;
+        entry.index = this;
+        size++;
+    }
+
+    private void unlinkLinked(Entry entry) {
+        entry.previous.next = entry.next;
+        entry.next.previous = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+        entry.index = null;
+        size--;
+    }
+
+    private final Cache cache;
+    private final Lock drainLock;
+    // sentinel. head.next is the first entry, head.previous is the last one
+    private final Entry head;
+    private int size;
+}
@@ -0,0 +1,312 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Expiry;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Expires cached objects by their {@link Expiry}. Expired objects are passed in batches to the
+ * expiration pass (usually releasing them from all caches) on its own thread.<br>
+ * <ul>Details of implementation:
+ * <li>expirations are scheduled in a {@link TimerWheel}, so scheduling, cancellation and
+ * finding expired objects do not scan all objects</li>
+ * <li>access does not touch the wheel: it only records access time. When the timer of an
+ * object accessed meanwhile is due, the object is scheduled again to its new deadline</li>
+ * <li>expired object is not returned by {@link #onAccess(UUID)} even if it has not been
+ * released yet</li>
+ * <li>thread is started on first scheduled expiration and wakes up once per tick</li>
+ * <li>exceptions thrown by the pass are logged and do not stop next passes</li>
+ * </ul>
+ */
+public class ExpirationScheduler implements AutoCloseable {
+
+    private ExpirationScheduler(Consumer<List<ObjectInCache>> expirationPass, long tickMillis,
+                                int batchSize, LongSupplier clock) {
+        this.expirationPass = expirationPass;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        this.clock = clock;
+        expirations = new ConcurrentHashMap<>();
+        wheelLock = new ReentrantLock();
+        timerWheel = new TimerWheel<>(tickMillis, clock.getAsLong());
+    }
+
+    /**
+     * Builder for {@link ExpirationScheduler}
+     */
+    public static class Builder {
+
+        /**
+         * Set expiration pass to run for expired objects
+         *
+         * @param expirationPass {@link Consumer} of a batch of expired objects, usually
+         *                       releases them from all caches
+         * @return {@link Builder} to support build chaining
+         */
+        public Builder setExpirationPass(Consumer<List<ObjectInCache>> expirationPass) {
+            this.expirationPass = expirationPass;
+            return this;
+        }
+
+        /**
+         * Set tick of the timer wheel. Objects are expired up to one tick later than their
+         * deadline
+         *
+         * @param tick tick value
+         * @param unit {@link TimeUnit} for tick value
+         * @return {@link Builder} to support build chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setTick(long tick, TimeUnit unit) throws UnacceptableCacheBuildParameter {
+            if (unit.toMillis(tick) <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Tick can not be " +
+                        "shorter than 1 millisecond. Provided value is %s %s", tick, unit));
+            }
+            this.tickMillis = unit.toMillis(tick);
+            return this;
+        }
+
+        /**
+         * Set max amount of objects passed to one expiration pass
+         *
+         * @param batchSize batch size
+         * @return {@link Builder} to support build chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setBatchSize(int batchSize) throws UnacceptableCacheBuildParameter {
+            if (batchSize <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Batch size can not be " +
+                        "less or equals 0. Provided value is %s", batchSize));
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Set clock deadlines are measured by, so tests do not depend on real time. Default
+         * is {@link System#currentTimeMillis()}
+         *
+         * @param clock {@link LongSupplier} of current time in milliseconds
+         * @return {@link Builder} to support build chaining
+         */
+        Builder setClock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Build {@link ExpirationScheduler} instance. Thread is started on first scheduled
+         * expiration
+         *
+         * @return new {@link ExpirationScheduler} instance
+         */
+        public ExpirationScheduler build() {
+            return new ExpirationScheduler(expirationPass, tickMillis, batchSize, clock);
+        }
+
+        private Consumer<List<ObjectInCache>> expirationPass;
+        private long tickMillis = 100;
+        private int batchSize = 256;
+        private LongSupplier clock = System::currentTimeMillis;
+    }
+
+    /**
+     * Schedule expiration of the cached object. Does nothing for eternal {@link Expiry}
+     *
+     * @param uuid   identifier of the cached object
+     * @param expiry {@link Expiry} of the object
+     */
+    public void schedule(UUID uuid, Expiry expiry) {
+        if (expiry.isEternal()) {
+            return;
+        }
+        Expiration expiration = new Expiration(uuid, expiry, clock.getAsLong());
+        List<ObjectInCache> expiredObjects = new ArrayList<>(0);
+        wheelLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleWithFixedDelay(this::runPass, tickMillis, tickMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+            Expiration replacedExpiration = expirations.put(uuid, expiration);
+            if (replacedExpiration != null) {
+                timerWheel.cancel(replacedExpiration.timer);
+            }
+            if (!timerWheel.schedule(expiration.timer, expiration.getDeadline())) {
+                expirations.remove(uuid);
+                expiredObjects.add(ObjectInCache.from(uuid));
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        expire(expiredObjects);
+    }
+
+    /**
+     * Cancel expiration of the object, for example when it is released
+     *
+     * @param uuid identifier of the cached object
+     */
+    public void cancel(UUID uuid) {
+        Expiration expiration = expirations.remove(uuid);
+        if (expiration != null) {
+            wheelLock.lock();
+            try {
+                timerWheel.cancel(expiration.timer);
+            } finally {
+                wheelLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Record access to the object. Does not block
+     *
+     * @param uuid identifier of the cached object
+     * @return <code>false</code> if the object has expired
+     */
+    public boolean onAccess(UUID uuid) {
+        if (expirations.isEmpty()) {
+            return true;
+        }
+        Expiration expiration = expirations.get(uuid);
+        if (expiration == null) {
+            return true;
+        }
+        long now = clock.getAsLong();
+        if (expiration.getDeadline() <= now) {
+            return false;
+        }
+        expiration.accessTime = now;
+        return true;
+    }
+
+    /**
+     * @return amount of objects waiting for expiration
+     */
+    public int getScheduledCount() {
+        return expirations.size();
+    }
+
+    /**
+     * Stop expiration thread. Pass being run is completed, objects not expired yet are kept
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService stoppedExecutor;
+        wheelLock.lock();
+        try {
+            closed = true;
+            stoppedExecutor = executor;
+        } finally {
+            wheelLock.unlock();
+        }
+        if (stoppedExecutor != null) {
+            stoppedExecutor.shutdown();
+            try {
+                stoppedExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runPass() {
+        List<TimerWheel.Timer<Expiration>> dueTimers = new ArrayList<>();
+        List<ObjectInCache> expiredObjects = new ArrayList<>();
+        wheelLock.lock();
+        try {
+            long now = clock.getAsLong();
+            timerWheel.advance(now, dueTimers);
+            for (TimerWheel.Timer<Expiration> timer : dueTimers) {
+                Expiration expiration = timer.getValue();
+                // object accessed after it has been scheduled lives longer
+                // cancelled expiration is already removed from the map
+                if (!timerWheel.schedule(timer, expiration.getDeadline()) && expirations.remove
+                        (expiration.uuid, expiration)) {
+                    expiredObjects.add(ObjectInCache.from(expiration.uuid));
+                }
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+        expire(expiredObjects);
+    }
+
+    private void expire(List<ObjectInCache> expiredObjects) {
+        for (int from = 0; from < expiredObjects.size(); from += batchSize) {
+            try {
+                expirationPass.accept(expiredObjects.subList(from, Math.min(from + batchSize,
+                        expiredObjects.size())));
+            } catch (RuntimeException e) {
+                LOGGER.error("Expiration pass has failed", e);
+            }
+        }
+    }
+
+    // expiration state of one object
+    private static class Expiration {
+
+        Expiration(UUID uuid, Expiry expiry, long now) {
+            this.uuid = uuid;
+            this.writeDeadline = expiry.getExpireAfterWriteMillis() > 0 ? saturatedSum(now,
+                    expiry.getExpireAfterWriteMillis()) : MAX_DEADLINE;
+            this.expireAfterAccessMillis = expiry.getExpireAfterAccessMillis();
+            this.accessTime = now;
+            this.timer = new TimerWheel.Timer<>(this);
+        }
+
+        long getDeadline() {
+            return expireAfterAccessMillis > 0 ? Math.min(writeDeadline, saturatedSum
+                    (accessTime, expireAfterAccessMillis)) : writeDeadline;
+        }
+
+        private static long saturatedSum(long time, long duration) {
+            return duration >= MAX_DEADLINE - time ? MAX_DEADLINE : time + duration;
+        }
+
+        private final UUID uuid;
+        private final long writeDeadline;
+        private final long expireAfterAccessMillis;
+        private volatile long accessTime;
+        private final TimerWheel.Timer<Expiration> timer;
+    }
+
+    private final Consumer<List<ObjectInCache>> expirationPass;
+    private final long tickMillis;
+    private final int batchSize;
+    private final LongSupplier clock;
+    private final Map<UUID, Expiration> expirations;
+    // guards the wheel, the executor and closed flag
+    private final ReentrantLock wheelLock;
+    private final TimerWheel<Expiration> timerWheel;
+    private ScheduledExecutorService executor;
+    private boolean closed;
+
+    // deadlines are kept far from overflow of wheel calculations
+    private static final long MAX_DEADLINE = Long.MAX_VALUE / 2;
+    private static final String THREAD_NAME = "objects-cache-expiration";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private final static Logger LOGGER = LoggerFactory.getLogger(ExpirationScheduler.class);
+}
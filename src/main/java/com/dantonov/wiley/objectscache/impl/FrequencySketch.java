@@ -0,0 +1,111 @@
+package com.dantonov.wiley.objectscache.impl;
+
+/**
+ * Count-min sketch estimating how often objects are accessed. Used by
+ * {@link TinyLfuObjectCacheStrategy} to decide which object stays in the first cache.<br>
+ * <ul>Details of implementation:
+ * <li>each counter is 4 bits, 16 counters are packed into one <code>long</code>. Table has
+ * one <code>long</code> per expected object, so the sketch costs 8 bytes per object</li>
+ * <li>each object is counted in 4 counters of one <code>long</code>, chosen by different
+ * hashes. Estimate is the minimum of them</li>
+ * <li>aging: when the amount of increments reaches 10 times the expected amount of objects,
+ * all counters are halved, so old popularity fades out</li>
+ * </ul>
+ * Sketch is not thread safe by itself, methods are synchronized.
+ */
+class FrequencySketch {
+
+    /**
+     * Constructor for {@link FrequencySketch}
+     *
+     * @param expectedSize expected amount of objects to be counted
+     */
+    FrequencySketch(int expectedSize) {
+        int size = Math.max(MIN_SIZE, expectedSize);
+        int tableSize = Integer.highestOneBit(size - 1) << 1;
+        table = new long[tableSize];
+        tableMask = tableSize - 1;
+        sampleSize = 10 * size;
+    }
+
+    /**
+     * Estimate how often the object has been accessed
+     *
+     * @param hash hash of the object
+     * @return estimated frequency in range [0, 15]
+     */
+    synchronized int frequency(int hash) {
+        int spreadHash = spread(hash);
+        int start = (spreadHash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(spreadHash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & COUNTER_MASK);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Count an access of the object
+     *
+     * @param hash hash of the object
+     */
+    synchronized void increment(int hash) {
+        int spreadHash = spread(hash);
+        int start = (spreadHash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            added |= incrementAt(indexOf(spreadHash, i), start + i);
+        }
+        if (added && ++samples == sampleSize) {
+            age();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = COUNTER_MASK << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void age() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        // halving drops the lowest bit of each counter, adjust samples for the lost parts
+        samples = (samples >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+        long indexHash = (hash + SEEDS[i]) * SEEDS[i];
+        indexHash += indexHash >>> 32;
+        return ((int) indexHash) & tableMask;
+    }
+
+    private static int spread(int hash) {
+        int spreadHash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        spreadHash = ((spreadHash >>> 16) ^ spreadHash) * 0x45d9f3b;
+        return (spreadHash >>> 16) ^ spreadHash;
+    }
+
+    private static final int MIN_SIZE = 16;
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long COUNTER_MASK = 0xFL;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int samples;
+}
@@ -33,6 +33,7 @@ public class GenericConfigurationValue<T> implements ChangeableConfigurationValu
 
     @Override
     public Boolean isResponding() {
+        Optional<T> currentState = getCurrentState();
         if (currentState.isPresent() && specialState.isPresent()) {
             return checker.isFine(currentState.get(), specialState.get());
         } else {
@@ -42,7 +43,7 @@ public class GenericConfigurationValue<T> implements ChangeableConfigurationValu
 
     @Override
     public String presentCurrentState() {
-        return currentStatePresenter.present(currentState.get());
+        return currentStatePresenter.present(getCurrentState().get());
     }
 
     @Override
@@ -55,11 +56,21 @@ public class GenericConfigurationValue<T> implements ChangeableConfigurationValu
         this.currentState = Optional.ofNullable(currentValue);
     }
 
+    /**
+     * Provide current state of this {@link GenericConfigurationValue}
+     *
+     * @return {@link Optional} current state. Empty if current state is not set
+     */
+    protected Optional<T> getCurrentState() {
+        return currentState;
+    }
+
 
     private Optional<T> specialState;
     private Presenter<T> specialStatePresenter;
 
-    private Optional<T> currentState = Optional.empty();
+    // current state may be set by one thread and checked by another
+    private volatile Optional<T> currentState = Optional.empty();
     private Presenter<T> currentStatePresenter;
 
     private WARN_LEVEL warnLevel;
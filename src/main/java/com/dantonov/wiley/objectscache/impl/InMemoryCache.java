@@ -1,40 +1,52 @@
 package com.dantonov.wiley.objectscache.impl;
 
 import com.dantonov.wiley.objectscache.Cache;
-import com.dantonov.wiley.objectscache.ChangeableConfigurationValue;
 import com.dantonov.wiley.objectscache.ConfigurationValue;
 import com.dantonov.wiley.objectscache.ObjectCacheStrategy;
+import com.dantonov.wiley.objectscache.Weigher;
 import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
 import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
 import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.metrics.TierMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * {@link Cache} implementation to keep objects in memory.<br>
  * It has max cache size attribute, configuring via {@link ConfigurationValue} property.<br>
+ * If {@link Weigher} is configured, max cache weight is limited instead of amount of objects:
+ * weight of each object is calculated once when the object is put to the cache.<br>
  * <b>Note:</b> Cache is allowed to put new objects even if max cache size exceeded.<br>
  * {@link ObjectCacheStrategy} should manage objects load via
  * underlying caches to satisfy appropriate {@link ConfigurationValue} responding.<br>
- * Cache also has a percent loading {@link ConfigurationValue}.
+ * Cache also has a percent loading {@link ConfigurationValue}.<br>
+ * Cache is thread safe: objects are kept in a {@link ConcurrentHashMap}, load of the cache is
+ * tracked by a {@link LongAdder} and read by configuration values on each check.
+ * {@link #returnObject(ObjectInCache)} and {@link #contains(ObjectInCache)} do not lock.
  */
 public class InMemoryCache implements Cache {
 
-    private InMemoryCache(int maxCacheSize, int dangerLoad) {
-        objectsInCacheConfigurationValue = new GenericConfigurationValue<>(maxCacheSize,
-                (currentState, specialState) -> currentState <= specialState, ConfigurationValue
-                .WARN_LEVEL.CRITICAL, maxSize -> String.format("Max cache size = %s", maxSize),
-                currentSize -> String.format("Current amount of objects in cache = %s",
-                        currentSize));
-        objectsInCacheConfigurationValue.setCurrentState(0);
-        percentLoadConfigurationValue = new GenericConfigurationValue<>(
-                dangerLoad, (
+    private InMemoryCache(long maxCacheLoad, int dangerLoad, Weigher weigher) {
+        this.weigher = weigher;
+        cacheLoad = new LongAdder();
+        metrics = new TierMetrics();
+        objectsInCacheConfigurationValue = new SuppliedConfigurationValue<>(maxCacheLoad,
+                cacheLoad::sum, (currentState, specialState) -> currentState <= specialState,
+                ConfigurationValue.WARN_LEVEL.CRITICAL, maxLoad -> String.format(weigher == null ?
+                "Max cache size = %s" : "Max cache weight = %s", maxLoad), currentLoad -> String
+                .format(weigher == null ? "Current amount of objects in cache = %s" : "Current " +
+                        "weight of objects in cache = %s", currentLoad));
+        percentLoadConfigurationValue = new SuppliedConfigurationValue<>(
+                (long) dangerLoad, cacheLoad::sum, (
                 (currentState, specialState) -> {
                     if (specialState == 0) {
                         return currentState == 0;
                     }
-                    return (((double) currentState * 100) / maxCacheSize) <= specialState;
+                    return (((double) currentState * 100) / maxCacheLoad) <= specialState;
                 }),
                 ConfigurationValue.WARN_LEVEL.WARN, maxPercent -> String.format("Cache load " +
                 "should not exceed %s percents", maxPercent), current -> {
@@ -44,20 +56,23 @@ public class InMemoryCache implements Cache {
                 currentLoad = "Since danger load is set to 0, it is not possible to calculate " +
                         "current load in percents.";
             } else {
-                Double currentLoadValue = ((double) current / maxCacheSize) * 100;
+                Double currentLoadValue = ((double) current / maxCacheLoad) * 100;
                 currentLoad = String.format("Current load is %s percents", currentLoadValue);
             }
             return currentLoad;
         });
-        percentLoadConfigurationValue.setCurrentState(0);
+        configurationValues = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+                objectsInCacheConfigurationValue, percentLoadConfigurationValue)));
 
-        cacheStorage = new HashMap<>();
+        cacheStorage = new ConcurrentHashMap<>();
     }
 
     /**
      * Builder for {@link InMemoryCache} instance<br>
      * <ul>Max cache size and {@code dangerLoad} value may be configured:
      * <li>max cache size is a critical {@link ConfigurationValue}</li>
+     * <li>if {@link Weigher} is configured, max cache weight is the critical
+     * {@link ConfigurationValue} instead of max cache size</li>
      * <li>danger load means max cache occupancy considered as normal for this cache. If
      * current load is greater, appropriate {@link ConfigurationValue} responds warning</li>
      * </ul>
@@ -97,63 +112,90 @@ public class InMemoryCache implements Cache {
             return this;
         }
 
+        /**
+         * Configure {@link Weigher} to limit total weight of objects instead of their amount
+         *
+         * @param weigher {@link Weigher} calculating weight of each cached object
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setWeigher(Weigher weigher) throws UnacceptableCacheBuildParameter {
+            if (weigher == null) {
+                throw new UnacceptableCacheBuildParameter("Weigher can not be null");
+            }
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Configure max cache weight. Used only if {@link Weigher} is configured
+         *
+         * @param maxCacheWeight max total weight of objects for this cache
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setMaxCacheWeight(long maxCacheWeight) throws
+                UnacceptableCacheBuildParameter {
+            if (maxCacheWeight <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Max cache weight " +
+                        "parameter can not be less or equals 0. Provided value is %s",
+                        maxCacheWeight));
+            }
+            this.maxCacheWeight = maxCacheWeight;
+            return this;
+        }
+
         /**
          * Build {@link InMemoryCache} instance
          *
          * @return new {@link InMemoryCache} instance
          */
         public InMemoryCache build() {
-            return new InMemoryCache(maxCacheSize, dangerLoad);
+            if (weigher == null) {
+                return new InMemoryCache(maxCacheSize, dangerLoad, null);
+            }
+            return new InMemoryCache(maxCacheWeight, dangerLoad, weigher);
         }
 
         private int maxCacheSize = 100;
+        private long maxCacheWeight = 64L * 1024 * 1024;
         private int dangerLoad = 80;
+        private Weigher weigher;
 
     }
 
     @Override
     public Set<ConfigurationValue> getConfigurationValues() {
-        return Arrays.asList(objectsInCacheConfigurationValue, percentLoadConfigurationValue)
-                .stream().collect(Collectors.toSet());
+        return configurationValues;
     }
 
     @Override
     public void allocateObject(ObjectInCache cachedObject) throws AllocationInCacheException {
-        cacheStorage.put(cachedObject.getUuid(), cachedObject.objectRef());
+        Object object = cachedObject.objectRef();
+        StoredObject storedObject = new StoredObject(object, weigh(object));
+        StoredObject replacedObject = cacheStorage.put(cachedObject.getUuid(), storedObject);
+        cacheLoad.add(replacedObject == null ? storedObject.weight : storedObject.weight -
+                replacedObject.weight);
         cachedObject.clearObjectRef();
-        updateCacheSizeInConfigurationValues();
     }
 
     @Override
     public ObjectInCache freeObject(ObjectInCache cachedObject) throws ObjectNotFoundInCache {
-        return getObject(cachedObject, true);
+        StoredObject storedObject = cacheStorage.remove(cachedObject.getUuid());
+        if (storedObject == null) {
+            throw new ObjectNotFoundInCache(cachedObject);
+        }
+        cacheLoad.add(-storedObject.weight);
+        return ObjectInCache.from(cachedObject, storedObject.object);
     }
 
     @Override
     public ObjectInCache returnObject(ObjectInCache cachedObject) throws ObjectNotFoundInCache {
-        return getObject(cachedObject, false);
-    }
-
-    private void updateCacheSizeInConfigurationValues() {
-        int currentCacheSize = cacheStorage.size();
-        percentLoadConfigurationValue.setCurrentState(currentCacheSize);
-        objectsInCacheConfigurationValue.setCurrentState(currentCacheSize);
-    }
-
-    private ObjectInCache getObject(ObjectInCache cachedObject, boolean remove) throws ObjectNotFoundInCache {
-        UUID uuid = cachedObject.getUuid();
-        if (!cacheStorage.containsKey(uuid)) {
+        StoredObject storedObject = cacheStorage.get(cachedObject.getUuid());
+        if (storedObject == null) {
             throw new ObjectNotFoundInCache(cachedObject);
-        } else {
-            Object object;
-            if (remove) {
-                object = cacheStorage.remove(cachedObject.getUuid());
-                updateCacheSizeInConfigurationValues();
-            } else {
-                object = cacheStorage.get(cachedObject.getUuid());
-            }
-            return ObjectInCache.from(cachedObject, object);
         }
+        return ObjectInCache.from(cachedObject, storedObject.object);
     }
 
     @Override
@@ -161,19 +203,66 @@ public class InMemoryCache implements Cache {
         return cacheStorage.containsKey(objectInCache.getUuid());
     }
 
+    @Override
+    public TierMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public String getCacheName() {
         return IN_MEMORY_CACHE_NAME;
     }
 
+    private long weigh(Object object) throws AllocationInCacheException {
+        if (weigher == null) {
+            return 1;
+        }
+        long weight;
+        try {
+            weight = weigher.weigh(object);
+        } catch (RuntimeException e) {
+            LOGGER.error("Weigher has failed", e);
+            throw new AllocationInCacheException();
+        }
+        if (weight < 0) {
+            LOGGER.error(String.format("Weigher has returned negative weight %s", weight));
+            throw new AllocationInCacheException();
+        }
+        return weight;
+    }
+
+    // stored object with its weight. Also lets null objects be stored in ConcurrentHashMap
+    private static class StoredObject {
+
+        StoredObject(Object object, long weight) {
+            this.object = object;
+            this.weight = weight;
+        }
+
+        private final Object object;
+        private final long weight;
+    }
+
     private static final String IN_MEMORY_CACHE_NAME = "In-memory cache";
 
-    // configuration value to check amount of stored objects
-    private ChangeableConfigurationValue<Integer> objectsInCacheConfigurationValue;
+    // configuration value to check amount (or total weight) of stored objects
+    private final ConfigurationValue objectsInCacheConfigurationValue;
 
     // configuration value to present current load in percents
-    private ChangeableConfigurationValue<Integer> percentLoadConfigurationValue;
+    private final ConfigurationValue percentLoadConfigurationValue;
+
+    private final Set<ConfigurationValue> configurationValues;
+
+    // amount of stored objects, or their total weight if weigher is configured. both
+    // configuration values read it on each check
+    private final LongAdder cacheLoad;
+
+    // null if amount of objects is limited
+    private final Weigher weigher;
+    private final TierMetrics metrics;
 
     // objects store
-    private Map<UUID, Object> cacheStorage;
+    private final Map<UUID, StoredObject> cacheStorage;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(InMemoryCache.class);
 }
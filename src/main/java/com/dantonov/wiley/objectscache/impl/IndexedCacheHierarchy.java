@@ -0,0 +1,178 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CacheHierarchy;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable {@link CacheHierarchy} with indexed tiers.<br>
+ * <ul>Details of implementation:
+ * <li>tiers are kept in an array, the tier index of each cache is kept in an
+ * {@link IdentityHashMap}. So {@link #getTier(int)}, {@link #indexOf(Cache)},
+ * {@link #getNextCache(Cache)} and {@link #getPreviousCache(Cache)} are O(1) and do not
+ * allocate</li>
+ * <li>{@link #getCacheList()} returns the same unmodifiable view each time, without a
+ * copy</li>
+ * <li>hierarchy is never changed. Reconfiguration methods, like {@link #withCache(Cache)},
+ * copy the tiers to a new hierarchy, which can be given to
+ * {@link ObjectCacheImpl#setCacheLevelModel(CacheHierarchy)}. Threads walking the old
+ * hierarchy are not affected</li>
+ * <li>each cache can be used in one tier only</li>
+ * </ul>
+ */
+public final class IndexedCacheHierarchy implements CacheHierarchy {
+
+    private IndexedCacheHierarchy(Cache[] tiers) {
+        this.tiers = tiers;
+        cacheList = Collections.unmodifiableList(Arrays.asList(tiers));
+        indexes = new IdentityHashMap<>(tiers.length);
+        for (int i = 0; i < tiers.length; i++) {
+            indexes.put(tiers[i], i);
+        }
+    }
+
+    /**
+     * Builder for {@link IndexedCacheHierarchy}
+     */
+    public static class Builder {
+
+        /**
+         * Add a new {@link Cache} instance as the last tier
+         *
+         * @param cache new {@link Cache} instance
+         * @return {@link Builder} to support build chaining
+         * @throws UnacceptableCacheBuildParameter in case when the cache is <code>null</code> or
+         *                                         has been added already
+         */
+        public Builder addCache(Cache cache) throws UnacceptableCacheBuildParameter {
+            checkNewCache(caches, cache);
+            caches.add(cache);
+            return this;
+        }
+
+        /**
+         * Build {@link IndexedCacheHierarchy}
+         *
+         * @return a new {@link IndexedCacheHierarchy} instance
+         */
+        public IndexedCacheHierarchy build() {
+            return new IndexedCacheHierarchy(caches.toArray(new Cache[0]));
+        }
+
+        private List<Cache> caches = new ArrayList<>();
+    }
+
+    @Override
+    public List<Cache> getCacheList() {
+        return cacheList;
+    }
+
+    @Override
+    public int getTierCount() {
+        return tiers.length;
+    }
+
+    @Override
+    public Cache getTier(int index) {
+        return tiers[index];
+    }
+
+    @Override
+    public int indexOf(Cache cache) {
+        Integer index = indexes.get(cache);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public Cache getNextCache(Cache cache) {
+        int index = indexOf(cache);
+        return index < 0 || index + 1 >= tiers.length ? null : tiers[index + 1];
+    }
+
+    @Override
+    public Cache getPreviousCache(Cache cache) {
+        int index = indexOf(cache);
+        return index <= 0 ? null : tiers[index - 1];
+    }
+
+    /**
+     * Copy the hierarchy with a new last tier
+     *
+     * @param cache new {@link Cache} instance
+     * @return new {@link IndexedCacheHierarchy} instance
+     * @throws UnacceptableCacheBuildParameter in case when the cache is <code>null</code> or is
+     *                                         in the hierarchy already
+     */
+    public IndexedCacheHierarchy withCache(Cache cache) throws UnacceptableCacheBuildParameter {
+        return withCache(tiers.length, cache);
+    }
+
+    /**
+     * Copy the hierarchy with a new tier inserted at the index. Tiers from the index are
+     * shifted down
+     *
+     * @param index index of the new tier, from 0 to {@link #getTierCount()}
+     * @param cache new {@link Cache} instance
+     * @return new {@link IndexedCacheHierarchy} instance
+     * @throws UnacceptableCacheBuildParameter in case when the cache is <code>null</code> or is
+     *                                         in the hierarchy already, or index is out of range
+     */
+    public IndexedCacheHierarchy withCache(int index, Cache cache) throws
+            UnacceptableCacheBuildParameter {
+        checkNewCache(cacheList, cache);
+        if (index < 0 || index > tiers.length) {
+            throw new UnacceptableCacheBuildParameter(String.format("Tier index must be in " +
+                    "[0,%s] range. Provided value is %s", tiers.length, index));
+        }
+        Cache[] newTiers = new Cache[tiers.length + 1];
+        System.arraycopy(tiers, 0, newTiers, 0, index);
+        newTiers[index] = cache;
+        System.arraycopy(tiers, index, newTiers, index + 1, tiers.length - index);
+        return new IndexedCacheHierarchy(newTiers);
+    }
+
+    /**
+     * Copy the hierarchy without the tier of the cache. Objects of the cache are not moved
+     * anywhere, so usually an empty cache is removed
+     *
+     * @param cache {@link Cache} instance to remove
+     * @return new {@link IndexedCacheHierarchy} instance
+     * @throws UnacceptableCacheBuildParameter in case when the cache is not in the hierarchy
+     */
+    public IndexedCacheHierarchy withoutCache(Cache cache) throws
+            UnacceptableCacheBuildParameter {
+        int index = indexOf(cache);
+        if (index < 0) {
+            throw new UnacceptableCacheBuildParameter("Cache is not in the hierarchy");
+        }
+        Cache[] newTiers = new Cache[tiers.length - 1];
+        System.arraycopy(tiers, 0, newTiers, 0, index);
+        System.arraycopy(tiers, index + 1, newTiers, index, tiers.length - index - 1);
+        return new IndexedCacheHierarchy(newTiers);
+    }
+
+    private static void checkNewCache(List<Cache> caches, Cache cache) throws
+            UnacceptableCacheBuildParameter {
+        if (cache == null) {
+            throw new UnacceptableCacheBuildParameter("Cache can not be null");
+        }
+        for (Cache addedCache : caches) {
+            if (addedCache == cache) {
+                throw new UnacceptableCacheBuildParameter(String.format("Cache %s is in the " +
+                        "hierarchy already", cache.getCacheName()));
+            }
+        }
+    }
+
+    private final Cache[] tiers;
+    private final List<Cache> cacheList;
+    // tier index of each cache, by identity
+    private final Map<Cache, Integer> indexes;
+}
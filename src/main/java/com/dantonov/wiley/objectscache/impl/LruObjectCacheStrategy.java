@@ -0,0 +1,64 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CacheHierarchy;
+import com.dantonov.wiley.objectscache.ObjectCacheStrategy;
+
+/**
+ * {@link ObjectCacheStrategy} moving least recently used objects to the next cache.<br>
+ * <ul>Details of implementation:
+ * <li>allocation, release and promotion work as in {@link ObjectCacheStrategyImpl}</li>
+ * <li>{@link #onHit(ObjectInCache, Cache)} only records the access in {@link AccessBuffer}.
+ * Reader does not lock</li>
+ * <li>recorded accesses are applied in batches before each reallocation, or when the buffer
+ * is full: accessed object is moved to the tail of its cache order</li>
+ * <li>{@link #reallocateObjects(CacheHierarchy)} moves objects from the head of the order, so
+ * least recently used objects are moved to the next cache first</li>
+ * </ul>
+ */
+public class LruObjectCacheStrategy extends ObjectCacheStrategyImpl {
+
+    /**
+     * Constructor for {@link LruObjectCacheStrategy}. Objects are not promoted
+     */
+    public LruObjectCacheStrategy() {
+        this(0);
+    }
+
+    /**
+     * Constructor for {@link LruObjectCacheStrategy}
+     *
+     * @param promotionThreshold amount of hits in a lower cache to promote object to the first
+     *                           cache. 0 or less means objects are not promoted
+     */
+    public LruObjectCacheStrategy(int promotionThreshold) {
+        super(promotionThreshold);
+        accessBuffer = new AccessBuffer<>();
+    }
+
+    @Override
+    public void onHit(ObjectInCache objectInCache, Cache cache) {
+        super.onHit(objectInCache, cache);
+        CacheOrderIndex.Entry entry = getEntry(objectInCache.getUuid());
+        if (entry != null && accessBuffer.record(entry)) {
+            drainAccessBuffer();
+        }
+    }
+
+    @Override
+    public void reallocateObjects(CacheHierarchy cacheHierarchy) {
+        drainAccessBuffer();
+        super.reallocateObjects(cacheHierarchy);
+    }
+
+    private void drainAccessBuffer() {
+        accessBuffer.drain(entry -> {
+            CacheOrderIndex cacheIndex = entry.getIndex();
+            if (cacheIndex != null) {
+                cacheIndex.moveToLast(entry);
+            }
+        });
+    }
+
+    private final AccessBuffer<CacheOrderIndex.Entry> accessBuffer;
+}
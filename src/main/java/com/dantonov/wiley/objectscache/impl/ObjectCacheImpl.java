@@ -1,21 +1,86 @@
 package com.dantonov.wiley.objectscache.impl;
 
+import com.dantonov.wiley.objectscache.Cache;
 import com.dantonov.wiley.objectscache.CacheHierarchy;
 import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.Expiry;
+import com.dantonov.wiley.objectscache.IdGenerator;
 import com.dantonov.wiley.objectscache.ObjectCacheStrategy;
 import com.dantonov.wiley.objectscache.ObjectsCache;
 import com.dantonov.wiley.objectscache.exceptions.AllocationException;
 import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
 import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.metrics.CacheStatistics;
+import com.dantonov.wiley.objectscache.impl.metrics.CacheStatisticsBean;
+import com.dantonov.wiley.objectscache.impl.metrics.LatencyHistogram;
+import com.dantonov.wiley.objectscache.impl.metrics.TierStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Implementation for {@link ObjectsCache}
+ * Implementation for {@link ObjectsCache}<br>
+ * By default objects are reallocated between caches on the caller thread after each call.
+ * If {@link ReallocationScheduler} is configured, calls changing caches load only signal it
+ * and reallocation runs on the scheduler thread. Retrieving an object does not trigger
+ * reallocation in this case.<br>
+ * Batch operations reallocate objects once per batch. Batch retrieval looks objects up cache by
+ * cache, objects of blocking caches (see {@link Cache#isBlocking()}) are retrieved in parallel
+ * on the I/O executor.<br>
+ * Asynchronous operations do not block the caller on blocking caches: an object found in
+ * caches above the first blocking one is returned by completed future, other work runs on the
+ * I/O executor. Reallocation is not run by the caller thread in this case.<br>
+ * Objects may expire by {@link Expiry} configured for the cache or given on caching. Expired
+ * objects are released by the {@link ExpirationScheduler} thread in batches and are not
+ * returned even before they are released.<br>
+ * Retrieval and reallocation times, and hits, misses and moved objects of each cache (see
+ * {@link Cache#getMetrics()}) are available by {@link #getStatistics()}. If JMX name is
+ * configured, they are also exposed by {@link com.dantonov.wiley.objectscache.impl.metrics
+ * .CacheStatisticsMXBean} registered till close.
  */
-public class ObjectCacheImpl implements ObjectsCache {
+public class ObjectCacheImpl implements ObjectsCache, AutoCloseable {
 
-    private ObjectCacheImpl(CacheHierarchy cacheLevelModel, ObjectCacheStrategy cacheMovingStrategy) {
+    private ObjectCacheImpl(CacheHierarchy cacheLevelModel, ObjectCacheStrategy cacheMovingStrategy,
+                            ReallocationScheduler.Builder reallocationSchedulerBuilder,
+                            ExecutorService ioExecutor, IdGenerator idGenerator, Expiry expiry,
+                            ExpirationScheduler.Builder expirationSchedulerBuilder,
+                            String jmxName) {
         this.cacheLevelModel = cacheLevelModel;
         this.cacheMovingStrategy = cacheMovingStrategy;
+        this.idGenerator = idGenerator;
+        this.expiry = expiry;
+        // scheduler thread is started only when an object with expiry is cached
+        this.expirationScheduler = expirationSchedulerBuilder.setExpirationPass
+                (this::releaseExpiredObjects).build();
+        ownIoExecutor = ioExecutor == null;
+        this.ioExecutor = ownIoExecutor ? Executors.newFixedThreadPool(DEFAULT_IO_THREADS,
+                runnable -> {
+                    Thread thread = new Thread(runnable, IO_THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }) : ioExecutor;
+        getLatency = new LatencyHistogram();
+        reallocationLatency = new LatencyHistogram();
+        expiredObjects = new LongAdder();
+        if (reallocationSchedulerBuilder != null) {
+            try {
+                this.reallocationScheduler = reallocationSchedulerBuilder.setReallocationPass
+                        (this::reallocate).build();
+            } catch (UnacceptableCacheBuildParameter e) {
+                // reallocation pass is set above
+                throw new IllegalStateException(e);
+            }
+        }
+        if (jmxName != null) {
+            registerStatisticsBean(jmxName);
+        }
     }
 
     /**
@@ -45,35 +110,220 @@ public class ObjectCacheImpl implements ObjectsCache {
             return this;
         }
 
+        /**
+         * Method to move reallocation to the background thread of {@link ReallocationScheduler}.
+         * Reallocation pass is set by {@link ObjectCacheImpl} instance
+         *
+         * @param reallocationSchedulerBuilder configured {@link ReallocationScheduler.Builder}
+         * @return {@link Builder} to support build chaining
+         */
+        public Builder setReallocationScheduler(ReallocationScheduler.Builder
+                                                        reallocationSchedulerBuilder) {
+            this.reallocationSchedulerBuilder = reallocationSchedulerBuilder;
+            return this;
+        }
+
+        /**
+         * Method to set executor retrieving objects from blocking caches and running
+         * asynchronous operations. If it is not set, {@link ObjectCacheImpl} instance creates
+         * its own executor and shuts it down on close
+         *
+         * @param ioExecutor {@link ExecutorService} for I/O tasks
+         * @return {@link Builder} to support build chaining
+         */
+        public Builder setIoExecutor(ExecutorService ioExecutor) {
+            this.ioExecutor = ioExecutor;
+            return this;
+        }
+
+        /**
+         * Method to set generator of cached objects identifiers. By default identifiers are
+         * generated by {@link java.util.UUID#randomUUID()}, which shares one secure random
+         * generator between threads. {@link SequentialIdGenerator} does not
+         *
+         * @param idGenerator {@link IdGenerator} instance
+         * @return {@link Builder} to support build chaining
+         */
+        public Builder setIdGenerator(IdGenerator idGenerator) {
+            this.idGenerator = idGenerator;
+            return this;
+        }
+
+        /**
+         * Method to set expiry of cached objects. Expiry given on caching an object replaces
+         * it. By default objects do not expire
+         *
+         * @param expiry {@link Expiry} of cached objects
+         * @return {@link Builder} to support build chaining
+         */
+        public Builder setExpiry(Expiry expiry) {
+            this.expiry = expiry;
+            return this;
+        }
+
+        /**
+         * Method to configure {@link ExpirationScheduler} releasing expired objects. Expiration
+         * pass is set by {@link ObjectCacheImpl} instance
+         *
+         * @param expirationSchedulerBuilder configured {@link ExpirationScheduler.Builder}
+         * @return {@link Builder} to support build chaining
+         */
+        public Builder setExpirationScheduler(ExpirationScheduler.Builder
+                                                      expirationSchedulerBuilder) {
+            this.expirationSchedulerBuilder = expirationSchedulerBuilder;
+            return this;
+        }
+
+        /**
+         * Method to expose statistics by {@link com.dantonov.wiley.objectscache.impl.metrics
+         * .CacheStatisticsMXBean} registered in the platform MBean server. The bean is
+         * unregistered on close. By default statistics are not exposed by JMX
+         *
+         * @param jmxName name of the bean, unique per objects cache
+         * @return {@link Builder} to support build chaining
+         */
+        public Builder setJmxName(String jmxName) {
+            this.jmxName = jmxName;
+            return this;
+        }
+
         /**
          * Build {@link ObjectCacheImpl} instance
          *
          * @return new {@link ObjectCacheImpl} instance
          */
         public ObjectCacheImpl build() {
-            return new ObjectCacheImpl(cacheLevelModel, cacheMovingStrategy);
+            return new ObjectCacheImpl(cacheLevelModel, cacheMovingStrategy,
+                    reallocationSchedulerBuilder, ioExecutor, idGenerator, expiry,
+                    expirationSchedulerBuilder, jmxName);
         }
 
         private CacheHierarchy cacheLevelModel;
         private ObjectCacheStrategy cacheMovingStrategy;
+        private ReallocationScheduler.Builder reallocationSchedulerBuilder;
+        private ExecutorService ioExecutor;
+        private IdGenerator idGenerator;
+        private Expiry expiry = new Expiry.Builder().build();
+        private ExpirationScheduler.Builder expirationSchedulerBuilder = new
+                ExpirationScheduler.Builder();
+        private String jmxName;
     }
 
     @Override
     public CachedObject cacheObject(Object object) throws AllocationException {
-        ObjectInCache objectInCache = new ObjectInCache.Builder().setObject(object).setObjectsCache(this).build();
+        return cacheObject(object, expiry);
+    }
+
+    @Override
+    public CachedObject cacheObject(Object object, Expiry expiry) throws AllocationException {
+        ObjectInCache objectInCache = new ObjectInCache.Builder().setObject(object).setObjectsCache(this)
+                .setIdGenerator(idGenerator).build();
         cacheMovingStrategy.allocateObject(objectInCache, cacheLevelModel);
-        cacheMovingStrategy.reallocateObjects(cacheLevelModel);
+        expirationScheduler.schedule(objectInCache.getUuid(), expiry);
+        loadChanged();
         return objectInCache;
     }
 
     @Override
     public void releaseCachedObject(CachedObject cachedObject) {
+        expirationScheduler.cancel(cachedObject.getUuid());
         cacheMovingStrategy.releaseObject(ObjectInCache.from(cachedObject, this), cacheLevelModel);
-        cacheMovingStrategy.reallocateObjects(cacheLevelModel);
+        loadChanged();
+    }
+
+    @Override
+    public List<CachedObject> cacheAll(Collection<?> objects) throws AllocationException {
+        List<ObjectInCache> objectsInCache = new ArrayList<>(objects.size());
+        for (Object object : objects) {
+            objectsInCache.add(new ObjectInCache.Builder().setObject(object).setObjectsCache
+                    (this).setIdGenerator(idGenerator).build());
+        }
+        cacheMovingStrategy.allocateObjects(objectsInCache, cacheLevelModel);
+        for (ObjectInCache objectInCache : objectsInCache) {
+            expirationScheduler.schedule(objectInCache.getUuid(), expiry);
+        }
+        loadChanged();
+        return new ArrayList<>(objectsInCache);
+    }
+
+    @Override
+    public List<Object> getAll(List<? extends CachedObject> cachedObjects) throws
+            ObjectNotFoundInCache, AllocationInCacheException {
+        List<ObjectInCache> objectsInCache = new ArrayList<>(cachedObjects.size());
+        for (CachedObject cachedObject : cachedObjects) {
+            objectsInCache.add(ObjectInCache.from(cachedObject, this));
+        }
+        return findObjects(objectsInCache);
+    }
+
+    @Override
+    public void releaseAll(Collection<? extends CachedObject> cachedObjects) {
+        List<ObjectInCache> objectsInCache = new ArrayList<>(cachedObjects.size());
+        for (CachedObject cachedObject : cachedObjects) {
+            expirationScheduler.cancel(cachedObject.getUuid());
+            objectsInCache.add(ObjectInCache.from(cachedObject, this));
+        }
+        cacheMovingStrategy.releaseObjects(objectsInCache, cacheLevelModel);
+        loadChanged();
+    }
+
+    @Override
+    public CompletableFuture<CachedObject> cacheObjectAsync(Object object) {
+        // allocation may reach a blocking cache and reallocation may move objects to it
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return cacheObject(object);
+            } catch (AllocationException e) {
+                throw new CompletionException(e);
+            }
+        }, ioExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Object> getObjectAsync(CachedObject cachedObject) {
+        long start = System.nanoTime();
+        ObjectInCache objectInCache = ObjectInCache.from(cachedObject, this);
+        try {
+            checkNotExpired(objectInCache);
+            CacheHierarchy hierarchy = cacheLevelModel;
+            for (int i = 0; i < hierarchy.getTierCount(); i++) {
+                Cache cache = hierarchy.getTier(i);
+                if (cache.isBlocking()) {
+                    break;
+                }
+                ObjectInCache foundObjectInCache = returnObject(cache, objectInCache);
+                if (foundObjectInCache != null) {
+                    getLatency.record(System.nanoTime() - start);
+                    return CompletableFuture.completedFuture(foundObjectInCache.objectRef());
+                }
+            }
+        } catch (ObjectNotFoundInCache | AllocationInCacheException e) {
+            getLatency.record(System.nanoTime() - start);
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        // look through all caches again: the object may have been moved meanwhile
+        // timed from the call, so time waiting for an I/O thread is included
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return lookUpObject(objectInCache);
+            } catch (ObjectNotFoundInCache | AllocationInCacheException e) {
+                throw new CompletionException(e);
+            } finally {
+                getLatency.record(System.nanoTime() - start);
+            }
+        }, ioExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> releaseAsync(CachedObject cachedObject) {
+        return CompletableFuture.runAsync(() -> releaseCachedObject(cachedObject), ioExecutor);
     }
 
     /**
-     * Method to retrieve object, referenced by {@link ObjectInCache}, from underlying {@link CacheHierarchy}
+     * Method to retrieve object, referenced by {@link ObjectInCache}, from underlying {@link CacheHierarchy}.
+     * Time of each call is recorded to get latency, misses and failures included
      *
      * @param objectInCache {@link ObjectInCache} reference to wanted object
      * @return {@link Object}
@@ -82,10 +332,252 @@ public class ObjectCacheImpl implements ObjectsCache {
      *                                    internal exception
      */
     public Object findObject(ObjectInCache objectInCache) throws ObjectNotFoundInCache, AllocationInCacheException {
+        long start = System.nanoTime();
+        try {
+            return lookUpObject(objectInCache);
+        } finally {
+            getLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Method to retrieve a batch of objects from underlying {@link CacheHierarchy}. Objects are
+     * looked up cache by cache from the top one, each cache is asked only for objects not found
+     * in upper caches
+     *
+     * @param objectsInCache {@link List} of {@link ObjectInCache} references to wanted objects
+     * @return {@link List} of objects in order of the references
+     * @throws ObjectNotFoundInCache      in case when any object has not been found
+     * @throws AllocationInCacheException in case when any object has not been retrieved due
+     *                                    to cache internal exception
+     */
+    public List<Object> findObjects(List<ObjectInCache> objectsInCache) throws
+            ObjectNotFoundInCache, AllocationInCacheException {
+        for (ObjectInCache objectInCache : objectsInCache) {
+            checkNotExpired(objectInCache);
+        }
+        if (reallocationScheduler == null) {
+            reallocate();
+        }
+        Object[] foundObjects = new Object[objectsInCache.size()];
+        List<Integer> notFound = new ArrayList<>(objectsInCache.size());
+        for (int i = 0; i < objectsInCache.size(); i++) {
+            notFound.add(i);
+        }
+        CacheHierarchy hierarchy = cacheLevelModel;
+        for (int i = 0; i < hierarchy.getTierCount() && !notFound.isEmpty(); i++) {
+            Cache cache = hierarchy.getTier(i);
+            notFound = cache.isBlocking() ? returnObjectsInParallel(cache, objectsInCache,
+                    notFound, foundObjects) : returnObjects(cache, objectsInCache, notFound,
+                    foundObjects);
+        }
+        if (!notFound.isEmpty()) {
+            throw new ObjectNotFoundInCache(objectsInCache.get(notFound.get(0)));
+        }
+        return Arrays.asList(foundObjects);
+    }
+
+    /**
+     * Replace {@link CacheHierarchy} of this objects cache, e.g. with a copy of
+     * {@link IndexedCacheHierarchy} having a cache added or removed.<br>
+     * Operations in progress finish with the previous hierarchy. Objects of caches which are
+     * not in the new hierarchy are not moved, so only empty caches should be removed. The
+     * strategy remembers the top cache, so it should stay the same
+     *
+     * @param cacheLevelModel new {@link CacheHierarchy}
+     */
+    public void setCacheLevelModel(CacheHierarchy cacheLevelModel) {
+        this.cacheLevelModel = cacheLevelModel;
+        loadChanged();
+    }
+
+    /**
+     * Take snapshot of metrics of this objects cache and of each cache of its hierarchy
+     *
+     * @return {@link CacheStatistics} snapshot
+     */
+    public CacheStatistics getStatistics() {
+        List<TierStatistics> tiers = new ArrayList<>();
+        for (Cache cache : cacheLevelModel.getCacheList()) {
+            tiers.add(cache.getMetrics().getSnapshot(cache.getCacheName()));
+        }
+        return new CacheStatistics(getLatency.getSnapshot(), reallocationLatency.getSnapshot(),
+                expiredObjects.sum(), tiers);
+    }
+
+    /**
+     * Stop {@link ExpirationScheduler} thread, {@link ReallocationScheduler} thread if it is
+     * configured, and own I/O executor. Unregister statistics bean if it is registered
+     */
+    @Override
+    public void close() {
+        if (statisticsBeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsBeanName);
+            } catch (JMException e) {
+                LOGGER.warn(String.format("Statistics bean %s has not been unregistered",
+                        statisticsBeanName), e);
+            }
+        }
+        expirationScheduler.close();
+        if (reallocationScheduler != null) {
+            reallocationScheduler.close();
+        }
+        if (ownIoExecutor) {
+            ioExecutor.shutdown();
+        }
+    }
+
+    private Object lookUpObject(ObjectInCache objectInCache) throws ObjectNotFoundInCache,
+            AllocationInCacheException {
+        checkNotExpired(objectInCache);
+        if (reallocationScheduler == null) {
+            reallocate();
+        }
+        // look from the top cache: an object being moved down is copied to the next cache
+        // before it is removed from the current one, so it can not be missed
+        CacheHierarchy hierarchy = cacheLevelModel;
+        for (int i = 0; i < hierarchy.getTierCount(); i++) {
+            ObjectInCache foundObjectInCache = returnObject(hierarchy.getTier(i), objectInCache);
+            if (foundObjectInCache != null) {
+                return foundObjectInCache.objectRef();
+            }
+        }
+        throw new ObjectNotFoundInCache(objectInCache);
+    }
+
+    // returns indexes of objects not found in the cache
+    private List<Integer> returnObjects(Cache cache, List<ObjectInCache> objectsInCache,
+                                        List<Integer> indexes, Object[] foundObjects) throws
+            AllocationInCacheException {
+        List<Integer> notFound = new ArrayList<>();
+        for (Integer index : indexes) {
+            ObjectInCache foundObjectInCache = returnObject(cache, objectsInCache.get(index));
+            if (foundObjectInCache != null) {
+                foundObjects[index] = foundObjectInCache.objectRef();
+            } else {
+                notFound.add(index);
+            }
+        }
+        return notFound;
+    }
+
+    // returns indexes of objects not found in the cache
+    private List<Integer> returnObjectsInParallel(Cache cache, List<ObjectInCache>
+            objectsInCache, List<Integer> indexes, Object[] foundObjects) throws
+            AllocationInCacheException {
+        List<CompletableFuture<ObjectInCache>> futures = new ArrayList<>(indexes.size());
+        for (Integer index : indexes) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return returnObject(cache, objectsInCache.get(index));
+                } catch (AllocationInCacheException e) {
+                    throw new CompletionException(e);
+                }
+            }, ioExecutor));
+        }
+        List<Integer> notFound = new ArrayList<>();
+        AllocationInCacheException exception = null;
+        for (int i = 0; i < indexes.size(); i++) {
+            ObjectInCache foundObjectInCache;
+            try {
+                foundObjectInCache = futures.get(i).join();
+            } catch (CompletionException e) {
+                // wait for other reads before rethrowing
+                exception = e.getCause() instanceof AllocationInCacheException ?
+                        (AllocationInCacheException) e.getCause() : new
+                        AllocationInCacheException();
+                continue;
+            }
+            if (foundObjectInCache != null) {
+                foundObjects[indexes.get(i)] = foundObjectInCache.objectRef();
+            } else {
+                notFound.add(indexes.get(i));
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        return notFound;
+    }
+
+    // returns null if the object is not found in the cache
+    private ObjectInCache returnObject(Cache cache, ObjectInCache objectInCache) throws
+            AllocationInCacheException {
+        long start = System.nanoTime();
+        try {
+            ObjectInCache foundObjectInCache = cache.returnObject(objectInCache);
+            if (foundObjectInCache != null) {
+                cache.getMetrics().recordHit(System.nanoTime() - start);
+                cacheMovingStrategy.onHit(foundObjectInCache, cache);
+            }
+            return foundObjectInCache;
+        } catch (ObjectNotFoundInCache e) {
+            // not in this cache, or has just been moved to the next one
+            cache.getMetrics().recordMiss();
+            return null;
+        }
+    }
+
+    // records access, so the object expiring after access lives longer
+    private void checkNotExpired(ObjectInCache objectInCache) throws ObjectNotFoundInCache {
+        if (!expirationScheduler.onAccess(objectInCache.getUuid())) {
+            throw new ObjectNotFoundInCache(objectInCache);
+        }
+    }
+
+    private void releaseExpiredObjects(List<ObjectInCache> expiredObjects) {
+        cacheMovingStrategy.releaseObjects(expiredObjects, cacheLevelModel);
+        this.expiredObjects.add(expiredObjects.size());
+        loadChanged();
+    }
+
+    private void loadChanged() {
+        if (reallocationScheduler != null) {
+            reallocationScheduler.signal();
+        } else {
+            reallocate();
+        }
+    }
+
+    private void reallocate() {
+        long start = System.nanoTime();
         cacheMovingStrategy.reallocateObjects(cacheLevelModel);
-        return cacheLevelModel.getCacheList().parallelStream().filter((cache -> cache.contains(objectInCache))).findFirst().orElseThrow(() -> new ObjectNotFoundInCache(objectInCache)).returnObject(objectInCache).objectRef();
+        reallocationLatency.record(System.nanoTime() - start);
     }
 
-    private CacheHierarchy cacheLevelModel;
+    // statistics are not essential: the cache works even if the bean is not registered
+    private void registerStatisticsBean(String jmxName) {
+        try {
+            ObjectName beanName = CacheStatisticsBean.getObjectName(jmxName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new CacheStatisticsBean
+                    (this::getStatistics), beanName);
+            statisticsBeanName = beanName;
+        } catch (JMException e) {
+            LOGGER.warn(String.format("Statistics bean %s has not been registered", jmxName), e);
+        }
+    }
+
+    // replaced as a whole on reconfiguration, read once per operation
+    private volatile CacheHierarchy cacheLevelModel;
     private ObjectCacheStrategy cacheMovingStrategy;
+    private ReallocationScheduler reallocationScheduler;
+    private final ExpirationScheduler expirationScheduler;
+    // expiry of objects cached without their own one
+    private final Expiry expiry;
+    private final ExecutorService ioExecutor;
+    // null means random identifiers
+    private final IdGenerator idGenerator;
+    // executor is shut down on close only if it has been created by this instance
+    private final boolean ownIoExecutor;
+    private final LatencyHistogram getLatency;
+    private final LatencyHistogram reallocationLatency;
+    private final LongAdder expiredObjects;
+    // null if statistics are not exposed by JMX
+    private ObjectName statisticsBeanName;
+
+    private static final int DEFAULT_IO_THREADS = Math.max(4, Runtime.getRuntime()
+            .availableProcessors());
+    private static final String IO_THREAD_NAME = "objects-cache-io";
+    private final static Logger LOGGER = LoggerFactory.getLogger(ObjectCacheImpl.class);
 }
@@ -4,8 +4,15 @@ import com.dantonov.wiley.objectscache.*;
 import com.dantonov.wiley.objectscache.exceptions.AllocationException;
 import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
 import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
 
 /**
  * Basic implementation for {@link ObjectCacheStrategy}
@@ -19,135 +26,450 @@ import java.util.*;
  * next cache<br>
  * </li>
  * <li>
+ * {@link ObjectCacheStrategyImpl#allocateObjects(List, CacheHierarchy)}<br>
+ * Choose the cache for the whole batch once, the same way as for one object, and put all
+ * objects there. Overloaded cache is drained by the next reallocation. If an object has not
+ * been allocated, objects of the batch allocated before are released
+ * </li>
+ * <li>
  * {@link ObjectCacheStrategyImpl#reallocateObjects(CacheHierarchy)}<br>
  * Move objects from cache to next cache in {@link CacheHierarchy} till any
  * {@link com.dantonov.wiley.objectscache.ConfigurationValue.WARN_LEVEL#WARN} or
  * {@link com.dantonov.wiley.objectscache.ConfigurationValue.WARN_LEVEL#CRITICAL} is not
  * responding<br>
- * - do this for each cache in {@link CacheHierarchy}
+ * - do this for each cache in {@link CacheHierarchy}<br>
+ * - objects are moved in allocation order. Only objects stored in the drained cache are
+ * visited
  * </li>
  * <li>
  * {@link ObjectCacheStrategyImpl#releaseObject(ObjectInCache, CacheHierarchy)}<br>
- * Remove object from cache
+ * Remove object from cache. Objects are removed without being read, a batch released by
+ * {@link ObjectCacheStrategyImpl#releaseObjects(List, CacheHierarchy)} is removed by one
+ * {@link Cache#removeObjects} call per cache
+ * </li>
+ * <li>
+ * {@link ObjectCacheStrategyImpl#onHit(ObjectInCache, Cache)}<br>
+ * If promotion threshold is configured, count hits of objects stored in lower caches. Object
+ * hit threshold times in its cache is promoted to the first cache on next
+ * {@link ObjectCacheStrategyImpl#reallocateObjects(CacheHierarchy)}. Colder objects of the
+ * first cache are moved down by the same reallocation. Hits are counted from zero each time
+ * the object is placed to another cache, so rare reads do not move objects back and forth
  * </li>
  * </ul>
+ * <ul>Concurrency:
+ * <li>there is no strategy wide lock. Underlying caches are expected to be thread safe</li>
+ * <li>objects of each cache are ordered by its own {@link CacheOrderIndex}. Allocation, release
+ * and move lock the index only to link or unlink the object, which is O(1). Released objects
+ * are unlinked, so tracking memory is bounded by the amount of live objects</li>
+ * <li>each cache has its own drain lock, taken only by the thread moving objects out of the cache.
+ * Other threads do not wait for it: if a cache is being drained by another thread it is
+ * skipped</li>
+ * <li>object is moved by copying it to the next cache first and removing it from the current
+ * cache after. So a reader looking through caches from the top one always finds the object</li>
+ * <li>an object released while being moved is removed from the next cache by the moving
+ * thread</li>
+ * </ul>
+ * Moved and promoted objects are counted by {@link Cache#getMetrics()} of both caches.
  */
 public class ObjectCacheStrategyImpl implements ObjectCacheStrategy {
 
     /**
-     * Constructor for {@link ObjectCacheStrategyImpl}
+     * Constructor for {@link ObjectCacheStrategyImpl}. Objects are not promoted
      */
     public ObjectCacheStrategyImpl() {
-        cachedObjects = new LinkedList<>();
+        this(0);
+    }
+
+    /**
+     * Constructor for {@link ObjectCacheStrategyImpl}
+     *
+     * @param promotionThreshold amount of hits in a lower cache to promote object to the first
+     *                           cache. 0 or less means objects are not promoted
+     */
+    public ObjectCacheStrategyImpl(int promotionThreshold) {
+        this.promotionThreshold = promotionThreshold;
+        cachedObjects = new ConcurrentHashMap<>();
+        cacheIndexes = new ConcurrentHashMap<>();
+        pendingPromotions = new ConcurrentLinkedQueue<>();
     }
 
     @Override
     public void allocateObject(ObjectInCache objectInCache, CacheHierarchy cacheHierarchy)
             throws AllocationException {
-        synchronized (cachedObjects) {
-            Iterator<Cache> cacheIterator = cacheHierarchy.getCacheList().iterator();
-            while (cacheIterator.hasNext()) {
-                Cache cache = cacheIterator.next();
-                if (getNotRespondingConfigurationValues(cache, Arrays.asList(ConfigurationValue
-                        .WARN_LEVEL.CRITICAL)) == 0) {
-                    // everything is fine. can put here
+        rememberFirstCache(cacheHierarchy);
+        int tierCount = cacheHierarchy.getTierCount();
+        for (int i = 0; i < tierCount; i++) {
+            Cache cache = cacheHierarchy.getTier(i);
+            if (getNotRespondingConfigurationValues(cache, CRITICAL_LEVELS) == 0) {
+                // everything is fine. can put here
+                allocate(cache, objectInCache);
+                return;
+            } else {
+                if (i == tierCount - 1) {
+                    // there is at least one not responding critical configuration value, but
+                    // this is a last cache in hierarchy. so try to put here anyway
                     allocate(cache, objectInCache);
                     return;
-                } else {
-                    if (!cacheIterator.hasNext()) {
-                        // there is at least one not responding critical configuration value, but
-                        // this is a last cache in hierarchy. so try to put here anyway
-                        allocate(cache, objectInCache);
-                        return;
-                    }
                 }
             }
+        }
+        throw new AllocationException();
+    }
+
+    @Override
+    public void allocateObjects(List<ObjectInCache> objectsInCache, CacheHierarchy
+            cacheHierarchy) throws AllocationException {
+        rememberFirstCache(cacheHierarchy);
+        // configuration values are checked once for the whole batch
+        Cache targetCache = null;
+        for (int i = 0; i < cacheHierarchy.getTierCount(); i++) {
+            Cache cache = cacheHierarchy.getTier(i);
+            targetCache = cache;
+            if (getNotRespondingConfigurationValues(cache, CRITICAL_LEVELS) == 0) {
+                break;
+            }
+        }
+        if (targetCache == null) {
             throw new AllocationException();
         }
+        for (int i = 0; i < objectsInCache.size(); i++) {
+            try {
+                allocate(targetCache, objectsInCache.get(i));
+            } catch (AllocationInCacheException e) {
+                releaseObjects(objectsInCache.subList(0, i), cacheHierarchy);
+                throw e;
+            }
+        }
     }
 
     @Override
     public void releaseObject(ObjectInCache objectInCache, CacheHierarchy
             cacheHierarchy) {
-        synchronized (cachedObjects) {
-            cacheHierarchy.getCacheList().stream().filter((cache) -> cache.contains(objectInCache))
-                    .forEach((cache -> {
-                        try {
-                            cache.freeObject(objectInCache);
-                        } catch (ObjectNotFoundInCache | AllocationInCacheException e) {
-                            // TODO: here we should log exception
-                        }
-                    }));
+        releaseObjects(Collections.singletonList(objectInCache), cacheHierarchy);
+    }
+
+    @Override
+    public void releaseObjects(List<ObjectInCache> objectsInCache, CacheHierarchy
+            cacheHierarchy) {
+        // forget the objects first: a thread moving any of them right now will see it is
+        // released
+        for (ObjectInCache objectInCache : objectsInCache) {
+            CacheOrderIndex.Entry entry = cachedObjects.remove(objectInCache.getUuid());
+            if (entry != null) {
+                CacheOrderIndex cacheIndex = entry.getIndex();
+                if (cacheIndex != null) {
+                    cacheIndex.unlink(entry);
+                }
+            }
+        }
+        // each cache removes its objects at once, so a storage deletes them in one batch
+        for (int i = 0; i < cacheHierarchy.getTierCount(); i++) {
+            Cache cache = cacheHierarchy.getTier(i);
+            List<ObjectInCache> containedObjects = objectsInCache.stream().filter
+                    (cache::contains).collect(Collectors.toList());
+            if (!containedObjects.isEmpty()) {
+                cache.removeObjects(containedObjects);
+            }
+        }
+    }
+
+    @Override
+    public void onHit(ObjectInCache objectInCache, Cache cache) {
+        if (promotionThreshold <= 0 || cache == firstCache) {
+            return;
+        }
+        CacheOrderIndex.Entry entry = getEntry(objectInCache.getUuid());
+        // only the thread reaching the threshold queues the promotion
+        if (entry != null && entry.incrementHits() == promotionThreshold) {
+            pendingPromotions.add(new Promotion(entry, objectInCache, cache));
         }
     }
 
     @Override
     public void reallocateObjects(CacheHierarchy cacheHierarchy) {
-        synchronized (cachedObjects) {
-            Iterator<Cache> cacheIterator = cacheHierarchy.getCacheList().iterator();
-            while (cacheIterator.hasNext()) {
-                Cache cache = cacheIterator.next();
-                boolean isLastCache = !cacheIterator.hasNext();
-                boolean itHasNotRespondingConfigValues = getNotRespondingConfigurationValues(cache,
-                        Arrays.asList(ConfigurationValue.WARN_LEVEL
-                                .CRITICAL, ConfigurationValue.WARN_LEVEL.WARN)) > 0;
-
-                if (itHasNotRespondingConfigValues && !isLastCache) {
-                    // move objects to next cache until configuration values will not exist
+        rememberFirstCache(cacheHierarchy);
+        promotePendingObjects();
+        int tierCount = cacheHierarchy.getTierCount();
+        for (int i = 0; i < tierCount; i++) {
+            Cache cache = cacheHierarchy.getTier(i);
+            boolean isLastCache = i == tierCount - 1;
 
-                    Cache nextCache = getNextCache(cache, cacheHierarchy);
-
-                    for (UUID cachedObjectUuid : cachedObjects) {
-                        if (getNotRespondingConfigurationValues(cache,
-                                Arrays.asList(ConfigurationValue.WARN_LEVEL
-                                        .CRITICAL, ConfigurationValue.WARN_LEVEL.WARN)) > 0) {
-                            ObjectInCache retrievedObjectInCache = null;
-                            try {
-                                retrievedObjectInCache = cache.freeObject(ObjectInCache
-                                        .from(cachedObjectUuid));
-                            } catch (ObjectNotFoundInCache | AllocationInCacheException e) {
-                                // TODO: here we should log exception
-                            }
-                            if (retrievedObjectInCache != null) {
-                                try {
-                                    nextCache.allocateObject(retrievedObjectInCache);
-                                } catch (AllocationInCacheException e) {
-                                    // TODO: here we should log exception
-                                }
-                            }
-                        } else {
-                            break;
-                        }
-                    }
+            // re-check after unlocking: objects could be added while the lock was held
+            while (!isLastCache && isOverloaded(cache)) {
+                CacheOrderIndex cacheIndex = getCacheIndex(cache);
+                Lock drainLock = cacheIndex.getDrainLock();
+                if (!drainLock.tryLock()) {
+                    // another thread is moving objects out of this cache
+                    break;
+                }
+                int movedObjects;
+                try {
+                    // move objects to next cache until configuration values will not exist
+                    movedObjects = moveObjects(cacheIndex, getCacheIndex(cacheHierarchy.getTier(i +
+                            1)));
+                } finally {
+                    drainLock.unlock();
+                }
+                if (movedObjects == 0) {
+                    // nothing can be moved out of this cache
+                    break;
                 }
             }
         }
     }
 
-    private Cache getNextCache(Cache currentCache, CacheHierarchy cacheHierarchy) {
-        Iterator<Cache> iterator = cacheHierarchy.getCacheList().iterator();
-        while (iterator.hasNext()) {
-            Cache cache = iterator.next();
-            if (cache == currentCache && iterator.hasNext()) {
-                return iterator.next();
+    /**
+     * Provide tracking entry of live object
+     *
+     * @param uuid identifier of the object
+     * @return {@link CacheOrderIndex.Entry} or <code>null</code> if object is not tracked
+     */
+    CacheOrderIndex.Entry getEntry(UUID uuid) {
+        return cachedObjects.get(uuid);
+    }
+
+    /**
+     * @return the first {@link Cache} of the hierarchy this strategy works with, or
+     * <code>null</code> if the strategy has not been used yet
+     */
+    Cache getFirstCache() {
+        return firstCache;
+    }
+
+    /**
+     * @return amount of objects tracked by this strategy
+     */
+    int getTrackedObjectsCount() {
+        return cachedObjects.size();
+    }
+
+    private void promotePendingObjects() {
+        Cache topCache = firstCache;
+        Promotion promotion;
+        while ((promotion = pendingPromotions.poll()) != null) {
+            CacheOrderIndex.Entry entry = promotion.entry;
+            CacheOrderIndex lowerCacheIndex = getOrderIndex(promotion.cache);
+            // unlinking claims the entry: it can not be moved by another thread meanwhile
+            if (topCache == null || !lowerCacheIndex.unlink(entry)) {
+                // the object can be queued again once it is read threshold times more
+                entry.resetHits();
+                continue;
             }
+            try {
+                topCache.allocateObject(ObjectInCache.from(promotion.objectInCache, promotion
+                        .objectInCache.objectRef()));
+            } catch (AllocationInCacheException e) {
+                LOGGER.warn(String.format("Object %s has not been promoted to %s", entry
+                        .getUuid(), topCache.getCacheName()), e);
+                entry.resetHits();
+                linkLast(entry, lowerCacheIndex);
+                continue;
+            }
+            entry.resetHits();
+            if (!linkLast(entry, getOrderIndex(topCache))) {
+                // object has been released while it was being promoted
+                freeQuietly(topCache, promotion.objectInCache);
+            }
+            freeQuietly(promotion.cache, promotion.objectInCache);
+            promotion.cache.getMetrics().recordMoveOut();
+            topCache.getMetrics().recordMoveIn();
         }
-        return null;
+    }
+
+    private int moveObjects(CacheOrderIndex cacheIndex, CacheOrderIndex nextCacheIndex) {
+        int movedObjects = 0;
+        Deque<CacheOrderIndex.Entry> notMovedEntries = new ArrayDeque<>();
+        while (isOverloaded(cacheIndex.getCache())) {
+            CacheOrderIndex.Entry entry = pollVictim(cacheIndex.getCache());
+            if (entry == null) {
+                break;
+            }
+            switch (moveObject(entry, cacheIndex.getCache(), nextCacheIndex.getCache())) {
+                case MOVED:
+                    movedObjects++;
+                    break;
+                case NOT_MOVED:
+                    notMovedEntries.push(entry);
+                    break;
+                default:
+                    // object is released. entry is not needed anymore
+            }
+        }
+        // keep not moved objects first in order, they will be tried next time
+        while (!notMovedEntries.isEmpty()) {
+            CacheOrderIndex.Entry entry = notMovedEntries.pop();
+            CacheOrderIndex orderIndex = getOrderIndex(cacheIndex.getCache());
+            orderIndex.addFirst(entry);
+            unlinkIfReleased(entry, orderIndex);
+        }
+        return movedObjects;
+    }
+
+    private MoveResult moveObject(CacheOrderIndex.Entry entry, Cache cache, Cache nextCache) {
+        ObjectInCache objectInCache = ObjectInCache.from(entry.getUuid());
+        ObjectInCache retrievedObjectInCache;
+        try {
+            retrievedObjectInCache = cache.returnObject(objectInCache);
+        } catch (ObjectNotFoundInCache e) {
+            // object has been released
+            return MoveResult.RELEASED;
+        } catch (AllocationInCacheException e) {
+            LOGGER.warn(String.format("Object %s has not been read from %s to be moved", entry
+                    .getUuid(), cache.getCacheName()), e);
+            return MoveResult.NOT_MOVED;
+        }
+        try {
+            nextCache.allocateObject(retrievedObjectInCache);
+        } catch (AllocationInCacheException e) {
+            LOGGER.warn(String.format("Object %s has not been moved to %s", entry.getUuid(),
+                    nextCache.getCacheName()), e);
+            return MoveResult.NOT_MOVED;
+        }
+        entry.resetHits();
+        if (!linkLast(entry, getOrderIndex(nextCache))) {
+            // object has been released while it was being copied
+            freeQuietly(nextCache, objectInCache);
+        }
+        freeQuietly(cache, objectInCache);
+        cache.getMetrics().recordMoveOut();
+        nextCache.getMetrics().recordMoveIn();
+        return MoveResult.MOVED;
+    }
+
+    private void freeQuietly(Cache cache, ObjectInCache objectInCache) {
+        try {
+            cache.freeObject(objectInCache);
+        } catch (ObjectNotFoundInCache | AllocationInCacheException e) {
+            // object has been released by another thread
+        }
+    }
+
+    /**
+     * Provide {@link CacheOrderIndex} of the cache. Its drain lock is held while objects are
+     * moved out of the cache
+     *
+     * @param cache {@link Cache} instance
+     * @return {@link CacheOrderIndex} of the cache
+     */
+    CacheOrderIndex getCacheIndex(Cache cache) {
+        return cacheIndexes.computeIfAbsent(cache, CacheOrderIndex::new);
+    }
+
+    /**
+     * Provide {@link CacheOrderIndex} to link an object placed to the cache to. Strategies
+     * keeping several orders for one cache override it. Default is {@link #getCacheIndex(Cache)}
+     *
+     * @param cache {@link Cache} the object is placed to
+     * @return {@link CacheOrderIndex} to link the object to
+     */
+    CacheOrderIndex getOrderIndex(Cache cache) {
+        return getCacheIndex(cache);
+    }
+
+    /**
+     * Unlink the object to be moved out of the cache. Called while the cache drain lock is held.
+     * Default is the head of {@link #getCacheIndex(Cache)}
+     *
+     * @param cache {@link Cache} objects are moved out of
+     * @return unlinked {@link CacheOrderIndex.Entry} or <code>null</code> if there is nothing to
+     * move
+     */
+    CacheOrderIndex.Entry pollVictim(Cache cache) {
+        return getCacheIndex(cache).pollFirst();
+    }
+
+    /**
+     * Link not linked entry to the tail of the index, unless the object has been released
+     *
+     * @param entry      not linked {@link CacheOrderIndex.Entry}
+     * @param orderIndex {@link CacheOrderIndex} to link the entry to
+     * @return <code>true</code> if entry stays linked, <code>false</code> if the object has been
+     * released
+     */
+    boolean linkLast(CacheOrderIndex.Entry entry, CacheOrderIndex orderIndex) {
+        orderIndex.addLast(entry);
+        return !unlinkIfReleased(entry, orderIndex);
+    }
+
+    /**
+     * Check if objects should be moved out of the cache
+     *
+     * @param cache {@link Cache} to check
+     * @return <code>true</code> if any critical or warning configuration value of the cache is
+     * not responding
+     */
+    boolean isOverloaded(Cache cache) {
+        return getNotRespondingConfigurationValues(cache, WARN_LEVELS) > 0;
+    }
+
+    private void rememberFirstCache(CacheHierarchy cacheHierarchy) {
+        if (firstCache == null && cacheHierarchy.getTierCount() > 0) {
+            firstCache = cacheHierarchy.getTier(0);
+        }
+    }
+
+    private boolean unlinkIfReleased(CacheOrderIndex.Entry entry, CacheOrderIndex orderIndex) {
+        // release unlinks the entry from the index it sees. an entry linked after that is
+        // unlinked here
+        if (cachedObjects.get(entry.getUuid()) != entry) {
+            orderIndex.unlink(entry);
+            return true;
+        }
+        return false;
     }
 
     private void allocate(Cache cache, ObjectInCache objectInCache) throws AllocationInCacheException {
+        CacheOrderIndex.Entry entry = new CacheOrderIndex.Entry(objectInCache.getUuid());
         cache.allocateObject(objectInCache);
-        cachedObjects.add(objectInCache.getUuid());
+        cachedObjects.put(entry.getUuid(), entry);
+        getOrderIndex(cache).addLast(entry);
     }
 
     private long getNotRespondingConfigurationValues(Cache cache, List<ConfigurationValue
             .WARN_LEVEL>
             warn_levels) {
-        return warn_levels.stream().mapToLong((warn_level) -> cache.getConfigurationValues().stream
-                ().filter((configurationValue -> configurationValue.getWarnLevel().equals
-                (warn_level))).filter((configurationValue -> !configurationValue
-                .isResponding())).count()).sum();
+        // called for each tier on every operation, so plain loops instead of streams
+        long notResponding = 0;
+        for (ConfigurationValue configurationValue : cache.getConfigurationValues()) {
+            if (warn_levels.contains(configurationValue.getWarnLevel()) && !configurationValue
+                    .isResponding()) {
+                notResponding++;
+            }
+        }
+        return notResponding;
+    }
+
+    private enum MoveResult {
+        MOVED, NOT_MOVED, RELEASED
+    }
+
+    // object retrieved from a lower cache often enough to be promoted
+    private static class Promotion {
+
+        Promotion(CacheOrderIndex.Entry entry, ObjectInCache objectInCache, Cache cache) {
+            this.entry = entry;
+            this.objectInCache = objectInCache;
+            this.cache = cache;
+        }
+
+        private final CacheOrderIndex.Entry entry;
+        // contains retrieved object, so it is not read from the lower cache again
+        private final ObjectInCache objectInCache;
+        private final Cache cache;
     }
 
-    private List<UUID> cachedObjects;
+    private static final List<ConfigurationValue.WARN_LEVEL> CRITICAL_LEVELS = Collections
+            .singletonList(ConfigurationValue.WARN_LEVEL.CRITICAL);
+    private static final List<ConfigurationValue.WARN_LEVEL> WARN_LEVELS = Arrays.asList
+            (ConfigurationValue.WARN_LEVEL.CRITICAL, ConfigurationValue.WARN_LEVEL.WARN);
+
+    // live objects. released objects are removed
+    private final ConcurrentMap<UUID, CacheOrderIndex.Entry> cachedObjects;
+    // objects of each cache in allocation order
+    private final Map<Cache, CacheOrderIndex> cacheIndexes;
+    private final int promotionThreshold;
+    private final Queue<Promotion> pendingPromotions;
+    private volatile Cache firstCache;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ObjectCacheStrategyImpl.class);
 }
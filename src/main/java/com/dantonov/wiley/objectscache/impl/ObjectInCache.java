@@ -1,6 +1,7 @@
 package com.dantonov.wiley.objectscache.impl;
 
 import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.IdGenerator;
 import com.dantonov.wiley.objectscache.ObjectsCache;
 import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
 import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
@@ -48,17 +49,31 @@ public class ObjectInCache implements CachedObject {
             return this;
         }
 
+        /**
+         * Set {@link IdGenerator} for identifier of the object. By default identifier is
+         * generated by {@link UUID#randomUUID()}
+         *
+         * @param idGenerator {@link IdGenerator} instance
+         * @return {@link Builder} to support build chaining
+         */
+        Builder setIdGenerator(IdGenerator idGenerator) {
+            this.idGenerator = idGenerator;
+            return this;
+        }
+
         /**
          * Build {@link ObjectInCache} instance
          *
          * @return new {@link ObjectInCache} instance
          */
         public ObjectInCache build() {
-            return new ObjectInCache(this.object, this.objectsCache, UUID.randomUUID());
+            return new ObjectInCache(this.object, this.objectsCache, idGenerator == null ? UUID
+                    .randomUUID() : idGenerator.nextId());
         }
 
         private Object object;
         private ObjectCacheImpl objectsCache;
+        private IdGenerator idGenerator;
     }
 
     /**
@@ -0,0 +1,426 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.ConfigurationValue;
+import com.dantonov.wiley.objectscache.ObjectCacheStrategy;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.codec.Codec;
+import com.dantonov.wiley.objectscache.impl.codec.JavaSerializationCodec;
+import com.dantonov.wiley.objectscache.impl.metrics.TierMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link Cache} implementation to keep serialized objects in direct memory, outside of the
+ * heap. It is meant to be placed between {@link InMemoryCache} and
+ * {@link SerializableStorageCache}: it holds more objects than the heap can, and reads do not
+ * touch the file system.<br>
+ * Objects are converted to bytes by configured {@link Codec}. By default only serializable
+ * objects will be cached for this implementation<br>
+ * <ul>Details of implementation:
+ * <li>memory is allocated in slabs of direct {@link ByteBuffer}. Each slab is split into chunks
+ * of one size class. Size classes are powers of two from 64 bytes to the slab size</li>
+ * <li>object is stored to the smallest chunk it fits. Object larger than a slab is not
+ * allocated</li>
+ * <li>freed chunks are linked to the free list of their size class. The link is kept in the
+ * chunk itself, so free lists do not use the heap. Slabs are not returned to the system,
+ * their chunks are reused</li>
+ * <li>objects are found by {@link OffHeapIndex} kept in direct memory as well</li>
+ * <li>occupied size is the total size of used chunks. It is checked by a critical
+ * {@link ConfigurationValue} and a percent load one, as in {@link InMemoryCache}</li>
+ * </ul>
+ * Cache is thread safe. Readers share a read lock, which is held only to copy the bytes of
+ * the object to a per-thread buffer. Deserialization is done out of the lock.<br>
+ * <b>Note:</b> Cache is allowed to put new objects even if max cache size exceeded.
+ * {@link ObjectCacheStrategy} should move objects to the next cache.
+ */
+public class OffHeapCache implements Cache {
+
+    private OffHeapCache(long maxCacheSize, int dangerLoad, int slabSize, Codec codec) {
+        this.slabSize = slabSize;
+        this.codec = codec;
+        threadReadBuffer = ThreadLocal.withInitial(ReadBuffer::new);
+        freeLists = new long[Integer.numberOfTrailingZeros(slabSize) - Integer
+                .numberOfTrailingZeros(MIN_CHUNK_SIZE) + 1];
+        Arrays.fill(freeLists, OffHeapIndex.NO_ADDRESS);
+        slabs = new ArrayList<>();
+        index = new OffHeapIndex(INITIAL_INDEX_CAPACITY);
+        lock = new ReentrantReadWriteLock();
+        metrics = new TierMetrics();
+
+        occupiedSizeConfigurationValue = new SuppliedConfigurationValue<>(maxCacheSize,
+                this::getOccupiedSize, (currentState, specialState) -> currentState <=
+                specialState, ConfigurationValue.WARN_LEVEL.CRITICAL, maxSize -> String.format(
+                "Max occupied off-heap size in bytes is %s", maxSize), currentSize -> String
+                .format("Current occupied off-heap size in bytes is %s", currentSize));
+        percentLoadConfigurationValue = new SuppliedConfigurationValue<>((long) dangerLoad,
+                this::getOccupiedSize, (currentState, specialState) -> {
+            if (specialState == 0) {
+                return currentState == 0;
+            }
+            return (((double) currentState * 100) / maxCacheSize) <= specialState;
+        }, ConfigurationValue.WARN_LEVEL.WARN, maxPercent -> String.format("Cache load " +
+                "should not exceed %s percents", maxPercent), current -> String.format(
+                "Current load is %s percents", ((double) current / maxCacheSize) * 100));
+        configurationValues = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+                occupiedSizeConfigurationValue, percentLoadConfigurationValue)));
+    }
+
+    /**
+     * Builder for {@link OffHeapCache} instance<br>
+     * <ul>Parameters may be configured:
+     * <li>max cache size in bytes is a critical {@link ConfigurationValue}</li>
+     * <li>danger load means max cache occupancy considered as normal for this cache</li>
+     * <li>slab size is the amount of direct memory allocated at once. It limits the size of
+     * stored object</li>
+     * </ul>
+     */
+    public static class Builder {
+
+        /**
+         * Configure max cache size
+         *
+         * @param maxCacheSize max occupied size in bytes for this cache
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setMaxCacheSize(long maxCacheSize) throws UnacceptableCacheBuildParameter {
+            if (maxCacheSize <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Max cache size " +
+                        "parameter can not be less or equals 0. Provided value is %s",
+                        maxCacheSize));
+            }
+            this.maxCacheSize = maxCacheSize;
+            return this;
+        }
+
+        /**
+         * Configure dangerous loading for the cache
+         *
+         * @param dangerLoad integer value mentioning max suitable cache occupancy in percents
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setDangerLoad(int dangerLoad) throws UnacceptableCacheBuildParameter {
+            if (dangerLoad < 0 || dangerLoad > 100) {
+                throw new UnacceptableCacheBuildParameter(String.format("Danger load is a " +
+                        "percent value. It can not be out of [0,100] range. Provided value is %s",
+                        dangerLoad));
+            }
+            this.dangerLoad = dangerLoad;
+            return this;
+        }
+
+        /**
+         * Configure slab size
+         *
+         * @param slabSize size of one slab in bytes. Must be a power of two from 4 KB to 1 GB
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setSlabSize(int slabSize) throws UnacceptableCacheBuildParameter {
+            if (slabSize < MIN_SLAB_SIZE || slabSize > MAX_SLAB_SIZE || Integer.bitCount
+                    (slabSize) != 1) {
+                throw new UnacceptableCacheBuildParameter(String.format("Slab size must be a " +
+                        "power of two in [%s,%s] range. Provided value is %s", MIN_SLAB_SIZE,
+                        MAX_SLAB_SIZE, slabSize));
+            }
+            this.slabSize = slabSize;
+            return this;
+        }
+
+        /**
+         * Configure codec converting objects to bytes
+         *
+         * @param codec {@link Codec} to use
+         * @return Builder to support builder chaining
+         */
+        public Builder setCodec(Codec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Build {@link OffHeapCache} instance
+         *
+         * @return new {@link OffHeapCache} instance
+         */
+        public OffHeapCache build() {
+            return new OffHeapCache(maxCacheSize, dangerLoad, slabSize, codec);
+        }
+
+        private long maxCacheSize = 256L * 1024 * 1024;
+        private int dangerLoad = 80;
+        private int slabSize = 1024 * 1024;
+        private Codec codec = new JavaSerializationCodec();
+    }
+
+    @Override
+    public Set<ConfigurationValue> getConfigurationValues() {
+        return configurationValues;
+    }
+
+    @Override
+    public void allocateObject(ObjectInCache cachedObject) throws AllocationInCacheException {
+        ByteBuffer bytes;
+        try {
+            long start = System.nanoTime();
+            bytes = codec.encodeToBuffer(cachedObject.objectRef());
+            metrics.recordSerialization(System.nanoTime() - start);
+        } catch (IOException e) {
+            LOGGER.error(String.format("Object %s has not been serialized", cachedObject
+                    .getUuid()), e);
+            throw new AllocationInCacheException();
+        }
+        int sizeClass = getSizeClass(bytes.remaining() + RECORD_HEADER_SIZE);
+        if (sizeClass < 0) {
+            // object does not fit a slab
+            throw new AllocationInCacheException();
+        }
+        lock.writeLock().lock();
+        try {
+            long address = allocateChunk(sizeClass);
+            write(address, bytes);
+            long replacedAddress;
+            try {
+                replacedAddress = index.put(cachedObject.getUuid(), address);
+            } catch (IllegalStateException e) {
+                freeChunk(address);
+                throw new AllocationInCacheException();
+            }
+            if (replacedAddress != OffHeapIndex.NO_ADDRESS) {
+                freeChunk(replacedAddress);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        cachedObject.clearObjectRef();
+    }
+
+    @Override
+    public ObjectInCache freeObject(ObjectInCache cachedObject) throws ObjectNotFoundInCache,
+            AllocationInCacheException {
+        ReadBuffer readBuffer = threadReadBuffer.get();
+        lock.writeLock().lock();
+        try {
+            long address = index.remove(cachedObject.getUuid());
+            if (address == OffHeapIndex.NO_ADDRESS) {
+                throw new ObjectNotFoundInCache(cachedObject);
+            }
+            read(address, readBuffer);
+            freeChunk(address);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return ObjectInCache.from(cachedObject, deserialize(readBuffer));
+    }
+
+    @Override
+    public ObjectInCache returnObject(ObjectInCache cachedObject) throws ObjectNotFoundInCache,
+            AllocationInCacheException {
+        ReadBuffer readBuffer = threadReadBuffer.get();
+        lock.readLock().lock();
+        try {
+            long address = index.get(cachedObject.getUuid());
+            if (address == OffHeapIndex.NO_ADDRESS) {
+                throw new ObjectNotFoundInCache(cachedObject);
+            }
+            read(address, readBuffer);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ObjectInCache.from(cachedObject, deserialize(readBuffer));
+    }
+
+    @Override
+    public Boolean contains(ObjectInCache objectInCache) {
+        lock.readLock().lock();
+        try {
+            return index.get(objectInCache.getUuid()) != OffHeapIndex.NO_ADDRESS;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TierMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String getCacheName() {
+        return OFF_HEAP_CACHE_NAME;
+    }
+
+    /**
+     * @return amount of allocated slabs
+     */
+    int getSlabsCount() {
+        lock.readLock().lock();
+        try {
+            return slabs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Long getOccupiedSize() {
+        return occupiedSize;
+    }
+
+    // index of the smallest size class the record fits, or -1 if it does not fit a slab
+    private int getSizeClass(int recordSize) {
+        if (recordSize > slabSize) {
+            return -1;
+        }
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, Integer.highestOneBit(recordSize - 1) << 1);
+        return Integer.numberOfTrailingZeros(chunkSize) - Integer.numberOfTrailingZeros
+                (MIN_CHUNK_SIZE);
+    }
+
+    private long allocateChunk(int sizeClass) throws AllocationInCacheException {
+        if (freeLists[sizeClass] == OffHeapIndex.NO_ADDRESS) {
+            addSlab(sizeClass);
+        }
+        long address = freeLists[sizeClass];
+        Slab slab = slabs.get(getSlabIndex(address));
+        freeLists[sizeClass] = slab.buffer.getLong(getOffset(address));
+        occupiedSize += slab.chunkSize;
+        return address;
+    }
+
+    private void freeChunk(long address) {
+        Slab slab = slabs.get(getSlabIndex(address));
+        slab.buffer.putLong(getOffset(address), freeLists[slab.sizeClass]);
+        freeLists[slab.sizeClass] = address;
+        occupiedSize -= slab.chunkSize;
+    }
+
+    private void addSlab(int sizeClass) throws AllocationInCacheException {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.allocateDirect(slabSize).order(ByteOrder.nativeOrder());
+        } catch (OutOfMemoryError e) {
+            // direct memory limit is reached
+            LOGGER.warn(String.format("Slab of %s bytes has not been allocated", slabSize), e);
+            throw new AllocationInCacheException();
+        }
+        Slab slab = new Slab(buffer, sizeClass, MIN_CHUNK_SIZE << sizeClass);
+        int slabIndex = slabs.size();
+        slabs.add(slab);
+        // link all chunks of the new slab to the free list, the first chunk becomes the head
+        for (int offset = slabSize - slab.chunkSize; offset >= 0; offset -= slab.chunkSize) {
+            buffer.putLong(offset, freeLists[sizeClass]);
+            freeLists[sizeClass] = toAddress(slabIndex, offset);
+        }
+    }
+
+    private void write(long address, ByteBuffer bytes) {
+        ByteBuffer buffer = slabs.get(getSlabIndex(address)).buffer;
+        int offset = getOffset(address);
+        buffer.putInt(offset, bytes.remaining());
+        // duplicate has its own position, so absolute writes of other threads are not affected
+        ByteBuffer target = buffer.duplicate();
+        target.position(offset + RECORD_HEADER_SIZE);
+        target.put(bytes.duplicate());
+    }
+
+    private void read(long address, ReadBuffer readBuffer) {
+        ByteBuffer buffer = slabs.get(getSlabIndex(address)).buffer;
+        int offset = getOffset(address);
+        int length = buffer.getInt(offset);
+        readBuffer.ensureCapacity(length);
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset + RECORD_HEADER_SIZE);
+        source.get(readBuffer.bytes, 0, length);
+        readBuffer.length = length;
+    }
+
+    private Object deserialize(ReadBuffer readBuffer) throws AllocationInCacheException {
+        try {
+            long start = System.nanoTime();
+            Object object = codec.decode(readBuffer.bytes, 0, readBuffer.length);
+            metrics.recordDeserialization(System.nanoTime() - start);
+            return object;
+        } catch (IOException | ClassNotFoundException e) {
+            LOGGER.error("Object has not been deserialized", e);
+            throw new AllocationInCacheException();
+        }
+    }
+
+    // bytes of a record copied out of a slab, reused by one thread
+    private static class ReadBuffer {
+
+        void ensureCapacity(int capacity) {
+            if (bytes.length < capacity) {
+                bytes = new byte[Math.max(capacity, bytes.length * 2)];
+            }
+        }
+
+        private byte[] bytes = new byte[MIN_CHUNK_SIZE];
+        private int length;
+    }
+
+    private static long toAddress(int slabIndex, int offset) {
+        return ((long) slabIndex << 32) | offset;
+    }
+
+    private static int getSlabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int getOffset(long address) {
+        return (int) address;
+    }
+
+    // direct memory of one size class
+    private static class Slab {
+
+        Slab(ByteBuffer buffer, int sizeClass, int chunkSize) {
+            this.buffer = buffer;
+            this.sizeClass = sizeClass;
+            this.chunkSize = chunkSize;
+        }
+
+        private final ByteBuffer buffer;
+        private final int sizeClass;
+        private final int chunkSize;
+    }
+
+    private static final String OFF_HEAP_CACHE_NAME = "Off-heap cache";
+
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final int MIN_SLAB_SIZE = 4 * 1024;
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+    // stored record is the length of serialized object followed by its bytes
+    private static final int RECORD_HEADER_SIZE = 4;
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    private final ConfigurationValue occupiedSizeConfigurationValue;
+    private final ConfigurationValue percentLoadConfigurationValue;
+    private final Set<ConfigurationValue> configurationValues;
+
+    private final int slabSize;
+    private final Codec codec;
+    private final ThreadLocal<ReadBuffer> threadReadBuffer;
+    // head chunk address of free list for each size class
+    private final long[] freeLists;
+    private final List<Slab> slabs;
+    private final OffHeapIndex index;
+    // guards slabs, free lists and index. readers only copy bytes under the read lock
+    private final ReadWriteLock lock;
+    private final TierMetrics metrics;
+    // total size of used chunks. changed under the write lock
+    private volatile long occupiedSize;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(OffHeapCache.class);
+}
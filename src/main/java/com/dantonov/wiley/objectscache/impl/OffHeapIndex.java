@@ -0,0 +1,200 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+
+/**
+ * Hash table mapping {@link UUID} to a <code>long</code> address, kept in a direct
+ * {@link ByteBuffer}. Used by {@link OffHeapCache}, so the amount of stored objects does not
+ * add objects to the heap.<br>
+ * <ul>Details of implementation:
+ * <li>open addressing with linear probing. Each slot is 24 bytes: two halves of the UUID and
+ * the address</li>
+ * <li>address is stored incremented by one, so zeroed memory of a new buffer means empty
+ * slots</li>
+ * <li>removal shifts following entries back, so there are no tombstones and lookups do not
+ * degrade after many removals</li>
+ * <li>table is doubled when it is filled by 3/4</li>
+ * </ul>
+ * Index is not thread safe. {@link #get(UUID)} does not change the table, so it may be called by
+ * several threads at once while nobody changes the index.
+ */
+class OffHeapIndex {
+
+    /**
+     * Constructor for {@link OffHeapIndex}
+     *
+     * @param initialCapacity expected amount of entries
+     */
+    OffHeapIndex(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, initialCapacity) - 1) << 1;
+        table = allocateTable(Math.min(MAX_CAPACITY, capacity));
+    }
+
+    /**
+     * Find address of the object
+     *
+     * @param uuid identifier of the object
+     * @return address or {@link #NO_ADDRESS} if the object is not indexed
+     */
+    long get(UUID uuid) {
+        int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return slot < 0 ? NO_ADDRESS : getAddress(slot);
+    }
+
+    /**
+     * Index the object
+     *
+     * @param uuid    identifier of the object
+     * @param address address of the object. Can not be negative
+     * @return replaced address or {@link #NO_ADDRESS} if the object has not been indexed
+     * @throws IllegalStateException if the index can not grow anymore
+     */
+    long put(UUID uuid, long address) {
+        long mostSigBits = uuid.getMostSignificantBits();
+        long leastSigBits = uuid.getLeastSignificantBits();
+        int slot = find(mostSigBits, leastSigBits);
+        if (slot >= 0) {
+            long previousAddress = getAddress(slot);
+            setAddress(slot, address);
+            return previousAddress;
+        }
+        if (size + 1 > getCapacity() / 4 * 3) {
+            grow();
+            slot = find(mostSigBits, leastSigBits);
+        }
+        write(-slot - 1, mostSigBits, leastSigBits, address);
+        size++;
+        return NO_ADDRESS;
+    }
+
+    /**
+     * Remove the object from the index
+     *
+     * @param uuid identifier of the object
+     * @return removed address or {@link #NO_ADDRESS} if the object has not been indexed
+     */
+    long remove(UUID uuid) {
+        int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot < 0) {
+            return NO_ADDRESS;
+        }
+        long address = getAddress(slot);
+        int mask = getCapacity() - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        // shift back entries which probe sequence passes through the hole
+        while (isOccupied(next)) {
+            int ideal = slotOf(table.getLong(next * SLOT_SIZE), table.getLong(next * SLOT_SIZE +
+                    LEAST_SIG_BITS_OFFSET), mask);
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                write(hole, table.getLong(next * SLOT_SIZE), table.getLong(next * SLOT_SIZE +
+                        LEAST_SIG_BITS_OFFSET), getAddress(next));
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table.putLong(hole * SLOT_SIZE + ADDRESS_OFFSET, 0);
+        size--;
+        return address;
+    }
+
+    /**
+     * @return amount of indexed objects
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return amount of bytes reserved by the index
+     */
+    long getReservedSize() {
+        return table.capacity();
+    }
+
+    // slot of the object if it is found, or (-insertion slot - 1)
+    private int find(long mostSigBits, long leastSigBits) {
+        int mask = getCapacity() - 1;
+        int slot = slotOf(mostSigBits, leastSigBits, mask);
+        while (isOccupied(slot)) {
+            int position = slot * SLOT_SIZE;
+            if (table.getLong(position) == mostSigBits && table.getLong(position +
+                    LEAST_SIG_BITS_OFFSET) == leastSigBits) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    private void grow() {
+        int capacity = getCapacity();
+        if (capacity == MAX_CAPACITY) {
+            if (size + 1 < capacity) {
+                return;
+            }
+            throw new IllegalStateException("Off-heap index is full");
+        }
+        ByteBuffer oldTable = table;
+        table = allocateTable(capacity << 1);
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slot * SLOT_SIZE;
+            long storedAddress = oldTable.getLong(position + ADDRESS_OFFSET);
+            if (storedAddress != 0) {
+                long mostSigBits = oldTable.getLong(position);
+                long leastSigBits = oldTable.getLong(position + LEAST_SIG_BITS_OFFSET);
+                write(-find(mostSigBits, leastSigBits) - 1, mostSigBits, leastSigBits,
+                        storedAddress - 1);
+            }
+        }
+    }
+
+    private void write(int slot, long mostSigBits, long leastSigBits, long address) {
+        int position = slot * SLOT_SIZE;
+        table.putLong(position, mostSigBits);
+        table.putLong(position + LEAST_SIG_BITS_OFFSET, leastSigBits);
+        table.putLong(position + ADDRESS_OFFSET, address + 1);
+    }
+
+    private boolean isOccupied(int slot) {
+        return table.getLong(slot * SLOT_SIZE + ADDRESS_OFFSET) != 0;
+    }
+
+    private long getAddress(int slot) {
+        return table.getLong(slot * SLOT_SIZE + ADDRESS_OFFSET) - 1;
+    }
+
+    private void setAddress(int slot, long address) {
+        table.putLong(slot * SLOT_SIZE + ADDRESS_OFFSET, address + 1);
+    }
+
+    private int getCapacity() {
+        return table.capacity() / SLOT_SIZE;
+    }
+
+    private static int slotOf(long mostSigBits, long leastSigBits, int mask) {
+        long hash = (mostSigBits ^ leastSigBits) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static ByteBuffer allocateTable(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Address returned when the object is not indexed
+     */
+    static final long NO_ADDRESS = -1;
+
+    private static final int SLOT_SIZE = 24;
+    private static final int LEAST_SIG_BITS_OFFSET = 8;
+    private static final int ADDRESS_OFFSET = 16;
+    private static final int MIN_CAPACITY = 16;
+    // table must fit one direct ByteBuffer
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private ByteBuffer table;
+    private int size;
+}
@@ -0,0 +1,166 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.ObjectCacheStrategy;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs reallocation passes (usually {@link ObjectCacheStrategy#reallocateObjects}) on its own
+ * thread instead of callers' threads.<br>
+ * <ul>Details of implementation:
+ * <li>callers only {@link #signal()} that caches load has changed. Signals are coalesced:
+ * any amount of signals received before a pass starts results in one pass</li>
+ * <li>a pass starts after configured coalescing delay, so a burst of signals is served by
+ * one pass</li>
+ * <li>if configured, a pass is also run with a fixed cadence, even without signals</li>
+ * <li>exceptions thrown by a pass are logged and do not stop next passes</li>
+ * </ul>
+ */
+public class ReallocationScheduler implements AutoCloseable {
+
+    private ReallocationScheduler(Runnable reallocationPass, long coalescingDelayMillis,
+                                  long cadenceMillis) {
+        this.reallocationPass = reallocationPass;
+        this.coalescingDelayMillis = coalescingDelayMillis;
+        this.pending = new AtomicBoolean();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (cadenceMillis > 0) {
+            executor.scheduleWithFixedDelay(this::signal, cadenceMillis, cadenceMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Builder for {@link ReallocationScheduler}
+     */
+    public static class Builder {
+
+        /**
+         * Set reallocation pass to run
+         *
+         * @param reallocationPass {@link Runnable} pass, usually calls
+         *                         {@link ObjectCacheStrategy#reallocateObjects}
+         * @return {@link Builder} to support build chaining
+         */
+        public Builder setReallocationPass(Runnable reallocationPass) {
+            this.reallocationPass = reallocationPass;
+            return this;
+        }
+
+        /**
+         * Set delay between first signal and the pass. Signals received during the delay are
+         * served by the same pass
+         *
+         * @param delay delay value
+         * @param unit  {@link TimeUnit} for delay value
+         * @return {@link Builder} to support build chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setCoalescingDelay(long delay, TimeUnit unit) throws
+                UnacceptableCacheBuildParameter {
+            if (delay < 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Coalescing delay can " +
+                        "not be negative. Provided value is %s %s", delay, unit));
+            }
+            this.coalescingDelayMillis = unit.toMillis(delay);
+            return this;
+        }
+
+        /**
+         * Set cadence of passes run without signals. 0 means passes are run only on signals
+         *
+         * @param cadence cadence value
+         * @param unit    {@link TimeUnit} for cadence value
+         * @return {@link Builder} to support build chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setCadence(long cadence, TimeUnit unit) throws
+                UnacceptableCacheBuildParameter {
+            if (cadence < 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Cadence can not be " +
+                        "negative. Provided value is %s %s", cadence, unit));
+            }
+            this.cadenceMillis = unit.toMillis(cadence);
+            return this;
+        }
+
+        /**
+         * Build {@link ReallocationScheduler} instance. Scheduler thread is started
+         *
+         * @return new {@link ReallocationScheduler} instance
+         * @throws UnacceptableCacheBuildParameter in case when reallocation pass is not
+         *                                         configured
+         */
+        public ReallocationScheduler build() throws UnacceptableCacheBuildParameter {
+            if (reallocationPass == null) {
+                throw new UnacceptableCacheBuildParameter("Reallocation pass is not " +
+                        "configured");
+            }
+            return new ReallocationScheduler(reallocationPass, coalescingDelayMillis,
+                    cadenceMillis);
+        }
+
+        private Runnable reallocationPass;
+        private long coalescingDelayMillis = 1;
+        private long cadenceMillis = 0;
+    }
+
+    /**
+     * Signal that caches load has changed and a reallocation pass is needed.<br>
+     * Does not block: pass is run on the scheduler thread. Signals received after
+     * {@link #close()} are dropped
+     */
+    public void signal() {
+        if (pending.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::runPass, coalescingDelayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // scheduler is closed
+                pending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Stop scheduler thread. Pass being run is completed
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runPass() {
+        // signals received from now on need another pass
+        pending.set(false);
+        try {
+            reallocationPass.run();
+        } catch (RuntimeException e) {
+            LOGGER.error("Reallocation pass has failed", e);
+        }
+    }
+
+    private final Runnable reallocationPass;
+    private final long coalescingDelayMillis;
+    private final AtomicBoolean pending;
+    private final ScheduledExecutorService executor;
+
+    private static final String THREAD_NAME = "objects-cache-reallocation";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private final static Logger LOGGER = LoggerFactory.getLogger(ReallocationScheduler.class);
+}
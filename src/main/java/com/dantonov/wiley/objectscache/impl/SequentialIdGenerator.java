@@ -0,0 +1,78 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.IdGenerator;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link IdGenerator} generating identifiers from a node prefix and a counter, without a shared
+ * random generator.<br>
+ * <ul>Details of implementation:
+ * <li>most significant bits are the node prefix. By default it is random and chosen once per
+ * generator, so generators of different processes or restarts do not collide</li>
+ * <li>least significant bits are the counter value. Each thread takes a block of counter
+ * values from the shared counter and uses it without synchronization, so the shared counter
+ * is touched once per block</li>
+ * <li>counter starts from the creation time in milliseconds multiplied by
+ * {@value #IDS_PER_MILLISECOND}, so a generator with the same node prefix created after
+ * restart does not repeat identifiers of objects kept in a persistent storage. This holds
+ * while the previous generator has handed out less than {@value #IDS_PER_MILLISECOND}
+ * identifiers per millisecond of its life on average, and the system clock is not set back
+ * </li>
+ * <li>version (8, custom) and variant bits are set as in RFC 9562, so identifiers do not
+ * collide with random identifiers of {@link UUID#randomUUID()}</li>
+ * </ul>
+ * Identifiers are unique for one generator. They are not ordered between threads.
+ */
+public class SequentialIdGenerator implements IdGenerator {
+
+    /**
+     * Constructor for {@link SequentialIdGenerator} with random node prefix
+     */
+    public SequentialIdGenerator() {
+        this(new SecureRandom().nextLong());
+    }
+
+    /**
+     * Constructor for {@link SequentialIdGenerator}
+     *
+     * @param nodeId node prefix. Generators sharing a storage must have different prefixes.
+     *               Version bits of the prefix are overwritten
+     */
+    public SequentialIdGenerator(long nodeId) {
+        mostSigBits = nodeId & ~VERSION_MASK | VERSION_8;
+        counter = new AtomicLong(System.currentTimeMillis() * IDS_PER_MILLISECOND);
+        threadBlock = ThreadLocal.withInitial(CounterBlock::new);
+    }
+
+    @Override
+    public UUID nextId() {
+        CounterBlock block = threadBlock.get();
+        if (block.next == block.end) {
+            block.next = counter.getAndAdd(BLOCK_SIZE);
+            block.end = block.next + BLOCK_SIZE;
+        }
+        return new UUID(mostSigBits, block.next++ & ~VARIANT_MASK | VARIANT_RFC);
+    }
+
+    // counter values reserved by one thread
+    private static class CounterBlock {
+
+        private long next;
+        private long end;
+    }
+
+    private static final long VERSION_MASK = 0xF000L;
+    private static final long VERSION_8 = 0x8000L;
+    private static final long VARIANT_MASK = 0xC000000000000000L;
+    private static final long VARIANT_RFC = 0x8000000000000000L;
+    private static final int BLOCK_SIZE = 1024;
+    // counter of a generator created now fits 62 bits until year 2109
+    private static final long IDS_PER_MILLISECOND = 1 << 20;
+
+    private final long mostSigBits;
+    private final AtomicLong counter;
+    private final ThreadLocal<CounterBlock> threadBlock;
+}
@@ -1,57 +1,214 @@
 package com.dantonov.wiley.objectscache.impl;
 
 import com.dantonov.wiley.objectscache.Cache;
-import com.dantonov.wiley.objectscache.ChangeableConfigurationValue;
 import com.dantonov.wiley.objectscache.ConfigurationValue;
 import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
 import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.codec.Codec;
+import com.dantonov.wiley.objectscache.impl.codec.JavaSerializationCodec;
+import com.dantonov.wiley.objectscache.impl.metrics.TierMetrics;
 import com.dantonov.wiley.objectscache.impl.storage.SerializableStorage;
-import com.dantonov.wiley.objectscache.impl.storage.SerializationUtil;
 import com.dantonov.wiley.objectscache.impl.storage.exceptions.DataNotFoundInStorage;
 import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToDeleteDataInStorage;
 import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToRetrieveStorageData;
 import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToStoreDataInStorage;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * {@link Cache} implementation to store object on filesystem<br>
- * <b>NOTE:</b> only serializable objects will be cached for this implementation
+ * Objects are converted to bytes by configured {@link Codec}. Codec may compress the bytes,
+ * see {@link com.dantonov.wiley.objectscache.impl.codec.CompressingCodec}, then the storage
+ * keeps and accounts compressed bytes.<br>
+ * <b>NOTE:</b> by default only serializable objects will be cached for this implementation<br>
+ * Occupied size is read from {@link SerializableStorage#getOccupiedSize()} each time
+ * configuration value is checked, so the storage should provide it cheaply.<br>
+ * Objects stored before restart are reachable if the storage lists them, see
+ * {@link SerializableStorage#getStoredKeys()}.<br>
+ * <ul>In write-behind mode:
+ * <li>encoded object is put to a staging buffer in memory and written to the storage by a
+ * background thread, so demotion does not wait for the storage</li>
+ * <li>staged objects are served from the buffer until they are written</li>
+ * <li>writer takes staged objects in batches, in order of allocation</li>
+ * <li>staging buffer is limited by size in bytes. Allocation waits while the buffer is full,
+ * this way the writer slows down demotion instead of losing objects</li>
+ * <li>object which has not been written due to storage failure stays in the buffer and is
+ * written again after a delay, which grows while the storage keeps failing</li>
+ * <li>occupied size includes staged bytes</li>
+ * </ul>
  */
-public class SerializableStorageCache implements Cache {
+public class SerializableStorageCache implements Cache, AutoCloseable {
 
     /**
-     * {@link SerializableStorageCache} constructor
+     * {@link SerializableStorageCache} constructor. Objects are encoded by
+     * {@link JavaSerializationCodec}
      *
      * @param serializableStorage underlying {@link SerializableStorage}
+     * @param sizeLimitation      max allowed occupied size in bytes
      */
     public SerializableStorageCache(SerializableStorage serializableStorage, Long sizeLimitation) {
+        this(serializableStorage, sizeLimitation, new JavaSerializationCodec(), 0, 0);
+    }
+
+    private SerializableStorageCache(SerializableStorage serializableStorage, Long
+            sizeLimitation, Codec codec, long maxStagedSize, int writeBatchSize) {
         this.serializableStorage = serializableStorage;
-        storedObjects = new HashSet<>();
-        consumingSizeConfigurationValue = new GenericConfigurationValue<>(sizeLimitation, (
-                (currentState, specialState) -> currentState < specialState), ConfigurationValue
-                .WARN_LEVEL.CRITICAL, value -> String.format("Max allowed occupied size in bytes " +
-                "is %s", value), (value -> String.format("Current occupied size in bytes " +
-                "is %s", value)));
+        this.codec = codec;
+        this.maxStagedSize = maxStagedSize;
+        this.writeBatchSize = writeBatchSize;
+        metrics = new TierMetrics();
+        storedObjects = ConcurrentHashMap.newKeySet();
+        // objects stored before restart are reachable by their identifiers
+        storedObjects.addAll(serializableStorage.getStoredKeys());
+        stagedObjects = new ConcurrentHashMap<>();
+        writeQueue = new ArrayDeque<>();
+        retryDelayMillis = MIN_RETRY_DELAY_MILLIS;
+        stagingLock = new ReentrantLock();
+        stagingChanged = stagingLock.newCondition();
+        writeRequested = stagingLock.newCondition();
+        if (maxStagedSize > 0) {
+            writerExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, WRITER_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            writerExecutor.execute(this::writeStagedObjects);
+        } else {
+            writerExecutor = null;
+        }
+        consumingSizeConfigurationValue = new SuppliedConfigurationValue<>(sizeLimitation,
+                this::getOccupiedSize, ((currentState, specialState) ->
+                currentState < specialState), ConfigurationValue.WARN_LEVEL.CRITICAL, value ->
+                String.format("Max allowed occupied size in bytes is %s", value), (value -> String
+                .format("Current occupied size in bytes is %s", value)));
+        configurationValues = Collections.singleton(consumingSizeConfigurationValue);
+    }
+
+    /**
+     * Builder for {@link SerializableStorageCache}
+     */
+    public static class Builder {
+
+        /**
+         * Configure underlying storage
+         *
+         * @param serializableStorage underlying {@link SerializableStorage}
+         * @return Builder to support builder chaining
+         */
+        public Builder setSerializableStorage(SerializableStorage serializableStorage) {
+            this.serializableStorage = serializableStorage;
+            return this;
+        }
+
+        /**
+         * Configure max allowed occupied size
+         *
+         * @param sizeLimitation max allowed occupied size in bytes
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setSizeLimitation(long sizeLimitation) throws
+                UnacceptableCacheBuildParameter {
+            if (sizeLimitation <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Size limitation can " +
+                        "not be less or equals 0. Provided value is %s", sizeLimitation));
+            }
+            this.sizeLimitation = sizeLimitation;
+            return this;
+        }
+
+        /**
+         * Configure codec converting objects to bytes
+         *
+         * @param codec {@link Codec} to use
+         * @return Builder to support builder chaining
+         */
+        public Builder setCodec(Codec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Enable write-behind mode: objects are staged in memory and written to the storage by
+         * a background thread
+         *
+         * @param maxStagedSize max size of staged objects in bytes. Allocation waits while it
+         *                      is exceeded
+         * @param writeBatchSize max amount of objects written in one batch
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setWriteBehind(long maxStagedSize, int writeBatchSize) throws
+                UnacceptableCacheBuildParameter {
+            if (maxStagedSize <= 0 || writeBatchSize <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Max staged size and " +
+                        "write batch size can not be less or equals 0. Provided values are %s " +
+                        "and %s", maxStagedSize, writeBatchSize));
+            }
+            this.maxStagedSize = maxStagedSize;
+            this.writeBatchSize = writeBatchSize;
+            return this;
+        }
+
+        /**
+         * Build {@link SerializableStorageCache} instance
+         *
+         * @return new {@link SerializableStorageCache} instance
+         * @throws UnacceptableCacheBuildParameter in case when storage is not configured
+         */
+        public SerializableStorageCache build() throws UnacceptableCacheBuildParameter {
+            if (serializableStorage == null) {
+                throw new UnacceptableCacheBuildParameter("Serializable storage is not " +
+                        "configured");
+            }
+            return new SerializableStorageCache(serializableStorage, sizeLimitation, codec,
+                    maxStagedSize, writeBatchSize);
+        }
+
+        private SerializableStorage serializableStorage;
+        private long sizeLimitation = 100L * 1024 * 1024;
+        private Codec codec = new JavaSerializationCodec();
+        // write-behind is disabled by default
+        private long maxStagedSize;
+        private int writeBatchSize;
     }
 
     @Override
     public Set<ConfigurationValue> getConfigurationValues() {
-        return Arrays.asList(consumingSizeConfigurationValue).stream().collect(Collectors.toSet());
+        return configurationValues;
     }
 
     @Override
     public void allocateObject(ObjectInCache cachedObject) throws AllocationInCacheException {
         UUID uuid = cachedObject.getUuid();
+        if (writerExecutor != null) {
+            try {
+                stageObject(uuid, encode(cachedObject.objectRef()));
+            } catch (IOException e) {
+                throw new AllocationInCacheException();
+            }
+            storedObjects.add(uuid);
+            return;
+        }
         try {
-            serializableStorage.store(uuid, SerializationUtil.serializeObject(cachedObject.objectRef()));
+            long start = System.nanoTime();
+            ByteBuffer bytes = codec.encodeToBuffer(cachedObject.objectRef());
+            metrics.recordSerialization(System.nanoTime() - start);
+            serializableStorage.store(uuid, bytes);
             storedObjects.add(uuid);
-            consumingSizeConfigurationValue.setCurrentState(serializableStorage.getOccupiedSize());
         } catch (FailedToStoreDataInStorage | IOException e) {
             throw new AllocationInCacheException();
         }
@@ -69,36 +226,306 @@ public class SerializableStorageCache implements Cache {
 
     private ObjectInCache retrieveObject(ObjectInCache cachedObject, boolean remove) throws ObjectNotFoundInCache, AllocationInCacheException {
         UUID uuid = cachedObject.getUuid();
-        if (!storedObjects.contains(uuid)) {
+        // removing thread claims the object first, so concurrent removals do not race on storage
+        if (remove ? !storedObjects.remove(uuid) : !storedObjects.contains(uuid)) {
             throw new ObjectNotFoundInCache(cachedObject);
         }
         try {
-            Object object = SerializationUtil.deserializeObject(serializableStorage.retrieve(uuid));
+            // staged object is decoded from memory. Once it is removed from the staging buffer
+            // it is already written to the storage
+            byte[] stagedBytes = remove ? unstageObject(uuid) : stagedObjects.get(uuid);
+            if (stagedBytes != null) {
+                return ObjectInCache.from(cachedObject, decode(stagedBytes));
+            }
+            Object object = decode(serializableStorage.retrieve(uuid));
             if (remove) {
                 serializableStorage.delete(uuid);
-                storedObjects.remove(uuid);
             }
-            consumingSizeConfigurationValue.setCurrentState(serializableStorage.getOccupiedSize());
             return ObjectInCache.from(cachedObject, object);
+        } catch (DataNotFoundInStorage e) {
+            // object has been removed by another thread after the check above
+            throw new ObjectNotFoundInCache(cachedObject);
         } catch (IOException | ClassNotFoundException | FailedToRetrieveStorageData |
-                DataNotFoundInStorage | FailedToDeleteDataInStorage e) {
+                FailedToDeleteDataInStorage e) {
             throw new AllocationInCacheException();
         }
     }
 
+    @Override
+    public void removeObjects(Collection<ObjectInCache> cachedObjects) {
+        List<UUID> writtenUuids = new ArrayList<>(cachedObjects.size());
+        for (ObjectInCache cachedObject : cachedObjects) {
+            UUID uuid = cachedObject.getUuid();
+            // removing thread claims the object first, see retrieveObject
+            if (storedObjects.remove(uuid) && (writerExecutor == null || unstageObject(uuid) ==
+                    null)) {
+                writtenUuids.add(uuid);
+            }
+        }
+        if (writtenUuids.isEmpty()) {
+            return;
+        }
+        try {
+            serializableStorage.deleteAll(writtenUuids);
+        } catch (FailedToDeleteDataInStorage e) {
+            LOGGER.warn("Removed objects have not been deleted from the storage", e);
+        }
+    }
+
     @Override
     public Boolean contains(ObjectInCache objectInCache) {
         return storedObjects.contains
                 (objectInCache.getUuid());
     }
 
+    @Override
+    public boolean isBlocking() {
+        // objects staged by write-behind are served from memory, written ones are read from the
+        // storage
+        return true;
+    }
+
+    @Override
+    public TierMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public String getCacheName() {
         return FILESYSTEM_CACHE_NAME;
     }
 
+    /**
+     * Wait until staged objects are written to the storage. Returns at once if write-behind
+     * is disabled
+     *
+     * @throws InterruptedException        in case when thread is interrupted while waiting
+     * @throws FailedToStoreDataInStorage in case when the last write to the storage has failed
+     *                                     and staged objects are waiting for the next attempt
+     */
+    public void flush() throws InterruptedException, FailedToStoreDataInStorage {
+        stagingLock.lock();
+        try {
+            while (!writeQueue.isEmpty() || writing) {
+                if (writeFailure != null && !writing) {
+                    throw writeFailure;
+                }
+                stagingChanged.await();
+            }
+        } finally {
+            stagingLock.unlock();
+        }
+    }
+
+    /**
+     * Write staged objects and stop the writer thread. Objects allocated after close are not
+     * written
+     */
+    @Override
+    public void close() {
+        if (writerExecutor == null) {
+            return;
+        }
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (FailedToStoreDataInStorage e) {
+            LOGGER.error("Staged objects have not been written before close, they are lost", e);
+        }
+        stagingLock.lock();
+        try {
+            closed = true;
+            writeRequested.signalAll();
+        } finally {
+            stagingLock.unlock();
+        }
+        writerExecutor.shutdown();
+    }
+
+    /**
+     * @return occupied size in bytes, staged objects included
+     */
+    long getOccupiedSize() {
+        return serializableStorage.getOccupiedSize() + stagedSize;
+    }
+
+    private void stageObject(UUID uuid, byte[] bytes) throws AllocationInCacheException {
+        stagingLock.lock();
+        try {
+            // object larger than the buffer is staged when the buffer is empty
+            while (stagedSize > 0 && stagedSize + bytes.length > maxStagedSize) {
+                try {
+                    stagingChanged.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AllocationInCacheException();
+                }
+            }
+            byte[] replacedBytes = stagedObjects.put(uuid, bytes);
+            stagedSize += bytes.length - (replacedBytes == null ? 0 : replacedBytes.length);
+            writeQueue.add(uuid);
+            writeRequested.signal();
+        } finally {
+            stagingLock.unlock();
+        }
+    }
+
+    private byte[] unstageObject(UUID uuid) {
+        stagingLock.lock();
+        try {
+            byte[] bytes = stagedObjects.remove(uuid);
+            if (bytes != null) {
+                stagedSize -= bytes.length;
+                stagingChanged.signalAll();
+            }
+            return bytes;
+        } finally {
+            stagingLock.unlock();
+        }
+    }
+
+    // loop of the writer thread
+    private void writeStagedObjects() {
+        List<UUID> batch = new ArrayList<>(writeBatchSize);
+        List<UUID> failedUuids = new ArrayList<>();
+        while (true) {
+            stagingLock.lock();
+            try {
+                if (writeFailure != null) {
+                    awaitRetry();
+                }
+                while (writeQueue.isEmpty() && !closed) {
+                    writeRequested.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                while (batch.size() < writeBatchSize && !writeQueue.isEmpty()) {
+                    batch.add(writeQueue.poll());
+                }
+                writing = true;
+            } finally {
+                stagingLock.unlock();
+            }
+            FailedToStoreDataInStorage failure = null;
+            for (UUID uuid : batch) {
+                try {
+                    writeStagedObject(uuid);
+                } catch (FailedToStoreDataInStorage e) {
+                    failure = e;
+                    failedUuids.add(uuid);
+                }
+            }
+            batch.clear();
+            stagingLock.lock();
+            try {
+                // failed objects are written first next time, in order of allocation
+                for (int i = failedUuids.size() - 1; i >= 0; i--) {
+                    writeQueue.addFirst(failedUuids.get(i));
+                }
+                if (failure == null) {
+                    retryDelayMillis = MIN_RETRY_DELAY_MILLIS;
+                } else if (writeFailure != null) {
+                    retryDelayMillis = Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+                }
+                writeFailure = failure;
+                writing = false;
+                stagingChanged.signalAll();
+            } finally {
+                stagingLock.unlock();
+            }
+            failedUuids.clear();
+        }
+    }
+
+    // called by the writer thread holding staging lock. Returns earlier if the cache is closed
+    private void awaitRetry() {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(retryDelayMillis);
+        while (remainingNanos > 0 && !closed) {
+            try {
+                remainingNanos = writeRequested.awaitNanos(remainingNanos);
+            } catch (InterruptedException e) {
+                // writer thread is stopped by close only
+            }
+        }
+    }
+
+    private byte[] encode(Object object) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = codec.encode(object);
+        metrics.recordSerialization(System.nanoTime() - start);
+        return bytes;
+    }
+
+    private Object decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        Object object = codec.decode(bytes);
+        metrics.recordDeserialization(System.nanoTime() - start);
+        return object;
+    }
+
+    private void writeStagedObject(UUID uuid) throws FailedToStoreDataInStorage {
+        byte[] bytes = stagedObjects.get(uuid);
+        if (bytes == null) {
+            // object has been freed or written by a previous batch
+            return;
+        }
+        try {
+            serializableStorage.store(uuid, bytes);
+        } catch (FailedToStoreDataInStorage e) {
+            LOGGER.error(String.format("Object %s has not been written, it stays staged", uuid),
+                    e);
+            throw e;
+        }
+        // written bytes are accounted by the storage now, so they leave staged size at once
+        stagingLock.lock();
+        try {
+            if (stagedObjects.remove(uuid, bytes)) {
+                stagedSize -= bytes.length;
+                stagingChanged.signalAll();
+                return;
+            }
+        } finally {
+            stagingLock.unlock();
+        }
+        if (!stagedObjects.containsKey(uuid)) {
+            // object has been freed while it was written, newer version is written otherwise
+            try {
+                serializableStorage.delete(uuid);
+            } catch (DataNotFoundInStorage | FailedToDeleteDataInStorage e) {
+                LOGGER.warn(String.format("Freed object %s has not been deleted", uuid), e);
+            }
+        }
+    }
+
     private SerializableStorage serializableStorage;
+    private Codec codec;
     private Set<UUID> storedObjects;
-    private ChangeableConfigurationValue<Long> consumingSizeConfigurationValue;
+    // write-behind state. Staged size, write queue, writing flag, write failure and retry delay
+    // are guarded by staging lock
+    private final long maxStagedSize;
+    private final int writeBatchSize;
+    private final Map<UUID, byte[]> stagedObjects;
+    private final Deque<UUID> writeQueue;
+    private final Lock stagingLock;
+    private final Condition stagingChanged;
+    private final Condition writeRequested;
+    private final ExecutorService writerExecutor;
+    private final TierMetrics metrics;
+    private volatile long stagedSize;
+    private boolean writing;
+    private boolean closed;
+    // failure of the last batch, objects failed to be written are queued again
+    private FailedToStoreDataInStorage writeFailure;
+    private long retryDelayMillis;
+    // occupied size is read from the storage on each check
+    private ConfigurationValue consumingSizeConfigurationValue;
+    private Set<ConfigurationValue> configurationValues;
     private static final String FILESYSTEM_CACHE_NAME = "Filesystem cache";
+    private static final String WRITER_THREAD_NAME = "objects-cache-write-behind";
+    private static final long MIN_RETRY_DELAY_MILLIS = 50;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(SerializableStorageCache.class);
 }
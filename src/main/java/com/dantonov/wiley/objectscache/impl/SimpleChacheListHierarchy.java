@@ -7,7 +7,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Models levels of {@link Cache} caches
+ * Models levels of {@link Cache} caches.<br>
+ * Only {@link #getCacheList()} copies the list of caches, tier navigation methods read it
+ * directly, so walking the tiers does not copy it on each step
  */
 public class SimpleChacheListHierarchy implements CacheHierarchy {
 
@@ -48,6 +50,26 @@ public class SimpleChacheListHierarchy implements CacheHierarchy {
         return new ArrayList<>(caches);
     }
 
+    @Override
+    public int getTierCount() {
+        return caches.size();
+    }
+
+    @Override
+    public Cache getTier(int index) {
+        return caches.get(index);
+    }
+
+    @Override
+    public int indexOf(Cache cache) {
+        for (int i = 0; i < caches.size(); i++) {
+            if (caches.get(i) == cache) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private List<Cache> caches;
 
 }
@@ -0,0 +1,44 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * {@link GenericConfigurationValue} which current state is read from a {@link Supplier} each
+ * time the value is checked.<br>
+ * Useful when current state is tracked by a concurrent counter: the value can not be published
+ * out of order by concurrent writers, because it is never published at all.<br>
+ * {@link #setCurrentState(Object)} is ignored for this implementation.
+ */
+public class SuppliedConfigurationValue<T> extends GenericConfigurationValue<T> {
+
+    /**
+     * Constructor for {@link SuppliedConfigurationValue}
+     *
+     * @param specialState          generic type instance for special state
+     * @param currentStateSupplier  {@link Supplier} for current state
+     * @param checker               implementation for {@link Checker}
+     * @param warnLevel             {@link WARN_LEVEL} level
+     * @param specialStatePresenter implementation for {@link Presenter} for special state
+     * @param currentStatePresenter implementation for {@link Presenter} for current state
+     */
+    public SuppliedConfigurationValue(T specialState, Supplier<T> currentStateSupplier,
+                                      Checker<T> checker, WARN_LEVEL warnLevel,
+                                      Presenter<T> specialStatePresenter,
+                                      Presenter<T> currentStatePresenter) {
+        super(specialState, checker, warnLevel, specialStatePresenter, currentStatePresenter);
+        this.currentStateSupplier = currentStateSupplier;
+    }
+
+    @Override
+    public void setCurrentState(T currentValue) {
+        // current state is supplied
+    }
+
+    @Override
+    protected Optional<T> getCurrentState() {
+        return Optional.ofNullable(currentStateSupplier.get());
+    }
+
+    private final Supplier<T> currentStateSupplier;
+}
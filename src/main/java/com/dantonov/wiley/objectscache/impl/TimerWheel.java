@@ -0,0 +1,201 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel. Schedules timers with O(1) insertion and cancellation, and finds
+ * due timers without scanning all of them.<br>
+ * <ul>Details of implementation:
+ * <li>time is split into ticks. There are several levels of 64 buckets: a bucket of level 0
+ * spans one tick, a bucket of each next level spans 64 buckets of the previous one</li>
+ * <li>timer is linked into the bucket of the lowest level which covers its deadline. Timers
+ * further than the last level covers are kept in its farthest bucket</li>
+ * <li>when time passes a bucket boundary of an upper level, timers of the bucket are moved to
+ * the lower levels (cascading). Each timer is moved at most once per level</li>
+ * <li>timers of a level 0 bucket are due when its tick passes</li>
+ * <li>amount of timers is counted per level, so ticks without timers to cascade or expire
+ * are skipped at once</li>
+ * </ul>
+ * Not thread safe: access must be guarded by the owner.
+ *
+ * @param <T> type of value held by timers
+ */
+class TimerWheel<T> {
+
+    /**
+     * Constructor for {@link TimerWheel}
+     *
+     * @param tickMillis  duration of one tick in milliseconds
+     * @param startMillis current time in milliseconds
+     */
+    TimerWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        currentTick = startMillis / tickMillis;
+        buckets = newBuckets();
+        timersCounts = new int[LEVELS];
+        for (Timer<T>[] level : buckets) {
+            for (int i = 0; i < BUCKETS; i++) {
+                level[i] = new Timer<>(null);
+            }
+        }
+    }
+
+    /**
+     * Timer of the wheel. Timer is linked to one bucket at a time
+     *
+     * @param <T> type of value held by the timer
+     */
+    static class Timer<T> {
+
+        Timer(T value) {
+            this.value = value;
+            // bucket head is a ring of itself
+            previous = this;
+            next = this;
+        }
+
+        /**
+         * @return value held by the timer
+         */
+        T getValue() {
+            return value;
+        }
+
+        private boolean isLinked() {
+            return next != this;
+        }
+
+        private final T value;
+        private long deadlineMillis;
+        private int level;
+        private Timer<T> previous;
+        private Timer<T> next;
+    }
+
+    /**
+     * Schedule the timer. Timer scheduled before is moved to the new deadline
+     *
+     * @param timer          {@link Timer} to schedule
+     * @param deadlineMillis time the timer is due at, in milliseconds
+     * @return <code>false</code> if the timer is already due. It is not scheduled in this case
+     */
+    boolean schedule(Timer<T> timer, long deadlineMillis) {
+        timer.deadlineMillis = deadlineMillis;
+        return link(timer);
+    }
+
+    /**
+     * Cancel the timer. Does nothing if the timer is not scheduled
+     *
+     * @param timer {@link Timer} to cancel
+     */
+    void cancel(Timer<T> timer) {
+        if (timer.isLinked()) {
+            unlink(timer);
+        }
+    }
+
+    /**
+     * Move time of the wheel forward and collect timers which are due
+     *
+     * @param nowMillis current time in milliseconds
+     * @param dueTimers {@link List} due timers are added to. They are not scheduled anymore
+     */
+    void advance(long nowMillis, List<Timer<T>> dueTimers) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            int lowestLevel = 0;
+            while (lowestLevel < LEVELS && timersCounts[lowestLevel] == 0) {
+                lowestLevel++;
+            }
+            if (lowestLevel == LEVELS) {
+                currentTick = targetTick;
+                return;
+            }
+            if (lowestLevel > 0) {
+                // nothing happens before the next bucket boundary of the lowest used level
+                long boundaryTick = ((currentTick >>> (BUCKET_BITS * lowestLevel)) + 1) <<
+                        (BUCKET_BITS * lowestLevel);
+                currentTick = Math.min(targetTick, boundaryTick) - 1;
+            }
+            currentTick++;
+            // upper levels are cascaded first, their timers may fall to the lower buckets
+            // cascaded at the same tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BUCKET_BITS * level)) - 1)) == 0) {
+                    Timer<T> head = buckets[level][bucketIndex(currentTick, level)];
+                    while (head.next != head) {
+                        Timer<T> timer = head.next;
+                        unlink(timer);
+                        if (!link(timer)) {
+                            dueTimers.add(timer);
+                        }
+                    }
+                }
+            }
+            Timer<T> head = buckets[0][bucketIndex(currentTick, 0)];
+            while (head.next != head) {
+                Timer<T> timer = head.next;
+                unlink(timer);
+                dueTimers.add(timer);
+            }
+        }
+    }
+
+    // returns false if the timer is due and has not been linked
+    private boolean link(Timer<T> timer) {
+        if (timer.isLinked()) {
+            unlink(timer);
+        }
+        // timer is due at the first tick starting after its deadline
+        long tick = (timer.deadlineMillis + tickMillis - 1) / tickMillis;
+        long delta = tick - currentTick;
+        if (delta <= 0) {
+            return false;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BUCKET_BITS * (level + 1))) {
+            level++;
+        }
+        if (delta >= 1L << (BUCKET_BITS * LEVELS)) {
+            // further than the wheel covers: wait in the farthest bucket and cascade again
+            tick = currentTick + (1L << (BUCKET_BITS * LEVELS)) - 1;
+        }
+        Timer<T> head = buckets[level][bucketIndex(tick, level)];
+        timer.level = level;
+        timersCounts[level]++;
+        timer.previous = head.previous;
+        timer.next = head;
+        head.previous.next = timer;
+        head.previous = timer;
+        return true;
+    }
+
+    private void unlink(Timer<T> timer) {
+        timer.previous.next = timer.next;
+        timer.next.previous = timer.previous;
+        timer.previous = timer;
+        timer.next = timer;
+        timersCounts[timer.level]--;
+    }
+
+    // generic array can not be created, buckets hold timers of the value type only
+    @SuppressWarnings("unchecked")
+    private static <T> Timer<T>[][] newBuckets() {
+        return (Timer<T>[][]) new Timer<?>[LEVELS][BUCKETS];
+    }
+
+    private static int bucketIndex(long tick, int level) {
+        return (int) (tick >>> (BUCKET_BITS * level)) & (BUCKETS - 1);
+    }
+
+    private final long tickMillis;
+    private final Timer<T>[][] buckets;
+    private final int[] timersCounts;
+    // ticks up to this one have been processed
+    private long currentTick;
+
+    private static final int BUCKET_BITS = 6;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    private static final int LEVELS = 5;
+}
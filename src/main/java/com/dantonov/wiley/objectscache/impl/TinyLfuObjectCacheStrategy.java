@@ -0,0 +1,272 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CacheHierarchy;
+import com.dantonov.wiley.objectscache.ObjectCacheStrategy;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Frequency aware {@link ObjectCacheStrategy} (W-TinyLFU). Keeps frequently used objects in the
+ * first cache of {@link CacheHierarchy} even if they are flushed by a scan of new objects.<br>
+ * <ul>Details of implementation:
+ * <li>objects of the first cache are split into three regions: admission window (LRU),
+ * probation and protected (segmented LRU main region). Other caches are ordered as in
+ * {@link LruObjectCacheStrategy}</li>
+ * <li>new object is placed to the window. Object accessed in probation is moved to protected,
+ * protected overflow is moved back to probation</li>
+ * <li>accesses and allocations are recorded in {@link AccessBuffer} and counted by
+ * {@link FrequencySketch} in batches, readers do not lock</li>
+ * <li>when the first cache is overloaded and the window is over its size, the least recently
+ * used window object (candidate) competes with the least recently used main object (victim):
+ * the one with lower estimated frequency is moved to the next cache, the other stays</li>
+ * <li>when the first cache is not overloaded, window overflow is moved to probation</li>
+ * </ul>
+ */
+public class TinyLfuObjectCacheStrategy extends ObjectCacheStrategyImpl {
+
+    private TinyLfuObjectCacheStrategy(int expectedSize, int windowPercent, int protectedPercent,
+                                       int promotionThreshold) {
+        super(promotionThreshold);
+        this.windowPercent = windowPercent;
+        this.protectedPercent = protectedPercent;
+        sketch = new FrequencySketch(expectedSize);
+        accessBuffer = new AccessBuffer<>();
+        window = new CacheOrderIndex(null);
+        probation = new CacheOrderIndex(null);
+        protectedRegion = new CacheOrderIndex(null);
+    }
+
+    /**
+     * Builder for {@link TinyLfuObjectCacheStrategy}
+     */
+    public static class Builder {
+
+        /**
+         * Configure expected amount of objects. Frequency sketch is sized by it
+         *
+         * @param expectedSize expected amount of objects in caches
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setExpectedSize(int expectedSize) throws UnacceptableCacheBuildParameter {
+            if (expectedSize <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Expected size can not " +
+                        "be less or equals 0. Provided value is %s", expectedSize));
+            }
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        /**
+         * Configure size of admission window as a percent of objects in the first cache
+         *
+         * @param windowPercent window size in percents
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setWindowPercent(int windowPercent) throws UnacceptableCacheBuildParameter {
+            checkPercent("Window", windowPercent);
+            this.windowPercent = windowPercent;
+            return this;
+        }
+
+        /**
+         * Configure size of protected region as a percent of main region
+         *
+         * @param protectedPercent protected region size in percents
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setProtectedPercent(int protectedPercent) throws
+                UnacceptableCacheBuildParameter {
+            checkPercent("Protected region", protectedPercent);
+            this.protectedPercent = protectedPercent;
+            return this;
+        }
+
+        /**
+         * Configure amount of hits in a lower cache to promote object to the first cache
+         *
+         * @param promotionThreshold amount of hits. 0 means objects are not promoted
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setPromotionThreshold(int promotionThreshold) throws
+                UnacceptableCacheBuildParameter {
+            if (promotionThreshold < 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Promotion threshold " +
+                        "can not be less than 0. Provided value is %s", promotionThreshold));
+            }
+            this.promotionThreshold = promotionThreshold;
+            return this;
+        }
+
+        /**
+         * Build {@link TinyLfuObjectCacheStrategy} instance
+         *
+         * @return new {@link TinyLfuObjectCacheStrategy} instance
+         */
+        public TinyLfuObjectCacheStrategy build() {
+            return new TinyLfuObjectCacheStrategy(expectedSize, windowPercent, protectedPercent,
+                    promotionThreshold);
+        }
+
+        private static void checkPercent(String name, int percent) throws
+                UnacceptableCacheBuildParameter {
+            if (percent < 0 || percent > 100) {
+                throw new UnacceptableCacheBuildParameter(String.format("%s size is a percent " +
+                        "value. It can not be out of [0,100] range. Provided value is %s", name,
+                        percent));
+            }
+        }
+
+        private int expectedSize = 1000;
+        private int windowPercent = 1;
+        private int protectedPercent = 80;
+        private int promotionThreshold = 0;
+    }
+
+    @Override
+    public void allocateObject(ObjectInCache objectInCache, CacheHierarchy cacheHierarchy)
+            throws AllocationException {
+        super.allocateObject(objectInCache, cacheHierarchy);
+        recordAccess(objectInCache);
+    }
+
+    @Override
+    public void allocateObjects(List<ObjectInCache> objectsInCache, CacheHierarchy
+            cacheHierarchy) throws AllocationException {
+        super.allocateObjects(objectsInCache, cacheHierarchy);
+        objectsInCache.forEach(this::recordAccess);
+    }
+
+    @Override
+    public void onHit(ObjectInCache objectInCache, Cache cache) {
+        super.onHit(objectInCache, cache);
+        recordAccess(objectInCache);
+    }
+
+    @Override
+    public void reallocateObjects(CacheHierarchy cacheHierarchy) {
+        drainAccessBuffer();
+        super.reallocateObjects(cacheHierarchy);
+        moveWindowOverflowToMain();
+    }
+
+    @Override
+    CacheOrderIndex getOrderIndex(Cache cache) {
+        return cache == getFirstCache() ? window : super.getOrderIndex(cache);
+    }
+
+    @Override
+    CacheOrderIndex.Entry pollVictim(Cache cache) {
+        if (cache != getFirstCache()) {
+            return super.pollVictim(cache);
+        }
+        while (true) {
+            if (window.size() <= getWindowMaxSize()) {
+                // window is fine, main region is too big
+                CacheOrderIndex.Entry victim = probation.pollFirst();
+                if (victim == null) {
+                    victim = protectedRegion.pollFirst();
+                }
+                return victim != null ? victim : window.pollFirst();
+            }
+            CacheOrderIndex.Entry candidate = window.pollFirst();
+            CacheOrderIndex victimRegion = probation.size() > 0 ? probation : protectedRegion;
+            CacheOrderIndex.Entry victim = victimRegion.peekFirst();
+            if (candidate == null || victim == null) {
+                return candidate;
+            }
+            if (getFrequency(candidate) <= getFrequency(victim)) {
+                // candidate is not used more often than the victim. candidate leaves
+                return candidate;
+            }
+            // candidate is admitted to the main region, victim leaves
+            linkLast(candidate, probation);
+            if (victimRegion.unlink(victim)) {
+                return victim;
+            }
+            // victim has been released or accessed meanwhile. look for another one
+        }
+    }
+
+    private void recordAccess(ObjectInCache objectInCache) {
+        CacheOrderIndex.Entry entry = getEntry(objectInCache.getUuid());
+        if (entry != null && accessBuffer.record(entry)) {
+            drainAccessBuffer();
+        }
+    }
+
+    private void drainAccessBuffer() {
+        accessBuffer.drain(entry -> {
+            sketch.increment(entry.getUuid().hashCode());
+            CacheOrderIndex orderIndex = entry.getIndex();
+            if (orderIndex == probation) {
+                if (probation.unlink(entry)) {
+                    linkLast(entry, protectedRegion);
+                    moveProtectedOverflowToProbation();
+                }
+            } else if (orderIndex != null) {
+                orderIndex.moveToLast(entry);
+            }
+        });
+    }
+
+    private void moveProtectedOverflowToProbation() {
+        int protectedMaxSize = (probation.size() + protectedRegion.size()) * protectedPercent / 100;
+        while (protectedRegion.size() > protectedMaxSize) {
+            CacheOrderIndex.Entry entry = protectedRegion.pollFirst();
+            if (entry == null) {
+                return;
+            }
+            linkLast(entry, probation);
+        }
+    }
+
+    private void moveWindowOverflowToMain() {
+        Cache firstCache = getFirstCache();
+        if (firstCache == null) {
+            return;
+        }
+        Lock drainLock = getCacheIndex(firstCache).getDrainLock();
+        if (!drainLock.tryLock()) {
+            return;
+        }
+        try {
+            // first cache has room: window overflow is admitted without competition
+            while (!isOverloaded(firstCache) && window.size() > getWindowMaxSize()) {
+                CacheOrderIndex.Entry entry = window.pollFirst();
+                if (entry == null) {
+                    return;
+                }
+                linkLast(entry, probation);
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private int getWindowMaxSize() {
+        int firstCacheSize = window.size() + probation.size() + protectedRegion.size();
+        return Math.max(1, firstCacheSize * windowPercent / 100);
+    }
+
+    private int getFrequency(CacheOrderIndex.Entry entry) {
+        return sketch.frequency(entry.getUuid().hashCode());
+    }
+
+    private final int windowPercent;
+    private final int protectedPercent;
+    private final FrequencySketch sketch;
+    private final AccessBuffer<CacheOrderIndex.Entry> accessBuffer;
+
+    // regions of the first cache
+    private final CacheOrderIndex window;
+    private final CacheOrderIndex probation;
+    private final CacheOrderIndex protectedRegion;
+}
@@ -0,0 +1,282 @@
+package com.dantonov.wiley.objectscache.impl.codec;
+
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.ReusableOutputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registration based {@link Codec}. Objects of registered types are written by their
+ * {@link TypeSerializer} after a type id, without class descriptors. Objects of other types are
+ * encoded by the fallback codec, {@link JavaSerializationCodec} by default.<br>
+ * <ul>Details of implementation:
+ * <li>encoded bytes start with a marker: <code>null</code>, registered type or fallback</li>
+ * <li>registered type is followed by its id (4 bytes) and fields written by its
+ * {@link TypeSerializer}</li>
+ * <li>registration is found by exact class of the object, subclasses are not matched.
+ * Registration of a class is resolved once and cached by {@link ClassValue}</li>
+ * <li>{@link String}, {@link Integer}, {@link Long} and <code>byte[]</code> are registered
+ * with negative ids. Own types are registered with ids from 0</li>
+ * </ul>
+ * Ids are written to the encoded bytes, so they must not be changed while encoded bytes are
+ * stored.<br>
+ * Each thread encodes to its own reused buffer, see {@link #encodeToBuffer(Object)}.
+ */
+public class BinaryCodec implements Codec {
+
+    private BinaryCodec(Map<Class<?>, Registration<?>> registrationsByClass, Map<Integer,
+            Registration<?>> registrationsById, Codec fallbackCodec) {
+        this.registrationsById = registrationsById;
+        this.fallbackCodec = fallbackCodec;
+        threadBuffer = ThreadLocal.withInitial(EncodingBuffer::new);
+        registrations = new ClassValue<Registration<?>>() {
+            @Override
+            protected Registration<?> computeValue(Class<?> type) {
+                return registrationsByClass.get(type);
+            }
+        };
+    }
+
+    /**
+     * Builder for {@link BinaryCodec}
+     */
+    public static class Builder {
+
+        /**
+         * Constructor for {@link Builder}. Built-in types are registered
+         */
+        public Builder() {
+            addRegistration(new Registration<>(String.class, STRING_ID, new
+                    TypeSerializer<String>() {
+                        @Override
+                        public void write(String object, DataOutput output) throws IOException {
+                            // writeUTF is limited by 64 KB
+                            byte[] bytes = object.getBytes(StandardCharsets.UTF_8);
+                            output.writeInt(bytes.length);
+                            output.write(bytes);
+                        }
+
+                        @Override
+                        public String read(DataInput input) throws IOException {
+                            byte[] bytes = new byte[input.readInt()];
+                            input.readFully(bytes);
+                            return new String(bytes, StandardCharsets.UTF_8);
+                        }
+                    }));
+            addRegistration(new Registration<>(Integer.class, INTEGER_ID, new
+                    TypeSerializer<Integer>() {
+                        @Override
+                        public void write(Integer object, DataOutput output) throws IOException {
+                            output.writeInt(object);
+                        }
+
+                        @Override
+                        public Integer read(DataInput input) throws IOException {
+                            return input.readInt();
+                        }
+                    }));
+            addRegistration(new Registration<>(Long.class, LONG_ID, new TypeSerializer<Long>() {
+                @Override
+                public void write(Long object, DataOutput output) throws IOException {
+                    output.writeLong(object);
+                }
+
+                @Override
+                public Long read(DataInput input) throws IOException {
+                    return input.readLong();
+                }
+            }));
+            addRegistration(new Registration<>(byte[].class, BYTES_ID, new
+                    TypeSerializer<byte[]>() {
+                        @Override
+                        public void write(byte[] object, DataOutput output) throws IOException {
+                            output.writeInt(object.length);
+                            output.write(object);
+                        }
+
+                        @Override
+                        public byte[] read(DataInput input) throws IOException {
+                            byte[] bytes = new byte[input.readInt()];
+                            input.readFully(bytes);
+                            return bytes;
+                        }
+                    }));
+        }
+
+        /**
+         * Register type
+         *
+         * @param type           class of objects to be written by the serializer
+         * @param typeId         id written instead of class descriptor. Can not be negative
+         * @param typeSerializer {@link TypeSerializer} for the type
+         * @param <T>            registered type
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case when type or id is already registered,
+         *                                         or id is negative
+         */
+        public <T> Builder register(Class<T> type, int typeId, TypeSerializer<T>
+                typeSerializer) throws UnacceptableCacheBuildParameter {
+            if (typeId < 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Type id can not be " +
+                        "negative. Provided value is %s", typeId));
+            }
+            if (registrationsByClass.containsKey(type) || registrationsById.containsKey
+                    (typeId)) {
+                throw new UnacceptableCacheBuildParameter(String.format("Type %s or id %s is " +
+                        "already registered", type.getName(), typeId));
+            }
+            addRegistration(new Registration<>(type, typeId, typeSerializer));
+            return this;
+        }
+
+        /**
+         * Configure codec for objects of not registered types
+         *
+         * @param fallbackCodec fallback {@link Codec}
+         * @return Builder to support builder chaining
+         */
+        public Builder setFallbackCodec(Codec fallbackCodec) {
+            this.fallbackCodec = fallbackCodec;
+            return this;
+        }
+
+        /**
+         * Build {@link BinaryCodec} instance
+         *
+         * @return new {@link BinaryCodec} instance
+         */
+        public BinaryCodec build() {
+            return new BinaryCodec(Collections.unmodifiableMap(new HashMap<>
+                    (registrationsByClass)), Collections.unmodifiableMap(new HashMap<>
+                    (registrationsById)), fallbackCodec);
+        }
+
+        private void addRegistration(Registration<?> registration) {
+            registrationsByClass.put(registration.type, registration);
+            registrationsById.put(registration.typeId, registration);
+        }
+
+        private final Map<Class<?>, Registration<?>> registrationsByClass = new HashMap<>();
+        private final Map<Integer, Registration<?>> registrationsById = new HashMap<>();
+        private Codec fallbackCodec = new JavaSerializationCodec();
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        ByteBuffer encoded = encodeToBuffer(object);
+        return Arrays.copyOfRange(encoded.array(), encoded.arrayOffset() + encoded.position(),
+                encoded.arrayOffset() + encoded.limit());
+    }
+
+    @Override
+    public ByteBuffer encodeToBuffer(Object object) throws IOException {
+        EncodingBuffer encodingBuffer = threadBuffer.get();
+        encodingBuffer.bytes.recycle();
+        DataOutputStream output = encodingBuffer.output;
+        if (object == null) {
+            output.writeByte(NULL_MARKER);
+        } else {
+            Registration<?> registration = registrations.get(object.getClass());
+            if (registration == null) {
+                output.writeByte(FALLBACK_MARKER);
+                ByteBuffer encoded = fallbackCodec.encodeToBuffer(object);
+                if (encoded.hasArray()) {
+                    output.write(encoded.array(), encoded.arrayOffset() + encoded.position(),
+                            encoded.remaining());
+                } else {
+                    byte[] bytes = new byte[encoded.remaining()];
+                    encoded.duplicate().get(bytes);
+                    output.write(bytes);
+                }
+            } else {
+                output.writeByte(REGISTERED_MARKER);
+                output.writeInt(registration.typeId);
+                registration.write(object, output);
+            }
+        }
+        output.flush();
+        return encodingBuffer.bytes.toByteBuffer();
+    }
+
+    @Override
+    public Object decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) throws IOException,
+            ClassNotFoundException {
+        if (length == 0) {
+            throw new EOFException("Encoded object is empty");
+        }
+        switch (bytes[offset]) {
+            case NULL_MARKER:
+                return null;
+            case FALLBACK_MARKER:
+                return fallbackCodec.decode(bytes, offset + 1, length - 1);
+            case REGISTERED_MARKER:
+                DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes,
+                        offset + 1, length - 1));
+                int typeId = input.readInt();
+                Registration<?> registration = registrationsById.get(typeId);
+                if (registration == null) {
+                    throw new ClassNotFoundException(String.format("Type id %s is not " +
+                            "registered", typeId));
+                }
+                return registration.typeSerializer.read(input);
+            default:
+                throw new StreamCorruptedException(String.format("Unknown marker %s",
+                        bytes[offset]));
+        }
+    }
+
+    // encoding buffer reused by one thread
+    private static class EncodingBuffer {
+
+        EncodingBuffer() {
+            bytes = new ReusableOutputStream();
+            output = new DataOutputStream(bytes);
+        }
+
+        private final ReusableOutputStream bytes;
+        private final DataOutputStream output;
+    }
+
+    // registered type with its id and serializer
+    private static class Registration<T> {
+
+        Registration(Class<T> type, int typeId, TypeSerializer<T> typeSerializer) {
+            this.type = type;
+            this.typeId = typeId;
+            this.typeSerializer = typeSerializer;
+        }
+
+        void write(Object object, DataOutput output) throws IOException {
+            typeSerializer.write(type.cast(object), output);
+        }
+
+        private final Class<T> type;
+        private final int typeId;
+        private final TypeSerializer<T> typeSerializer;
+    }
+
+    private static final byte NULL_MARKER = 0;
+    private static final byte REGISTERED_MARKER = 1;
+    private static final byte FALLBACK_MARKER = 2;
+
+    private static final int STRING_ID = -1;
+    private static final int INTEGER_ID = -2;
+    private static final int LONG_ID = -3;
+    private static final int BYTES_ID = -4;
+
+    private final ClassValue<Registration<?>> registrations;
+    private final ThreadLocal<EncodingBuffer> threadBuffer;
+    private final Map<Integer, Registration<?>> registrationsById;
+    private final Codec fallbackCodec;
+}
@@ -0,0 +1,62 @@
+package com.dantonov.wiley.objectscache.impl.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Converts objects to bytes and back. Used by caches storing objects as bytes, like
+ * {@link com.dantonov.wiley.objectscache.impl.SerializableStorageCache} and
+ * {@link com.dantonov.wiley.objectscache.impl.OffHeapCache}.<br>
+ * Implementation must be thread safe.
+ */
+public interface Codec {
+
+    /**
+     * Method to encode object
+     *
+     * @param object {@link Object} to encode. May be <code>null</code>
+     * @return <code>byte[]</code> sequence
+     * @throws IOException in case if object can not be encoded
+     */
+    byte[] encode(Object object) throws IOException;
+
+    /**
+     * Method to decode <code>byte[]</code> sequence produced by {@link #encode(Object)}
+     *
+     * @param bytes <code>byte[]</code> sequence to decode
+     * @return decoded {@link Object}
+     * @throws IOException            in case if bytes can not be decoded
+     * @throws ClassNotFoundException in case if class of encoded object is not found
+     */
+    Object decode(byte[] bytes) throws IOException, ClassNotFoundException;
+
+    /**
+     * Method to encode object to a buffer reused by the current thread, so no array is
+     * allocated and copied for each object.<br>
+     * <b>NOTE:</b> returned view may be valid only until the next call in the same thread
+     *
+     * @param object {@link Object} to encode. May be <code>null</code>
+     * @return {@link ByteBuffer} view of encoded bytes
+     * @throws IOException in case if object can not be encoded
+     */
+    default ByteBuffer encodeToBuffer(Object object) throws IOException {
+        return ByteBuffer.wrap(encode(object));
+    }
+
+    /**
+     * Method to decode a part of <code>byte[]</code> sequence produced by
+     * {@link #encode(Object)}
+     *
+     * @param bytes  <code>byte[]</code> sequence to decode
+     * @param offset offset of encoded object in the sequence
+     * @param length length of encoded object
+     * @return decoded {@link Object}
+     * @throws IOException            in case if bytes can not be decoded
+     * @throws ClassNotFoundException in case if class of encoded object is not found
+     */
+    default Object decode(byte[] bytes, int offset, int length) throws IOException,
+            ClassNotFoundException {
+        return decode(Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+}
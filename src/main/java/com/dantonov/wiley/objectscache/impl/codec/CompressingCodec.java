@@ -0,0 +1,256 @@
+package com.dantonov.wiley.objectscache.impl.codec;
+
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.ReusableOutputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link Codec} compressing bytes produced by another codec with {@link Deflater}. It is
+ * configured for a tier by the <code>setCodec</code> method of the tier builder, so the tier
+ * stores and accounts compressed bytes.<br>
+ * <ul>Details of implementation:
+ * <li>encoded bytes start with a compression type: none or deflate</li>
+ * <li>deflated bytes are preceded by the length of uncompressed bytes (4 bytes), so they are
+ * inflated to an array of exact size. Length which can not be produced from the compressed
+ * bytes, or which differs from the inflated size, means the bytes are corrupted</li>
+ * <li>bytes shorter than the compression threshold are not compressed. Bytes which do not
+ * become shorter after compression are stored uncompressed as well</li>
+ * <li>each thread uses its own {@link Deflater}, {@link Inflater} and buffers, they are reset
+ * instead of being created for each object</li>
+ * </ul>
+ */
+public class CompressingCodec implements Codec {
+
+    private CompressingCodec(Codec codec, int compressionThreshold, int compressionLevel) {
+        this.codec = codec;
+        this.compressionThreshold = compressionThreshold;
+        threadCompression = ThreadLocal.withInitial(() -> new Compression(compressionLevel));
+    }
+
+    /**
+     * Builder for {@link CompressingCodec}
+     */
+    public static class Builder {
+
+        /**
+         * Configure codec producing bytes to compress
+         *
+         * @param codec underlying {@link Codec}
+         * @return Builder to support builder chaining
+         */
+        public Builder setCodec(Codec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Configure min size of bytes to be compressed
+         *
+         * @param compressionThreshold size in bytes. Shorter bytes are stored uncompressed
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setCompressionThreshold(int compressionThreshold) throws
+                UnacceptableCacheBuildParameter {
+            if (compressionThreshold < 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Compression threshold " +
+                        "can not be negative. Provided value is %s", compressionThreshold));
+            }
+            this.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        /**
+         * Configure compression level
+         *
+         * @param compressionLevel level from {@link Deflater#BEST_SPEED} to
+         *                         {@link Deflater#BEST_COMPRESSION}
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setCompressionLevel(int compressionLevel) throws
+                UnacceptableCacheBuildParameter {
+            if (compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater
+                    .BEST_COMPRESSION) {
+                throw new UnacceptableCacheBuildParameter(String.format("Compression level " +
+                        "can not be out of [%s,%s] range. Provided value is %s", Deflater
+                        .BEST_SPEED, Deflater.BEST_COMPRESSION, compressionLevel));
+            }
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Build {@link CompressingCodec} instance
+         *
+         * @return new {@link CompressingCodec} instance
+         */
+        public CompressingCodec build() {
+            return new CompressingCodec(codec, compressionThreshold, compressionLevel);
+        }
+
+        private Codec codec = new JavaSerializationCodec();
+        private int compressionThreshold = 512;
+        private int compressionLevel = Deflater.BEST_SPEED;
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        ByteBuffer encoded = encodeToBuffer(object);
+        return Arrays.copyOfRange(encoded.array(), encoded.arrayOffset() + encoded.position(),
+                encoded.arrayOffset() + encoded.limit());
+    }
+
+    @Override
+    public ByteBuffer encodeToBuffer(Object object) throws IOException {
+        ByteBuffer encoded = codec.encodeToBuffer(object);
+        byte[] bytes;
+        int offset;
+        int length = encoded.remaining();
+        if (encoded.hasArray()) {
+            bytes = encoded.array();
+            offset = encoded.arrayOffset() + encoded.position();
+        } else {
+            bytes = new byte[length];
+            encoded.duplicate().get(bytes);
+            offset = 0;
+        }
+        Compression compression = threadCompression.get();
+        ReusableOutputStream output = compression.output;
+        output.recycle();
+        if (length >= compressionThreshold) {
+            output.write(DEFLATE_TYPE);
+            writeInt(output, length);
+            Deflater deflater = compression.deflater;
+            deflater.reset();
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            byte[] chunk = compression.chunk;
+            // compressed bytes are not written after they reach the length of raw bytes
+            while (!deflater.finished() && output.size() < length + LENGTH_SIZE) {
+                output.write(chunk, 0, deflater.deflate(chunk));
+            }
+            if (deflater.finished() && output.size() < length + LENGTH_SIZE) {
+                return output.toByteBuffer();
+            }
+            output.recycle();
+        }
+        output.write(NONE_TYPE);
+        output.write(bytes, offset, length);
+        return output.toByteBuffer();
+    }
+
+    @Override
+    public Object decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) throws IOException,
+            ClassNotFoundException {
+        if (length == 0) {
+            throw new EOFException("Encoded object is empty");
+        }
+        switch (bytes[offset]) {
+            case NONE_TYPE:
+                return codec.decode(bytes, offset + 1, length - 1);
+            case DEFLATE_TYPE:
+                if (length < 1 + LENGTH_SIZE) {
+                    throw new EOFException("Length of compressed object is missing");
+                }
+                int inflatedLength = readInt(bytes, offset + 1);
+                int compressedLength = length - 1 - LENGTH_SIZE;
+                // checked before the buffer is allocated for it
+                if (inflatedLength < 0 || inflatedLength > (long) compressedLength *
+                        MAX_DEFLATE_RATIO) {
+                    throw new StreamCorruptedException(String.format("Length %s of compressed " +
+                            "object is invalid for %s compressed bytes", inflatedLength,
+                            compressedLength));
+                }
+                Compression compression = threadCompression.get();
+                byte[] inflated = compression.getInflated(inflatedLength);
+                Inflater inflater = compression.inflater;
+                inflater.reset();
+                inflater.setInput(bytes, offset + 1 + LENGTH_SIZE, compressedLength);
+                int inflatedCount = 0;
+                try {
+                    while (inflatedCount < inflatedLength && !inflater.finished()) {
+                        int count = inflater.inflate(inflated, inflatedCount, inflatedLength -
+                                inflatedCount);
+                        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new EOFException("Compressed object is truncated");
+                        }
+                        inflatedCount += count;
+                    }
+                } catch (DataFormatException e) {
+                    throw new StreamCorruptedException(e.getMessage());
+                }
+                // the rest of the buffer keeps bytes of a previous object
+                if (inflatedCount != inflatedLength) {
+                    throw new StreamCorruptedException(String.format("Compressed object is " +
+                            "inflated to %s bytes instead of %s", inflatedCount, inflatedLength));
+                }
+                return codec.decode(inflated, 0, inflatedLength);
+            default:
+                throw new StreamCorruptedException(String.format("Unknown compression type %s",
+                        bytes[offset]));
+        }
+    }
+
+    private static void writeInt(ReusableOutputStream output, int value) {
+        output.write(value >>> 24);
+        output.write(value >>> 16);
+        output.write(value >>> 8);
+        output.write(value);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset
+                + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+    // compression state reused by one thread
+    private static class Compression {
+
+        Compression(int compressionLevel) {
+            deflater = new Deflater(compressionLevel);
+            inflater = new Inflater();
+            output = new ReusableOutputStream();
+            chunk = new byte[CHUNK_SIZE];
+            inflated = new byte[CHUNK_SIZE];
+        }
+
+        byte[] getInflated(int length) {
+            if (inflated.length < length || inflated.length > MAX_RETAINED_SIZE) {
+                inflated = new byte[Math.max(length, CHUNK_SIZE)];
+            }
+            return inflated;
+        }
+
+        private final Deflater deflater;
+        private final Inflater inflater;
+        private final ReusableOutputStream output;
+        private final byte[] chunk;
+        private byte[] inflated;
+    }
+
+    private static final byte NONE_TYPE = 0;
+    private static final byte DEFLATE_TYPE = 1;
+    private static final int LENGTH_SIZE = 4;
+    private static final int CHUNK_SIZE = 4096;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+    // deflate can not compress better than about 1032:1
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final Codec codec;
+    private final int compressionThreshold;
+    private final ThreadLocal<Compression> threadCompression;
+}
@@ -0,0 +1,34 @@
+package com.dantonov.wiley.objectscache.impl.codec;
+
+import com.dantonov.wiley.objectscache.impl.storage.SerializationUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link Codec} using Java serialization by {@link SerializationUtil}.<br>
+ * <b>NOTE:</b> only serializable objects can be encoded
+ */
+public class JavaSerializationCodec implements Codec {
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        return SerializationUtil.serializeObject(object);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        return SerializationUtil.deserializeObject(bytes);
+    }
+
+    @Override
+    public ByteBuffer encodeToBuffer(Object object) throws IOException {
+        return SerializationUtil.serializeObjectToBuffer(object);
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) throws IOException,
+            ClassNotFoundException {
+        return SerializationUtil.deserializeObject(bytes, offset, length);
+    }
+}
@@ -0,0 +1,32 @@
+package com.dantonov.wiley.objectscache.impl.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads fields of objects of one type. Registered in {@link BinaryCodec}.<br>
+ * Implementation must be thread safe.
+ *
+ * @param <T> type of objects
+ */
+public interface TypeSerializer<T> {
+
+    /**
+     * Method to write object fields
+     *
+     * @param object object to write. Never <code>null</code>
+     * @param output {@link DataOutput} to write fields to
+     * @throws IOException in case if writing fails
+     */
+    void write(T object, DataOutput output) throws IOException;
+
+    /**
+     * Method to read object written by {@link #write(Object, DataOutput)}
+     *
+     * @param input {@link DataInput} to read fields from
+     * @return read object
+     * @throws IOException in case if reading fails
+     */
+    T read(DataInput input) throws IOException;
+}
@@ -0,0 +1,90 @@
+package com.dantonov.wiley.objectscache.impl.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of metrics of an objects cache and of each cache of its hierarchy
+ */
+public final class CacheStatistics {
+
+    /**
+     * Constructor for {@link CacheStatistics}
+     *
+     * @param getLatency          {@link HistogramSnapshot} of object retrieval time
+     * @param reallocationLatency {@link HistogramSnapshot} of reallocation pass time
+     * @param expiredObjects      amount of expired objects
+     * @param tiers               {@link List} of {@link TierStatistics} from the top cache
+     */
+    public CacheStatistics(HistogramSnapshot getLatency, HistogramSnapshot
+            reallocationLatency, long expiredObjects, List<TierStatistics> tiers) {
+        this.getLatency = getLatency;
+        this.reallocationLatency = reallocationLatency;
+        this.expiredObjects = expiredObjects;
+        this.tiers = Collections.unmodifiableList(new ArrayList<>(tiers));
+    }
+
+    /**
+     * @return {@link HistogramSnapshot} of time spent to retrieve one object, including the
+     * lookup through all caches. Misses, expired objects and failures are timed as well
+     */
+    public HistogramSnapshot getGetLatency() {
+        return getLatency;
+    }
+
+    /**
+     * @return {@link HistogramSnapshot} of time spent by reallocation passes
+     */
+    public HistogramSnapshot getReallocationLatency() {
+        return reallocationLatency;
+    }
+
+    /**
+     * @return amount of reallocation passes
+     */
+    public long getReallocations() {
+        return reallocationLatency.getCount();
+    }
+
+    /**
+     * @return amount of objects moved between caches by reallocation and promotion
+     */
+    public long getMovedObjects() {
+        long movedObjects = 0;
+        for (TierStatistics tier : tiers) {
+            movedObjects += tier.getMovedIn();
+        }
+        return movedObjects;
+    }
+
+    /**
+     * @return amount of objects released because they have expired
+     */
+    public long getExpiredObjects() {
+        return expiredObjects;
+    }
+
+    /**
+     * @return {@link List} of {@link TierStatistics}, first element is the top cache
+     */
+    public List<TierStatistics> getTiers() {
+        return tiers;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("get=[%s], reallocation=[%s], " +
+                "moved=%d, expired=%d", getLatency, reallocationLatency, getMovedObjects(),
+                expiredObjects));
+        for (TierStatistics tier : tiers) {
+            builder.append(System.lineSeparator()).append(tier);
+        }
+        return builder.toString();
+    }
+
+    private final HistogramSnapshot getLatency;
+    private final HistogramSnapshot reallocationLatency;
+    private final long expiredObjects;
+    private final List<TierStatistics> tiers;
+}
@@ -0,0 +1,66 @@
+package com.dantonov.wiley.objectscache.impl.metrics;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * {@link CacheStatisticsMXBean} reading snapshots of an objects cache
+ */
+public class CacheStatisticsBean implements CacheStatisticsMXBean {
+
+    /**
+     * Constructor for {@link CacheStatisticsBean}
+     *
+     * @param statistics {@link Supplier} of a new {@link CacheStatistics} snapshot
+     */
+    public CacheStatisticsBean(Supplier<CacheStatistics> statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Provide {@link ObjectName} the bean of the named objects cache is registered with
+     *
+     * @param name name of the objects cache. Any characters are allowed
+     * @return {@link ObjectName} of the bean
+     * @throws MalformedObjectNameException never for quoted name, declared by JMX
+     */
+    public static ObjectName getObjectName(String name) throws MalformedObjectNameException {
+        return new ObjectName(JMX_DOMAIN + ":type=ObjectsCache,name=" + ObjectName.quote(name));
+    }
+
+    @Override
+    public HistogramSnapshot getGetLatency() {
+        return statistics.get().getGetLatency();
+    }
+
+    @Override
+    public HistogramSnapshot getReallocationLatency() {
+        return statistics.get().getReallocationLatency();
+    }
+
+    @Override
+    public long getReallocations() {
+        return statistics.get().getReallocations();
+    }
+
+    @Override
+    public long getMovedObjects() {
+        return statistics.get().getMovedObjects();
+    }
+
+    @Override
+    public long getExpiredObjects() {
+        return statistics.get().getExpiredObjects();
+    }
+
+    @Override
+    public List<TierStatistics> getTiers() {
+        return statistics.get().getTiers();
+    }
+
+    private final Supplier<CacheStatistics> statistics;
+
+    private static final String JMX_DOMAIN = "com.dantonov.wiley.objectscache";
+}
@@ -0,0 +1,40 @@
+package com.dantonov.wiley.objectscache.impl.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link CacheStatistics}. Each attribute is read from a new snapshot. Histograms
+ * and tiers are exposed as composite data
+ */
+public interface CacheStatisticsMXBean {
+
+    /**
+     * @return see {@link CacheStatistics#getGetLatency()}
+     */
+    HistogramSnapshot getGetLatency();
+
+    /**
+     * @return see {@link CacheStatistics#getReallocationLatency()}
+     */
+    HistogramSnapshot getReallocationLatency();
+
+    /**
+     * @return see {@link CacheStatistics#getReallocations()}
+     */
+    long getReallocations();
+
+    /**
+     * @return see {@link CacheStatistics#getMovedObjects()}
+     */
+    long getMovedObjects();
+
+    /**
+     * @return see {@link CacheStatistics#getExpiredObjects()}
+     */
+    long getExpiredObjects();
+
+    /**
+     * @return see {@link CacheStatistics#getTiers()}
+     */
+    List<TierStatistics> getTiers();
+}
@@ -0,0 +1,96 @@
+package com.dantonov.wiley.objectscache.impl.metrics;
+
+/**
+ * Immutable snapshot of {@link LatencyHistogram}. All values are in nanoseconds.<br>
+ * Percentiles are reported as the highest value of the bucket they fall to, but not higher
+ * than the max recorded value
+ */
+public final class HistogramSnapshot {
+
+    HistogramSnapshot(long[] counts, long total, long max) {
+        this.counts = counts;
+        this.total = total;
+        this.max = max;
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        this.count = count;
+    }
+
+    /**
+     * @return amount of recorded durations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return mean duration, 0 if nothing has been recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * @return max recorded duration, 0 if nothing has been recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return 50th percentile of durations
+     */
+    public long getMedian() {
+        return getValueAtPercentile(50);
+    }
+
+    /**
+     * @return 99th percentile of durations
+     */
+    public long getPercentile99() {
+        return getValueAtPercentile(99);
+    }
+
+    /**
+     * @return 99.9th percentile of durations
+     */
+    public long getPercentile999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    /**
+     * Provide duration which the given percent of recorded durations does not exceed
+     *
+     * @param percentile percentile from 0 to 100
+     * @return duration at the percentile, 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        double boundedPercentile = Math.min(100, Math.max(0, percentile));
+        long rank = Math.max(1, (long) Math.ceil(boundedPercentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.0fns, median=%dns, p99=%dns, p999=%dns, " +
+                "max=%dns", count, getMean(), getMedian(), getPercentile99(),
+                getPercentile999(), max);
+    }
+
+    private final long[] counts;
+    private final long total;
+    private final long max;
+    private final long count;
+}
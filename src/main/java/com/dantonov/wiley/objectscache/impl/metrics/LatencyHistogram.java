@@ -0,0 +1,89 @@
+package com.dantonov.wiley.objectscache.impl.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds. Recording is lock-free and does not allocate.<br>
+ * <ul>Details of implementation:
+ * <li>buckets are log-linear: each power of two range is split into 32 equal buckets, so a
+ * value is reported with relative error of about 3%, from nanoseconds up to centuries</li>
+ * <li>counts are kept in one {@link AtomicLongArray}, total and max are kept in
+ * {@link LongAdder} and {@link LongAccumulator}</li>
+ * <li>{@link #getSnapshot()} copies the counts. Values recorded meanwhile may be partially
+ * seen by the snapshot</li>
+ * </ul>
+ */
+public class LatencyHistogram {
+
+    /**
+     * Constructor for {@link LatencyHistogram}
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        total = new LongAdder();
+        max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Record duration
+     *
+     * @param nanos duration in nanoseconds. Negative duration is recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return {@link HistogramSnapshot} of durations recorded so far
+     */
+    public HistogramSnapshot getSnapshot() {
+        long[] copiedCounts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copiedCounts[i] = counts.get(i);
+        }
+        return new HistogramSnapshot(copiedCounts, total.sum(), max.get());
+    }
+
+    /**
+     * Bucket of the value
+     *
+     * @param value not negative value
+     * @return index of the bucket
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // values of [2^n, 2^(n+1)) are split into SUB_BUCKETS buckets of 2^(n-SUB_BUCKET_BITS)
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Highest value counted in the bucket
+     *
+     * @param index index of the bucket
+     * @return highest value of the bucket
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowestValue = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final LongAccumulator max;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+}
@@ -0,0 +1,123 @@
+package com.dantonov.wiley.objectscache.impl.metrics;
+
+import com.dantonov.wiley.objectscache.Cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one {@link Cache} of the hierarchy. Each cache keeps its own instance, see
+ * {@link Cache#getMetrics()}. Recording is lock-free.<br>
+ * <ul>Metrics are recorded by:
+ * <li>objects cache: hits, misses and read latency of lookups through the hierarchy. Reads of
+ * objects being moved by the strategy are not counted</li>
+ * <li>strategy: objects moved into and out of the cache</li>
+ * <li>cache itself: time spent to serialize and deserialize objects, if it does</li>
+ * </ul>
+ */
+public class TierMetrics {
+
+    /**
+     * Constructor for {@link TierMetrics}
+     */
+    public TierMetrics() {
+        this(true);
+    }
+
+    private TierMetrics(boolean enabled) {
+        this.enabled = enabled;
+        hits = new LongAdder();
+        misses = new LongAdder();
+        movedIn = new LongAdder();
+        movedOut = new LongAdder();
+        readLatency = new LatencyHistogram();
+        serializationLatency = new LatencyHistogram();
+        deserializationLatency = new LatencyHistogram();
+    }
+
+    /**
+     * Record the object found in the cache
+     *
+     * @param nanos time spent to read the object in nanoseconds
+     */
+    public void recordHit(long nanos) {
+        if (enabled) {
+            hits.increment();
+            readLatency.record(nanos);
+        }
+    }
+
+    /**
+     * Record the object not found in the cache
+     */
+    public void recordMiss() {
+        if (enabled) {
+            misses.increment();
+        }
+    }
+
+    /**
+     * Record the object moved into the cache from another one
+     */
+    public void recordMoveIn() {
+        if (enabled) {
+            movedIn.increment();
+        }
+    }
+
+    /**
+     * Record the object moved out of the cache to another one
+     */
+    public void recordMoveOut() {
+        if (enabled) {
+            movedOut.increment();
+        }
+    }
+
+    /**
+     * Record serialization of the object
+     *
+     * @param nanos time spent in nanoseconds
+     */
+    public void recordSerialization(long nanos) {
+        if (enabled) {
+            serializationLatency.record(nanos);
+        }
+    }
+
+    /**
+     * Record deserialization of the object
+     *
+     * @param nanos time spent in nanoseconds
+     */
+    public void recordDeserialization(long nanos) {
+        if (enabled) {
+            deserializationLatency.record(nanos);
+        }
+    }
+
+    /**
+     * Take snapshot of the metrics
+     *
+     * @param cacheName name of the cache the metrics belong to
+     * @return {@link TierStatistics} snapshot
+     */
+    public TierStatistics getSnapshot(String cacheName) {
+        return new TierStatistics(cacheName, hits.sum(), misses.sum(), movedIn.sum(), movedOut
+                .sum(), readLatency.getSnapshot(), serializationLatency.getSnapshot(),
+                deserializationLatency.getSnapshot());
+    }
+
+    /**
+     * Metrics of caches which do not keep their own ones. Nothing is recorded
+     */
+    public static final TierMetrics DISABLED = new TierMetrics(false);
+
+    private final boolean enabled;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder movedIn;
+    private final LongAdder movedOut;
+    private final LatencyHistogram readLatency;
+    private final LatencyHistogram serializationLatency;
+    private final LatencyHistogram deserializationLatency;
+}
@@ -0,0 +1,103 @@
+package com.dantonov.wiley.objectscache.impl.metrics;
+
+/**
+ * Immutable snapshot of {@link TierMetrics} of one cache
+ */
+public final class TierStatistics {
+
+    TierStatistics(String cacheName, long hits, long misses, long movedIn, long movedOut,
+                   HistogramSnapshot readLatency, HistogramSnapshot serializationLatency,
+                   HistogramSnapshot deserializationLatency) {
+        this.cacheName = cacheName;
+        this.hits = hits;
+        this.misses = misses;
+        this.movedIn = movedIn;
+        this.movedOut = movedOut;
+        this.readLatency = readLatency;
+        this.serializationLatency = serializationLatency;
+        this.deserializationLatency = deserializationLatency;
+    }
+
+    /**
+     * @return name of the cache
+     */
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    /**
+     * @return amount of lookups which have found the object in the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return amount of lookups which have reached the cache and have not found the object
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return share of lookups reaching the cache which have found the object, 0 if there were
+     * no lookups
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return amount of objects moved into the cache from other caches
+     */
+    public long getMovedIn() {
+        return movedIn;
+    }
+
+    /**
+     * @return amount of objects moved out of the cache to other caches
+     */
+    public long getMovedOut() {
+        return movedOut;
+    }
+
+    /**
+     * @return {@link HistogramSnapshot} of time spent to read found objects
+     */
+    public HistogramSnapshot getReadLatency() {
+        return readLatency;
+    }
+
+    /**
+     * @return {@link HistogramSnapshot} of time spent to serialize objects. Empty for caches
+     * keeping objects as they are
+     */
+    public HistogramSnapshot getSerializationLatency() {
+        return serializationLatency;
+    }
+
+    /**
+     * @return {@link HistogramSnapshot} of time spent to deserialize objects. Empty for caches
+     * keeping objects as they are
+     */
+    public HistogramSnapshot getDeserializationLatency() {
+        return deserializationLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: hits=%d, misses=%d, hitRatio=%.3f, movedIn=%d, movedOut=%d, " +
+                "read=[%s]", cacheName, hits, misses, getHitRatio(), movedIn, movedOut,
+                readLatency);
+    }
+
+    private final String cacheName;
+    private final long hits;
+    private final long misses;
+    private final long movedIn;
+    private final long movedOut;
+    private final HistogramSnapshot readLatency;
+    private final HistogramSnapshot serializationLatency;
+    private final HistogramSnapshot deserializationLatency;
+}
@@ -0,0 +1,69 @@
+package com.dantonov.wiley.objectscache.impl.storage;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C (Castagnoli) {@link Checksum}, compatible with <code>java.util.zip.CRC32C</code> which
+ * is not available on Java 8.<br>
+ * Bytes are processed eight at a time with precalculated tables (slicing-by-8).
+ */
+public final class Crc32c implements Checksum {
+
+    @Override
+    public void update(int b) {
+        crc = crc >>> 8 ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int localCrc = crc;
+        int end = off + len;
+        while (end - off >= 8) {
+            int low = localCrc ^ (b[off] & 0xFF | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF)
+                    << 16 | (b[off + 3] & 0xFF) << 24);
+            localCrc = TABLES[7][low & 0xFF] ^ TABLES[6][low >>> 8 & 0xFF] ^ TABLES[5][low >>>
+                    16 & 0xFF] ^ TABLES[4][low >>> 24] ^ TABLES[3][b[off + 4] & 0xFF] ^
+                    TABLES[2][b[off + 5] & 0xFF] ^ TABLES[1][b[off + 6] & 0xFF] ^
+                    TABLES[0][b[off + 7] & 0xFF];
+            off += 8;
+        }
+        while (off < end) {
+            localCrc = localCrc >>> 8 ^ TABLES[0][(localCrc ^ b[off++]) & 0xFF];
+        }
+        crc = localCrc;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    private static int[][] createTables() {
+        int[][] tables = new int[8][256];
+        for (int i = 0; i < 256; i++) {
+            int value = i;
+            for (int bit = 0; bit < 8; bit++) {
+                value = (value & 1) != 0 ? value >>> 1 ^ POLYNOMIAL : value >>> 1;
+            }
+            tables[0][i] = value;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int table = 1; table < 8; table++) {
+                int previous = tables[table - 1][i];
+                tables[table][i] = previous >>> 8 ^ tables[0][previous & 0xFF];
+            }
+        }
+        return tables;
+    }
+
+    // reversed Castagnoli polynomial
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[][] TABLES = createTables();
+
+    private int crc = 0xFFFFFFFF;
+}
@@ -1,49 +1,329 @@
 package com.dantonov.wiley.objectscache.impl.storage;
 
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
 import com.dantonov.wiley.objectscache.impl.storage.exceptions.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.IOException;
-import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.UUID;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
- * {@link SerializableStorage} implementation that stores data on file system
+ * {@link SerializableStorage} implementation that stores data on file system<br>
+ * Occupied size is tracked by a counter changed on each store and delete, so
+ * {@link #getOccupiedSize()} does not touch the file system. The counter is restored on start
+ * (see below) and, if configured, recalculated by a periodic background audit.<br>
+ * <ul>Warm restart:
+ * <li>keys of stored data are kept in memory, see {@link #getStoredKeys()}</li>
+ * <li>on {@link #close()} keys and occupied size are written to a manifest file. The manifest
+ * is written to a temporary file and renamed, so a crash does not leave a broken one</li>
+ * <li>on start keys are read from the manifest, and the manifest is deleted: it is valid only
+ * until the storage is changed. If there is no valid manifest (the storage has not been
+ * closed), keys are collected by a parallel scan of the directory</li>
+ * <li>if configured, files created before start which are written by this class but are not
+ * stored data, like files of keys not listed in the manifest or temporary files, are deleted
+ * by a background cleanup. Other files of the directory are never deleted</li>
+ * </ul>
+ * <ul>Sharding:
+ * <li>with sharding levels configured, files are placed into nested shard directories, so no
+ * directory holds too many entries. Each level is one of 256 directories named by two hex
+ * digits of a hash of the key</li>
+ * <li>the hash mixes all bits of the key, so keys sharing a prefix (see
+ * {@link com.dantonov.wiley.objectscache.impl.SequentialIdGenerator}) are spread as well</li>
+ * <li>shard directories are created on first write into them</li>
+ * <li>files stored with other sharding levels are moved to their shards on start. The manifest
+ * keeps sharding levels, so a directory with other levels is scanned. Only files placed as
+ * by some sharding levels are moved, other directories are not changed</li>
+ * </ul>
+ * <ul>Crash safety:
+ * <li>data is written to a temporary file which is atomically renamed to the file of the key,
+ * so a crash never leaves a partially written file under the name of a key</li>
+ * <li>each file starts with a header holding the CRC32C of the data, it is checked on
+ * {@link #retrieve(UUID)}. Data lost by the file system after a crash is reported as
+ * {@link FailedToRetrieveStorageData}</li>
+ * <li>{@link Durability} defines when written data is forced to disk</li>
+ * </ul>
  */
-public class FileSystemStorage implements SerializableStorage {
+public class FileSystemStorage implements SerializableStorage, AutoCloseable {
 
     public FileSystemStorage(String baseDirectory) throws FileSystemBadDirectoryException {
+        this(baseDirectory, 0, false, 0, Durability.NONE, DEFAULT_GROUP_COMMIT_WRITES,
+                DEFAULT_GROUP_COMMIT_PERIOD_MILLIS);
+    }
+
+    private FileSystemStorage(String baseDirectory, long auditPeriodMillis, boolean
+            orphansCleanup, int shardingLevels, Durability durability, int groupCommitWrites,
+                              long groupCommitPeriodMillis) throws
+            FileSystemBadDirectoryException {
         this.baseDirectory = baseDirectory;
+        this.shardingLevels = shardingLevels;
+        this.durability = durability;
+        this.groupCommitWrites = groupCommitWrites;
         checkDirectory();
+        // modification time of files may be rounded or taken from a coarse clock
+        startTime = System.currentTimeMillis() - FILE_TIME_PRECISION_MILLIS;
+        keys = ConcurrentHashMap.newKeySet();
+        occupiedSize = new AtomicLong();
+        if (!readManifest()) {
+            scanDirectory();
+        }
+        if (auditPeriodMillis > 0 || orphansCleanup) {
+            backgroundExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, BACKGROUND_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (orphansCleanup) {
+                backgroundExecutor.execute(this::deleteOrphans);
+            }
+            if (auditPeriodMillis > 0) {
+                backgroundExecutor.scheduleWithFixedDelay(this::auditOccupiedSize,
+                        auditPeriodMillis, auditPeriodMillis, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            backgroundExecutor = null;
+        }
+        pendingPaths = new ConcurrentLinkedQueue<>();
+        pendingCount = new AtomicInteger();
+        if (durability == Durability.GROUP_COMMIT) {
+            commitExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, COMMIT_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            commitExecutor.scheduleWithFixedDelay(this::commit, groupCommitPeriodMillis,
+                    groupCommitPeriodMillis, TimeUnit.MILLISECONDS);
+        } else {
+            commitExecutor = null;
+        }
+    }
+
+    /**
+     * Defines when written data is forced to disk
+     */
+    public enum Durability {
+        /**
+         * data is not forced, it is written to disk by the operating system. Data written
+         * shortly before a crash of the system may be lost
+         */
+        NONE,
+        /**
+         * data and rename of each file are forced before store is finished
+         */
+        PER_WRITE,
+        /**
+         * data and renames are forced in background once per configured number of writes or
+         * period, see {@link Builder#setGroupCommit(int, long, TimeUnit)}. Only writes of the
+         * last group may be lost
+         */
+        GROUP_COMMIT
+    }
+
+    /**
+     * Builder for {@link FileSystemStorage}
+     */
+    public static class Builder {
+
+        /**
+         * Configure directory for stored files
+         *
+         * @param baseDirectory path to the directory. It is created if it does not exist
+         * @return Builder to support builder chaining
+         */
+        public Builder setBaseDirectory(String baseDirectory) {
+            this.baseDirectory = baseDirectory;
+            return this;
+        }
+
+        /**
+         * Configure period of occupied size audit. Audit recalculates occupied size from the
+         * directory, fixing the counter if files are changed by somebody else. 0 means no audit
+         *
+         * @param period period value
+         * @param unit   {@link TimeUnit} for period value
+         * @return Builder to support builder chaining
+         */
+        public Builder setAuditPeriod(long period, TimeUnit unit) {
+            this.auditPeriodMillis = unit.toMillis(period);
+            return this;
+        }
+
+        /**
+         * Configure background deletion of files written by this storage which are not stored
+         * data. Disabled by default
+         *
+         * @param orphansCleanup <code>true</code> to delete orphan files after start
+         * @return Builder to support builder chaining
+         */
+        public Builder setOrphansCleanup(boolean orphansCleanup) {
+            this.orphansCleanup = orphansCleanup;
+            return this;
+        }
+
+        /**
+         * Configure number of shard directory levels. Each level splits files into 256
+         * directories. 0 means all files are stored in the base directory, it is default
+         *
+         * @param shardingLevels number of levels in [0,4] range
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setShardingLevels(int shardingLevels) throws
+                UnacceptableCacheBuildParameter {
+            if (shardingLevels < 0 || shardingLevels > MAX_SHARDING_LEVELS) {
+                throw new UnacceptableCacheBuildParameter(String.format("Sharding levels can " +
+                        "not be out of [0,%s] range. Provided value is %s", MAX_SHARDING_LEVELS,
+                        shardingLevels));
+            }
+            this.shardingLevels = shardingLevels;
+            return this;
+        }
+
+        /**
+         * Configure when written data is forced to disk. Default is {@link Durability#NONE}
+         *
+         * @param durability {@link Durability} value
+         * @return Builder to support builder chaining
+         */
+        public Builder setDurability(Durability durability) {
+            this.durability = durability;
+            return this;
+        }
+
+        /**
+         * Configure group commit used by {@link Durability#GROUP_COMMIT}. Written data is forced
+         * when the number of not forced writes reaches the limit or when the period elapses.
+         * Default is 64 writes or 10 milliseconds
+         *
+         * @param writes number of writes in a group
+         * @param period max period between forces
+         * @param unit   {@link TimeUnit} for period value
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setGroupCommit(int writes, long period, TimeUnit unit) throws
+                UnacceptableCacheBuildParameter {
+            if (writes <= 0 || period <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Group commit writes " +
+                        "and period can not be less or equals 0. Provided values are %s and %s",
+                        writes, period));
+            }
+            this.groupCommitWrites = writes;
+            this.groupCommitPeriodMillis = Math.max(1, unit.toMillis(period));
+            return this;
+        }
+
+        /**
+         * Build {@link FileSystemStorage} instance
+         *
+         * @return new {@link FileSystemStorage} instance
+         * @throws FileSystemBadDirectoryException in case when directory can not be used
+         */
+        public FileSystemStorage build() throws FileSystemBadDirectoryException {
+            return new FileSystemStorage(baseDirectory, auditPeriodMillis, orphansCleanup,
+                    shardingLevels, durability, groupCommitWrites, groupCommitPeriodMillis);
+        }
+
+        private String baseDirectory;
+        private long auditPeriodMillis = 0;
+        private boolean orphansCleanup = false;
+        private int shardingLevels = 0;
+        private Durability durability = Durability.NONE;
+        private int groupCommitWrites = DEFAULT_GROUP_COMMIT_WRITES;
+        private long groupCommitPeriodMillis = DEFAULT_GROUP_COMMIT_PERIOD_MILLIS;
     }
 
     @Override
     public void store(UUID uuid, byte[] context) throws FailedToStoreDataInStorage {
+        store(uuid, ByteBuffer.wrap(context));
+    }
+
+    @Override
+    public void store(UUID uuid, ByteBuffer context) throws FailedToStoreDataInStorage {
+        Path path = pathOf(uuid);
+        // each thread writes its own temporary file
+        Path temporaryPath = path.resolveSibling(uuid.toString() + '.' + Thread.currentThread()
+                .getId() + TEMPORARY_SUFFIX);
+        ByteBuffer data = context.duplicate();
+        int size = data.remaining();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(FILE_MAGIC).putInt(checksumOf(data)).flip();
         try {
-            Files.write(Paths.get(baseDirectory, uuid.toString()), context);
+            try (FileChannel channel = openForWrite(temporaryPath)) {
+                ByteBuffer[] buffers = {header, data};
+                while (data.hasRemaining()) {
+                    channel.write(buffers);
+                }
+                if (durability == Durability.PER_WRITE) {
+                    channel.force(true);
+                }
+            }
+            long replacedSize = sizeOf(path);
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE);
+            occupiedSize.addAndGet(HEADER_SIZE + size - replacedSize);
+            keys.add(uuid);
         } catch (IOException e) {
-            throw new FailedToStoreDataInStorage(uuid);
+            try {
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException deleteException) {
+                LOGGER.warn(String.format("Temporary file %s has not been deleted",
+                        temporaryPath), deleteException);
+            }
+            throw new FailedToStoreDataInStorage(uuid, e);
+        }
+        if (durability == Durability.PER_WRITE) {
+            forceDirectory(path.getParent());
+        } else if (durability == Durability.GROUP_COMMIT) {
+            pendingPaths.add(path);
+            if (pendingCount.incrementAndGet() == groupCommitWrites) {
+                commitExecutor.execute(this::commit);
+            }
         }
     }
 
     @Override
     public byte[] retrieve(UUID uuid) throws FailedToRetrieveStorageData, DataNotFoundInStorage {
-        try {
-            return Files.readAllBytes(Paths.get(baseDirectory, uuid.toString()));
+        try (FileChannel channel = FileChannel.open(pathOf(uuid), StandardOpenOption.READ)) {
+            long dataSize = channel.size() - HEADER_SIZE;
+            if (dataSize < 0 || dataSize > Integer.MAX_VALUE) {
+                throw new StreamCorruptedException("Unexpected file size");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header);
+            byte[] bytes = new byte[(int) dataSize];
+            ByteBuffer data = ByteBuffer.wrap(bytes);
+            readFully(channel, data);
+            data.flip();
+            header.flip();
+            if (header.getInt() != FILE_MAGIC || header.getInt() != checksumOf(data)) {
+                throw new StreamCorruptedException("Checksum does not match");
+            }
+            return bytes;
+        } catch (NoSuchFileException e) {
+            throw new DataNotFoundInStorage(uuid);
         } catch (IOException e) {
+            LOGGER.error(String.format("Data of %s has not been read", uuid), e);
             throw new FailedToRetrieveStorageData(uuid);
         }
     }
 
     @Override
     public void delete(UUID uuid) throws DataNotFoundInStorage, FailedToDeleteDataInStorage {
+        Path path = pathOf(uuid);
         try {
-            Files.delete(Paths.get(baseDirectory, uuid.toString()));
+            long deletedSize = Files.size(path);
+            Files.delete(path);
+            occupiedSize.addAndGet(-deletedSize);
+            keys.remove(uuid);
+        } catch (NoSuchFileException e) {
+            throw new DataNotFoundInStorage(uuid);
         } catch (IOException e) {
             throw new FailedToDeleteDataInStorage(uuid);
         }
@@ -51,15 +331,374 @@ public class FileSystemStorage implements SerializableStorage {
 
     @Override
     public long getOccupiedSize() {
+        return occupiedSize.get();
+    }
+
+    @Override
+    public Set<UUID> getStoredKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * Stop background tasks, force not committed writes and write the manifest. Storage must not
+     * be changed after close
+     */
+    @Override
+    public void close() {
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+        }
+        if (commitExecutor != null) {
+            commitExecutor.shutdown();
+            try {
+                commitExecutor.awaitTermination(COMMIT_TERMINATION_TIMEOUT_MILLIS, TimeUnit
+                        .MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            commit();
+        }
+        writeManifest();
+    }
+
+    // forces data and renames of files written since the previous commit
+    private synchronized void commit() {
+        Set<Path> directories = new HashSet<>();
+        Path path;
+        while ((path = pendingPaths.poll()) != null) {
+            pendingCount.decrementAndGet();
+            try {
+                forceFile(path);
+            } catch (NoSuchFileException e) {
+                // file has been deleted after store
+            } catch (IOException e) {
+                LOGGER.warn(String.format("File %s has not been forced", path), e);
+            }
+            directories.add(path.getParent());
+        }
+        directories.forEach(FileSystemStorage::forceDirectory);
+    }
+
+    private static void forceFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    // makes renames in the directory durable. Directories can not be forced on some platforms
+    private static void forceDirectory(Path directory) {
+        try {
+            forceFile(directory);
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Directory %s has not been forced", directory), e);
+        }
+    }
+
+    private static int checksumOf(ByteBuffer data) {
+        Crc32c crc = new Crc32c();
+        if (data.hasArray()) {
+            crc.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        } else {
+            byte[] bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            crc.update(bytes, 0, bytes.length);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("File is shorter than expected");
+            }
+        }
+    }
+
+    // files of keys are spread over shard directories by hash of the key
+    private Path pathOf(UUID uuid) {
+        return pathOf(uuid, shardingLevels);
+    }
+
+    private Path pathOf(UUID uuid, int levels) {
+        if (levels == 0) {
+            return Paths.get(baseDirectory, uuid.toString());
+        }
+        String[] names = new String[levels + 1];
+        long hash = (uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits()) *
+                HASH_MULTIPLIER;
+        for (int level = 0; level < levels; level++) {
+            int shard = (int) (hash >>> (Long.SIZE - Byte.SIZE * (level + 1))) & 0xFF;
+            names[level] = new String(new char[]{HEX_DIGITS[shard >>> 4], HEX_DIGITS[shard &
+                    0xF]});
+        }
+        names[levels] = uuid.toString();
+        return Paths.get(baseDirectory, names);
+    }
+
+    // shard directory is created if it does not exist yet
+    private static FileChannel openForWrite(Path path) throws IOException {
+        try {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption
+                    .TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            Files.createDirectories(path.getParent());
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption
+                    .TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+    }
+
+    private boolean readManifest() {
+        Path manifestPath = Paths.get(baseDirectory, MANIFEST_FILE_NAME);
+        if (!Files.exists(manifestPath)) {
+            return false;
+        }
+        boolean isRead = false;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files
+                .newInputStream(manifestPath), MANIFEST_BUFFER_SIZE))) {
+            if (input.readLong() != MANIFEST_MAGIC) {
+                throw new IOException("Unknown manifest format");
+            }
+            int manifestShardingLevels = input.readInt();
+            if (manifestShardingLevels != shardingLevels) {
+                throw new IOException(String.format("Manifest is written for %s sharding " +
+                        "levels", manifestShardingLevels));
+            }
+            long manifestOccupiedSize = input.readLong();
+            int keysCount = input.readInt();
+            for (int i = 0; i < keysCount; i++) {
+                keys.add(new UUID(input.readLong(), input.readLong()));
+            }
+            if (input.read() != -1) {
+                throw new IOException("Manifest is longer than expected");
+            }
+            occupiedSize.set(manifestOccupiedSize);
+            isRead = true;
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Manifest has not been read, directory %s will be scanned",
+                    baseDirectory), e);
+            keys.clear();
+        }
+        // manifest is not valid after the storage is changed
+        try {
+            Files.delete(manifestPath);
+        } catch (IOException e) {
+            LOGGER.error(String.format("Manifest %s has not been deleted", manifestPath), e);
+            keys.clear();
+            return false;
+        }
+        return isRead;
+    }
+
+    private void writeManifest() {
+        Path manifestPath = Paths.get(baseDirectory, MANIFEST_FILE_NAME);
+        Path temporaryPath = Paths.get(baseDirectory, MANIFEST_FILE_NAME + TEMPORARY_SUFFIX);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files
+                    .newOutputStream(temporaryPath), MANIFEST_BUFFER_SIZE))) {
+                output.writeLong(MANIFEST_MAGIC);
+                output.writeInt(shardingLevels);
+                output.writeLong(occupiedSize.get());
+                // size of the set may change while it is iterated
+                UUID[] keysSnapshot = keys.toArray(new UUID[0]);
+                output.writeInt(keysSnapshot.length);
+                for (UUID uuid : keysSnapshot) {
+                    output.writeLong(uuid.getMostSignificantBits());
+                    output.writeLong(uuid.getLeastSignificantBits());
+                }
+            }
+            if (durability != Durability.NONE) {
+                forceFile(temporaryPath);
+            }
+            Files.move(temporaryPath, manifestPath, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Manifest has not been written, directory %s will be " +
+                    "scanned on next start", baseDirectory), e);
+        }
+    }
+
+    // files stored with other sharding levels are moved to their shards
+    private void scanDirectory() {
+        Path basePath = Paths.get(baseDirectory);
+        AtomicLong movedCount = new AtomicLong();
+        try (Stream<Path> files = Files.walk(basePath, MAX_SHARDING_LEVELS + 1)) {
+            files.parallel().forEach(path -> {
+                UUID uuid = toUuid(path);
+                // a file of a key is placed as by the sharding levels of its depth
+                if (uuid == null || !path.equals(pathOf(uuid, basePath.relativize(path)
+                        .getNameCount() - 1)) || !Files.isRegularFile(path)) {
+                    return;
+                }
+                Path shardPath = pathOf(uuid);
+                if (!path.equals(shardPath)) {
+                    if (!moveToShard(path, shardPath)) {
+                        return;
+                    }
+                    movedCount.incrementAndGet();
+                }
+                keys.add(uuid);
+                occupiedSize.addAndGet(sizeOf(shardPath));
+            });
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn(String.format("Directory %s has not been scanned", baseDirectory), e);
+        }
+        if (movedCount.get() > 0) {
+            LOGGER.info(String.format("%s files are moved to shards of %s sharding levels",
+                    movedCount.get(), shardingLevels));
+            deleteUnusedShards();
+        }
+    }
+
+    private static boolean moveToShard(Path path, Path shardPath) {
         try {
-            return Files.list(Paths.get(baseDirectory)).mapToLong((path -> {
+            Files.createDirectories(shardPath.getParent());
+            Files.move(path, shardPath, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn(String.format("File %s has not been moved to %s", path, shardPath), e);
+            return false;
+        }
+    }
+
+    // empty directories deeper than sharding levels are left by moved files
+    private void deleteUnusedShards() {
+        Path basePath = Paths.get(baseDirectory);
+        try (Stream<Path> paths = Files.walk(basePath, MAX_SHARDING_LEVELS)) {
+            paths.filter(path -> !path.equals(basePath) && basePath.relativize(path)
+                    .getNameCount() > shardingLevels && isShardDirectory(basePath.relativize
+                    (path)) && Files.isDirectory(path)).sorted
+                    (Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    // directory is not empty
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn(String.format("Unused shards have not been deleted from directory %s",
+                    baseDirectory), e);
+        }
+    }
+
+    private void deleteOrphans() {
+        try (Stream<Path> files = Files.walk(Paths.get(baseDirectory), shardingLevels + 1)) {
+            files.filter(this::isOrphan).forEach(path -> {
                 try {
-                    return Files.size(path);
+                    Files.deleteIfExists(path);
+                    LOGGER.info(String.format("Orphan file %s is deleted", path));
                 } catch (IOException e) {
-                    return 0;
+                    LOGGER.warn(String.format("Orphan file %s has not been deleted", path), e);
                 }
-            })).sum();
-        } catch (Exception e) {
+            });
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn(String.format("Orphan files have not been deleted from directory %s",
+                    baseDirectory), e);
+        }
+    }
+
+    // only files written by this class may be orphans, other files are not touched
+    private boolean isOrphan(Path path) {
+        if (!isWrittenFile(path)) {
+            return false;
+        }
+        try {
+            // files created after start are written by this storage
+            return Files.isRegularFile(path) && Files.getLastModifiedTime(path).toMillis() <
+                    startTime;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // file of a key which is not stored, temporary file of a key or temporary manifest
+    private boolean isWrittenFile(Path path) {
+        if (path.equals(Paths.get(baseDirectory, MANIFEST_FILE_NAME + TEMPORARY_SUFFIX))) {
+            return true;
+        }
+        String fileName = path.getFileName().toString();
+        if (fileName.endsWith(TEMPORARY_SUFFIX)) {
+            // <uuid>.<thread id>.tmp
+            int threadIdEnd = fileName.length() - TEMPORARY_SUFFIX.length();
+            if (fileName.length() < UUID_LENGTH + 2 + TEMPORARY_SUFFIX.length() || fileName
+                    .charAt(UUID_LENGTH) != '.' || !isDigits(fileName, UUID_LENGTH + 1,
+                    threadIdEnd)) {
+                return false;
+            }
+            UUID uuid = toUuid(fileName.substring(0, UUID_LENGTH));
+            return uuid != null && path.getParent().equals(pathOf(uuid).getParent());
+        }
+        UUID uuid = toUuid(path);
+        return uuid != null && !keys.contains(uuid) && path.equals(pathOf(uuid));
+    }
+
+    private static boolean isDigits(String string, int begin, int end) {
+        for (int i = begin; i < end; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // each name of the relative path is a shard name of two hex digits
+    private static boolean isShardDirectory(Path relativePath) {
+        for (Path name : relativePath) {
+            String shardName = name.toString();
+            if (shardName.length() != 2 || !isHexDigit(shardName.charAt(0)) || !isHexDigit
+                    (shardName.charAt(1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+
+    // returns null if the file name is not a key
+    private static UUID toUuid(Path path) {
+        return toUuid(path.getFileName().toString());
+    }
+
+    private static UUID toUuid(String fileName) {
+        if (fileName.length() != UUID_LENGTH) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(fileName);
+            // UUID.fromString accepts other forms, like upper case digits
+            return uuid.toString().equals(fileName) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void auditOccupiedSize() {
+        long calculatedSize = calculateOccupiedSize();
+        long trackedSize = occupiedSize.getAndSet(calculatedSize);
+        if (trackedSize != calculatedSize) {
+            LOGGER.info(String.format("Occupied size is corrected from %s to %s bytes",
+                    trackedSize, calculatedSize));
+        }
+    }
+
+    private long calculateOccupiedSize() {
+        try (Stream<Path> files = Files.walk(Paths.get(baseDirectory), shardingLevels + 1)) {
+            return files.filter(Files::isRegularFile).mapToLong(FileSystemStorage::sizeOf)
+                    .sum();
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn(String.format("Occupied size has not been calculated for directory %s",
+                    baseDirectory), e);
+            return 0;
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
             return 0;
         }
     }
@@ -86,5 +725,37 @@ public class FileSystemStorage implements SerializableStorage {
     }
 
     private String baseDirectory;
+    private final int shardingLevels;
+    private final AtomicLong occupiedSize;
+    private final Set<UUID> keys;
+    // files modified before this time may be orphans
+    private final long startTime;
+    private final ScheduledExecutorService backgroundExecutor;
+    private final Durability durability;
+    private final int groupCommitWrites;
+    // files renamed since the previous commit
+    private final Queue<Path> pendingPaths;
+    private final AtomicInteger pendingCount;
+    private final ScheduledExecutorService commitExecutor;
+
+    /**
+     * Size of the header written before data of each file. It is included in occupied size
+     */
+    public static final int HEADER_SIZE = 8;
+    private static final String BACKGROUND_THREAD_NAME = "objects-cache-storage-background";
+    private static final String COMMIT_THREAD_NAME = "objects-cache-storage-commit";
+    private static final int DEFAULT_GROUP_COMMIT_WRITES = 64;
+    private static final long DEFAULT_GROUP_COMMIT_PERIOD_MILLIS = 10;
+    private static final long COMMIT_TERMINATION_TIMEOUT_MILLIS = 10_000;
+    private static final int FILE_MAGIC = 0x4F424A31;
+    private static final long FILE_TIME_PRECISION_MILLIS = 2000;
+    private static final String MANIFEST_FILE_NAME = "storage.manifest";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final long MANIFEST_MAGIC = 0x4F424A4D414E4932L;
+    private static final int MANIFEST_BUFFER_SIZE = 64 * 1024;
+    private static final int UUID_LENGTH = 36;
+    private static final int MAX_SHARDING_LEVELS = 4;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
     private final static Logger LOGGER = LoggerFactory.getLogger(FileSystemStorage.class);
 }
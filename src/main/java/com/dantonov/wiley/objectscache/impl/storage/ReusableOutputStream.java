@@ -0,0 +1,43 @@
+package com.dantonov.wiley.objectscache.impl.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Growable in-memory output stream meant to be reused by one thread for many objects.<br>
+ * Written bytes are provided as a {@link ByteBuffer} view of the internal array, without a
+ * copy. The view is valid until the stream is {@link #recycle() recycled}.<br>
+ * Stream is not thread safe. Usually kept in a {@link ThreadLocal}.
+ */
+public class ReusableOutputStream extends ByteArrayOutputStream {
+
+    /**
+     * Constructor for {@link ReusableOutputStream}
+     */
+    public ReusableOutputStream() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * Provide written bytes without copying them
+     *
+     * @return {@link ByteBuffer} view of written bytes
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    /**
+     * Forget written bytes to reuse the stream. Array grown too big by a large object is
+     * dropped, so an idle thread does not hold it
+     */
+    public void recycle() {
+        if (buf.length > MAX_RETAINED_SIZE) {
+            buf = new byte[INITIAL_SIZE];
+        }
+        reset();
+    }
+
+    private static final int INITIAL_SIZE = 1024;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+}
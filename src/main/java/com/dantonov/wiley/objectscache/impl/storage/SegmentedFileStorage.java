@@ -0,0 +1,603 @@
+package com.dantonov.wiley.objectscache.impl.storage;
+
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.exceptions.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link SerializableStorage} implementation appending data to large segment files instead of
+ * creating a file per object.<br>
+ * <ul>Details of implementation:
+ * <li>records are appended to the active segment through a {@link FileChannel}. When the
+ * segment reaches configured size, a new one is started</li>
+ * <li>location of each record (segment, offset, length) is kept in memory. Reads are
+ * positional reads of one record</li>
+ * <li>delete appends a tombstone record, so the data stays deleted after restart</li>
+ * <li>space of replaced and deleted records is reclaimed by compaction: segment which live
+ * ratio falls below configured threshold is rewritten, its live records are appended to the
+ * active segment and the segment file is deleted. Compaction runs on a background thread</li>
+ * <li>on start the index is rebuilt by reading all segments in order. Incomplete record at the
+ * end of a segment (write interrupted by a crash) is cut off</li>
+ * </ul>
+ * <ul>Record format:
+ * <li>record type, 1 byte: data or tombstone</li>
+ * <li>UUID, 16 bytes</li>
+ * <li>data length, 4 bytes</li>
+ * <li>data. Data of a tombstone is the id of the segment holding deleted record</li>
+ * </ul>
+ * Appends and deletes are serialized by one lock. Reads do not lock.
+ */
+public class SegmentedFileStorage implements SerializableStorage, AutoCloseable {
+
+    private SegmentedFileStorage(String baseDirectory, long segmentSize, double
+            compactionThreshold, boolean backgroundCompaction) throws
+            FileSystemBadDirectoryException {
+        this.baseDirectory = baseDirectory;
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+        index = new ConcurrentHashMap<>();
+        segments = new ConcurrentSkipListMap<>();
+        occupiedSize = new AtomicLong();
+        writeLock = new ReentrantLock();
+        pendingCompactions = ConcurrentHashMap.newKeySet();
+        headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+        checkDirectory();
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new FileSystemBadDirectoryException("Segments have not been read due to " +
+                    "exception <<<< " + e.getMessage() + ". Directory: " + baseDirectory);
+        }
+        if (backgroundCompaction) {
+            compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, COMPACTION_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            segments.values().forEach(this::checkLiveRatio);
+        } else {
+            compactionExecutor = null;
+        }
+    }
+
+    /**
+     * Builder for {@link SegmentedFileStorage}
+     */
+    public static class Builder {
+
+        /**
+         * Configure directory for segment files
+         *
+         * @param baseDirectory path to the directory. It is created if it does not exist
+         * @return Builder to support builder chaining
+         */
+        public Builder setBaseDirectory(String baseDirectory) {
+            this.baseDirectory = baseDirectory;
+            return this;
+        }
+
+        /**
+         * Configure segment size. Segment may be larger if it holds one record larger than
+         * this size
+         *
+         * @param segmentSize size of segment in bytes
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setSegmentSize(long segmentSize) throws UnacceptableCacheBuildParameter {
+            if (segmentSize <= 0) {
+                throw new UnacceptableCacheBuildParameter(String.format("Segment size can not " +
+                        "be less or equals 0. Provided value is %s", segmentSize));
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Configure live ratio of segment to be compacted
+         *
+         * @param compactionThreshold segment is compacted if share of its live data is less
+         *                            than this value. Value is in (0,1] range
+         * @return Builder to support builder chaining
+         * @throws UnacceptableCacheBuildParameter in case then provided parameter is unacceptable
+         */
+        public Builder setCompactionThreshold(double compactionThreshold) throws
+                UnacceptableCacheBuildParameter {
+            if (compactionThreshold <= 0 || compactionThreshold > 1) {
+                throw new UnacceptableCacheBuildParameter(String.format("Compaction threshold " +
+                        "can not be out of (0,1] range. Provided value is %s",
+                        compactionThreshold));
+            }
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /**
+         * Configure background compaction. If it is disabled, {@link #compact()} should be
+         * called to reclaim space
+         *
+         * @param backgroundCompaction <code>true</code> to compact segments on background thread
+         * @return Builder to support builder chaining
+         */
+        public Builder setBackgroundCompaction(boolean backgroundCompaction) {
+            this.backgroundCompaction = backgroundCompaction;
+            return this;
+        }
+
+        /**
+         * Build {@link SegmentedFileStorage} instance. Existing segments are read
+         *
+         * @return new {@link SegmentedFileStorage} instance
+         * @throws FileSystemBadDirectoryException in case when directory can not be used
+         */
+        public SegmentedFileStorage build() throws FileSystemBadDirectoryException {
+            return new SegmentedFileStorage(baseDirectory, segmentSize, compactionThreshold,
+                    backgroundCompaction);
+        }
+
+        private String baseDirectory;
+        private long segmentSize = 64L * 1024 * 1024;
+        private double compactionThreshold = 0.5;
+        private boolean backgroundCompaction = true;
+    }
+
+    @Override
+    public void store(UUID uuid, byte[] context) throws FailedToStoreDataInStorage {
+        store(uuid, ByteBuffer.wrap(context));
+    }
+
+    @Override
+    public void store(UUID uuid, ByteBuffer context) throws FailedToStoreDataInStorage {
+        writeLock.lock();
+        try {
+            RecordLocation location = append(DATA_RECORD, uuid, context);
+            RecordLocation replacedLocation = index.put(uuid, location);
+            if (replacedLocation != null) {
+                markDead(replacedLocation);
+            }
+        } catch (IOException e) {
+            throw new FailedToStoreDataInStorage(uuid);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public byte[] retrieve(UUID uuid) throws FailedToRetrieveStorageData, DataNotFoundInStorage {
+        for (int attempt = 1; ; attempt++) {
+            RecordLocation location = index.get(uuid);
+            if (location == null) {
+                throw new DataNotFoundInStorage(uuid);
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(location.length);
+                readFully(location.segment, buffer, location.offset + HEADER_SIZE);
+                return buffer.array();
+            } catch (IOException e) {
+                // record may have been moved by compaction, or its segment channel closed by
+                // an interrupted reader. read it again
+                boolean moved = index.get(uuid) != location;
+                if (attempt == MAX_READ_ATTEMPTS || !(moved || e instanceof
+                        ClosedChannelException)) {
+                    throw new FailedToRetrieveStorageData(uuid);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void delete(UUID uuid) throws DataNotFoundInStorage, FailedToDeleteDataInStorage {
+        writeLock.lock();
+        try {
+            RecordLocation location = index.remove(uuid);
+            if (location == null) {
+                throw new DataNotFoundInStorage(uuid);
+            }
+            try {
+                append(TOMBSTONE_RECORD, uuid, ByteBuffer.wrap(toTombstoneData(location
+                        .segment.id)));
+            } catch (IOException e) {
+                index.put(uuid, location);
+                throw new FailedToDeleteDataInStorage(uuid);
+            }
+            markDead(location);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<UUID> uuids) throws FailedToDeleteDataInStorage {
+        // tombstones of the batch are appended under one lock acquisition
+        writeLock.lock();
+        try {
+            SerializableStorage.super.deleteAll(uuids);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<UUID> getStoredKeys() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    @Override
+    public long getOccupiedSize() {
+        return occupiedSize.get();
+    }
+
+    /**
+     * Compact all segments which live ratio is below configured threshold. Active segment is
+     * not compacted
+     *
+     * @throws IOException in case when segment can not be compacted
+     */
+    public void compact() throws IOException {
+        for (Segment segment : segments.values()) {
+            if (segment != activeSegment && isCompactionNeeded(segment)) {
+                compactSegment(segment);
+            }
+        }
+    }
+
+    /**
+     * @return amount of segment files
+     */
+    public int getSegmentsCount() {
+        return segments.size();
+    }
+
+    /**
+     * Stop compaction thread and close segment files
+     */
+    @Override
+    public void close() {
+        if (compactionExecutor != null) {
+            compactionExecutor.shutdown();
+            try {
+                compactionExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Segment has not been closed", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // must be called under write lock
+    private RecordLocation append(byte type, UUID uuid, ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        int recordSize = HEADER_SIZE + length;
+        if (activeSegment == null || activeSegment.size > 0 && activeSegment.size + recordSize >
+                segmentSize) {
+            startSegment();
+        }
+        headerBuffer.clear();
+        headerBuffer.put(type).putLong(uuid.getMostSignificantBits()).putLong(uuid
+                .getLeastSignificantBits()).putInt(length);
+        headerBuffer.flip();
+        Segment segment = activeSegment;
+        long offset = segment.size;
+        writeFully(segment, headerBuffer, offset);
+        // data is written from the caller buffer, it is not copied to the record buffer
+        writeFully(segment, data.duplicate(), offset + HEADER_SIZE);
+        segment.size += recordSize;
+        if (type == DATA_RECORD) {
+            segment.liveBytes += recordSize;
+        }
+        occupiedSize.addAndGet(recordSize);
+        return new RecordLocation(segment, offset, length);
+    }
+
+    private static void writeFully(Segment segment, ByteBuffer buffer, long position) throws
+            IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            segment.getChannel().write(buffer, start + buffer.position());
+        }
+    }
+
+    // must be called under write lock
+    private void startSegment() throws IOException {
+        Segment previousSegment = activeSegment;
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        activeSegment = new Segment(id, Paths.get(baseDirectory, String.format(SEGMENT_NAME, id)));
+        segments.put(id, activeSegment);
+        if (previousSegment != null) {
+            checkLiveRatio(previousSegment);
+        }
+    }
+
+    // must be called under write lock
+    private void markDead(RecordLocation location) {
+        location.segment.liveBytes -= HEADER_SIZE + location.length;
+        checkLiveRatio(location.segment);
+    }
+
+    private void checkLiveRatio(Segment segment) {
+        if (compactionExecutor == null || segment == activeSegment || !isCompactionNeeded
+                (segment) || !pendingCompactions.add(segment)) {
+            return;
+        }
+        try {
+            compactionExecutor.execute(() -> {
+                pendingCompactions.remove(segment);
+                try {
+                    compactSegment(segment);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.error(String.format("Segment %s has not been compacted", segment
+                            .path), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // storage is closed
+            pendingCompactions.remove(segment);
+        }
+    }
+
+    private boolean isCompactionNeeded(Segment segment) {
+        return segment.size > 0 && (double) segment.liveBytes / segment.size <
+                compactionThreshold;
+    }
+
+    private void compactSegment(Segment segment) throws IOException {
+        if (segment.deleted) {
+            return;
+        }
+        scan(segment, (type, uuid, offset, data) -> {
+            writeLock.lock();
+            try {
+                if (type == DATA_RECORD) {
+                    RecordLocation location = index.get(uuid);
+                    // only the record the index points to is live
+                    if (location != null && location.segment == segment && location.offset ==
+                            offset) {
+                        index.put(uuid, append(DATA_RECORD, uuid, ByteBuffer.wrap(data)));
+                    }
+                } else {
+                    // tombstone is needed while the segment with deleted record exists
+                    int deletedRecordSegmentId = ByteBuffer.wrap(data).getInt();
+                    if (deletedRecordSegmentId != segment.id && segments.containsKey
+                            (deletedRecordSegmentId)) {
+                        append(TOMBSTONE_RECORD, uuid, ByteBuffer.wrap(data));
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            return true;
+        });
+        writeLock.lock();
+        try {
+            segments.remove(segment.id);
+            occupiedSize.addAndGet(-segment.size);
+            segment.deleted = true;
+            segment.close();
+            Files.deleteIfExists(segment.path);
+        } finally {
+            writeLock.unlock();
+        }
+        LOGGER.debug(String.format("Segment %s has been compacted", segment.path));
+    }
+
+    private void recover() throws IOException {
+        List<Path> segmentFiles;
+        try (Stream<Path> files = Files.list(Paths.get(baseDirectory))) {
+            segmentFiles = files.filter(path -> path.getFileName().toString().endsWith
+                    (SEGMENT_SUFFIX)).sorted().collect(Collectors.toList());
+        }
+        for (Path path : segmentFiles) {
+            String fileName = path.getFileName().toString();
+            int id;
+            try {
+                id = Integer.parseInt(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX
+                        .length()));
+            } catch (NumberFormatException e) {
+                LOGGER.warn(String.format("File %s is not a segment. Skipped", path));
+                continue;
+            }
+            Segment segment = new Segment(id, path);
+            segment.size = segment.getChannel().size();
+            segments.put(id, segment);
+            long validSize = scan(segment, (type, uuid, offset, data) -> {
+                if (type == DATA_RECORD) {
+                    segment.liveBytes += HEADER_SIZE + data.length;
+                    RecordLocation replacedLocation = index.put(uuid, new RecordLocation(segment,
+                            offset, data.length));
+                    if (replacedLocation != null) {
+                        replacedLocation.segment.liveBytes -= HEADER_SIZE + replacedLocation
+                                .length;
+                    }
+                } else {
+                    // tombstone copied by compaction must not delete a record stored later
+                    RecordLocation deletedLocation = index.get(uuid);
+                    if (deletedLocation != null && deletedLocation.segment.id == ByteBuffer
+                            .wrap(data).getInt()) {
+                        index.remove(uuid);
+                        deletedLocation.segment.liveBytes -= HEADER_SIZE + deletedLocation
+                                .length;
+                    }
+                }
+                return true;
+            });
+            if (validSize < segment.size) {
+                LOGGER.warn(String.format("Segment %s has incomplete record at %s. It is cut " +
+                        "off", path, validSize));
+                segment.getChannel().truncate(validSize);
+                segment.size = validSize;
+            }
+            occupiedSize.addAndGet(segment.size);
+        }
+        if (!segments.isEmpty() && segments.lastEntry().getValue().size < segmentSize) {
+            activeSegment = segments.lastEntry().getValue();
+        }
+    }
+
+    // visit records of the segment in order. returns size of valid records
+    private long scan(Segment segment, RecordVisitor visitor) throws IOException {
+        long segmentSize = segment.size;
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (offset + HEADER_SIZE <= segmentSize) {
+            header.clear();
+            readFully(segment, header, offset);
+            header.flip();
+            byte type = header.get();
+            UUID uuid = new UUID(header.getLong(), header.getLong());
+            int length = header.getInt();
+            if (type != DATA_RECORD && type != TOMBSTONE_RECORD || length < 0 || offset +
+                    HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            ByteBuffer data = ByteBuffer.allocate(length);
+            readFully(segment, data, offset + HEADER_SIZE);
+            if (!visitor.visit(type, uuid, offset, data.array())) {
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private static void readFully(Segment segment, ByteBuffer buffer, long position) throws
+            IOException {
+        FileChannel channel = segment.getChannel();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static byte[] toTombstoneData(int segmentId) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(segmentId).array();
+    }
+
+    private void checkDirectory() throws FileSystemBadDirectoryException {
+        if (baseDirectory == null) {
+            throw new FileSystemBadDirectoryException("Directory path is null: ");
+        }
+        Path basePath = Paths.get(baseDirectory);
+        LOGGER.info(String.format("Checking directory: %s", baseDirectory));
+        if (!Files.exists(basePath)) {
+            try {
+                Files.createDirectories(basePath);
+            } catch (IOException e) {
+                throw new FileSystemBadDirectoryException("Directory has not been created due " +
+                        "to exception <<<< " + e.getMessage() + ". Directory: " + baseDirectory);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        boolean visit(byte type, UUID uuid, long offset, byte[] data) throws IOException;
+    }
+
+    // one segment file. size and live bytes are changed under write lock
+    private static class Segment {
+
+        Segment(int id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption
+                    .READ, StandardOpenOption.WRITE);
+        }
+
+        FileChannel getChannel() throws IOException {
+            FileChannel currentChannel = channel;
+            return currentChannel.isOpen() ? currentChannel : reopen();
+        }
+
+        // channel is closed if a thread using it is interrupted. other threads may go on
+        private synchronized FileChannel reopen() throws IOException {
+            if (!channel.isOpen() && !deleted) {
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption
+                        .WRITE);
+            }
+            return channel;
+        }
+
+        synchronized void close() throws IOException {
+            channel.close();
+        }
+
+        private final int id;
+        private final Path path;
+        private volatile FileChannel channel;
+        private volatile long size;
+        private volatile long liveBytes;
+        private volatile boolean deleted;
+    }
+
+    private static class RecordLocation {
+
+        RecordLocation(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+    }
+
+    private static final byte DATA_RECORD = 1;
+    private static final byte TOMBSTONE_RECORD = 2;
+    // type, uuid and data length
+    private static final int HEADER_SIZE = 1 + 16 + 4;
+    private static final int MAX_READ_ATTEMPTS = 3;
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String SEGMENT_NAME = "%010d" + SEGMENT_SUFFIX;
+    private static final String COMPACTION_THREAD_NAME = "objects-cache-compaction";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final String baseDirectory;
+    private final long segmentSize;
+    private final double compactionThreshold;
+    private final Map<UUID, RecordLocation> index;
+    private final ConcurrentNavigableMap<Integer, Segment> segments;
+    private final AtomicLong occupiedSize;
+    private final Lock writeLock;
+    private final Set<Segment> pendingCompactions;
+    // header of appended record. used under write lock
+    private final ByteBuffer headerBuffer;
+    private final ExecutorService compactionExecutor;
+    // segment records are appended to. changed under write lock
+    private volatile Segment activeSegment;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(SegmentedFileStorage.class);
+}
@@ -5,6 +5,10 @@ import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToDeleteDat
 import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToRetrieveStorageData;
 import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToStoreDataInStorage;
 
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -21,6 +25,22 @@ public interface SerializableStorage {
      */
     void store(UUID uuid, byte[] context) throws FailedToStoreDataInStorage;
 
+    /**
+     * Method to save the binary data given as a buffer view. Bytes from the buffer position to
+     * its limit are saved, the buffer position is not changed.<br>
+     * Default implementation copies the bytes to an array. Implementations should write the
+     * buffer without a copy
+     *
+     * @param uuid    identifier for the data
+     * @param context binary data to save
+     * @throws FailedToStoreDataInStorage in case when storage has failed to save the data
+     */
+    default void store(UUID uuid, ByteBuffer context) throws FailedToStoreDataInStorage {
+        byte[] bytes = new byte[context.remaining()];
+        context.duplicate().get(bytes);
+        store(uuid, bytes);
+    }
+
     /**
      * Method to retrieve stored data
      *
@@ -40,6 +60,40 @@ public interface SerializableStorage {
      */
     void delete(UUID uuid) throws DataNotFoundInStorage, FailedToDeleteDataInStorage;
 
+    /**
+     * Method to delete a batch of stored data. Data which has not been found is skipped.<br>
+     * Default implementation deletes data one by one
+     *
+     * @param uuids identifiers for the data
+     * @throws FailedToDeleteDataInStorage in case when storage has failed to delete any data.
+     *                                     Other data of the batch is deleted anyway
+     */
+    default void deleteAll(Collection<UUID> uuids) throws FailedToDeleteDataInStorage {
+        FailedToDeleteDataInStorage exception = null;
+        for (UUID uuid : uuids) {
+            try {
+                delete(uuid);
+            } catch (DataNotFoundInStorage e) {
+                // already deleted
+            } catch (FailedToDeleteDataInStorage e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Method to list keys of stored data. Used to reach data stored before restart.<br>
+     * Default implementation returns empty set: storage can not list its data
+     *
+     * @return {@link Set} of identifiers of stored data
+     */
+    default Set<UUID> getStoredKeys() {
+        return Collections.emptySet();
+    }
+
     /**
      * Method to retrieve an occupied data size. Lets suppose it measured in bytes
      * @return occupied place size in bytes
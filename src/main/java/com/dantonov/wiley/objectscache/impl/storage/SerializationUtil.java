@@ -1,6 +1,7 @@
 package com.dantonov.wiley.objectscache.impl.storage;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Util class implements methods to serialize and deserialize objects
@@ -22,6 +23,38 @@ public class SerializationUtil {
         }
     }
 
+    /**
+     * Method to serialize object to a buffer of the current thread. Buffer is reused, so
+     * serialization does not allocate and copy a new array for each object.<br>
+     * <b>NOTE:</b> returned view is valid only until the next call in the same thread
+     *
+     * @param object {@link Object} to serialize
+     * @return {@link ByteBuffer} view of serialized bytes
+     * @throws IOException in case if serialization fails
+     */
+    public static ByteBuffer serializeObjectToBuffer(Object object) throws IOException {
+        ReusableOutputStream buffer = THREAD_BUFFER.get();
+        buffer.recycle();
+        serializeObject(object, buffer);
+        return buffer.toByteBuffer();
+    }
+
+    /**
+     * Method to serialize object to the stream
+     *
+     * @param object       {@link Object} to serialize
+     * @param outputStream {@link OutputStream} to write serialized bytes to. It is not closed
+     * @throws IOException in case if serialization fails
+     */
+    public static void serializeObject(Object object, OutputStream outputStream) throws
+            IOException {
+        // ObjectOutputStream writes a stream header and keeps handles of written objects, so
+        // it can not be reused for independent objects. Its own buffer is small
+        ObjectOutputStream objectStream = new ObjectOutputStream(outputStream);
+        objectStream.writeObject(object);
+        objectStream.flush();
+    }
+
     /**
      * Method to deserialize <code>byte[]</code> sequence to object
      *
@@ -32,9 +65,27 @@ public class SerializationUtil {
      */
     public static Object deserializeObject(byte[] bytes) throws IOException,
             ClassNotFoundException {
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+        return deserializeObject(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Method to deserialize a part of <code>byte[]</code> sequence to object
+     *
+     * @param bytes  <code>byte[]</code> sequence to deserialize
+     * @param offset offset of serialized object in the sequence
+     * @param length length of serialized object
+     * @return {@link Object}
+     * @throws IOException            in case if serialization fails
+     * @throws ClassNotFoundException in case if serialization fails
+     */
+    public static Object deserializeObject(byte[] bytes, int offset, int length) throws
+            IOException, ClassNotFoundException {
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes, offset, length);
              ObjectInputStream ois = new ObjectInputStream(bais)) {
             return ois.readObject();
         }
     }
+
+    private static final ThreadLocal<ReusableOutputStream> THREAD_BUFFER = ThreadLocal
+            .withInitial(ReusableOutputStream::new);
 }
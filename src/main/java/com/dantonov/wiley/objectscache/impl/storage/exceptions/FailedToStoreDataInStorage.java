@@ -12,4 +12,8 @@ public class FailedToStoreDataInStorage extends Exception {
     public FailedToStoreDataInStorage(UUID uuid) {
         super(uuid.toString());
     }
+
+    public FailedToStoreDataInStorage(UUID uuid, Throwable cause) {
+        super(uuid.toString(), cause);
+    }
 }
\ No newline at end of file
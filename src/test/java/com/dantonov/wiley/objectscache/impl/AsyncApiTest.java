@@ -0,0 +1,84 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import org.testng.Assert;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.*;
+
+/**
+ * Test asynchronous operations of {@link ObjectCacheImpl}.<br>
+ * Objects found in the in-memory cache must be returned by completed future, while reading the
+ * storage cache must not block the caller even if the I/O executor is busy.
+ */
+public class AsyncApiTest {
+
+    @BeforeTest
+    public void prepareDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @AfterTest
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void completeInMemoryHitsInline() throws Exception {
+        ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+        Cache inMemoryCache = new InMemoryCache.Builder().setMaxCacheSize(1).setDangerLoad(100)
+                .build();
+        try (FileSystemStorage storage = new FileSystemStorage.Builder().setBaseDirectory
+                (TEST_DIRECTORY).build();
+             ObjectCacheImpl objectsCache = new ObjectCacheImpl.Builder()
+                     .setCacheMovingStrategy(new ObjectCacheStrategyImpl()).setCacheLevelModel
+                             (new SimpleChacheListHierarchy.Builder().addCache(inMemoryCache)
+                                     .addCache(new SerializableStorageCache.Builder()
+                                             .setSerializableStorage(storage).build()).build())
+                     .setIoExecutor(ioExecutor).build()) {
+            CachedObject storedObject = objectsCache.cacheObjectAsync("stored").get(10,
+                    TimeUnit.SECONDS);
+            CachedObject inMemoryObject = objectsCache.cacheObjectAsync("in memory").get(10,
+                    TimeUnit.SECONDS);
+
+            // occupy the only I/O thread
+            CountDownLatch diskReleased = new CountDownLatch(1);
+            ioExecutor.execute(() -> {
+                try {
+                    diskReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<Object> inMemoryFuture = objectsCache.getObjectAsync
+                    (inMemoryObject);
+            Assert.assertTrue(inMemoryFuture.isDone(), "In-memory hit must complete inline");
+            Assert.assertEquals(inMemoryFuture.get(), "in memory", "In-memory object must be " +
+                    "returned");
+            CompletableFuture<Object> storedFuture = objectsCache.getObjectAsync(storedObject);
+            Assert.assertFalse(storedFuture.isDone(), "Storage read must run on I/O executor");
+
+            diskReleased.countDown();
+            Assert.assertEquals(storedFuture.get(10, TimeUnit.SECONDS), "stored", "Stored " +
+                    "object must be returned");
+
+            objectsCache.releaseAsync(storedObject).get(10, TimeUnit.SECONDS);
+            try {
+                objectsCache.getObjectAsync(storedObject).get(10, TimeUnit.SECONDS);
+                Assert.fail("Released object must not be found");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof ObjectNotFoundInCache, "Future must " +
+                        "be completed by ObjectNotFoundInCache");
+            }
+        } finally {
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    private static final String TEST_DIRECTORY = "./target/async_api";
+}
@@ -0,0 +1,109 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CacheHierarchy;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import org.testng.Assert;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test batch operations of {@link ObjectCacheImpl}.<br>
+ * Batch must be placed and reallocated once, objects must be found in any cache in order of
+ * the references, and released objects must be removed from all caches.
+ */
+public class BatchOperationsTest {
+
+    @BeforeTest
+    public void prepareDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @AfterTest
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void cacheGetAndReleaseBatch() throws Exception {
+        AtomicInteger reallocations = new AtomicInteger();
+        ObjectCacheStrategyImpl strategy = new ObjectCacheStrategyImpl() {
+            @Override
+            public void reallocateObjects(CacheHierarchy cacheHierarchy) {
+                reallocations.incrementAndGet();
+                super.reallocateObjects(cacheHierarchy);
+            }
+        };
+        Cache inMemoryCache = new InMemoryCache.Builder().setMaxCacheSize(10).setDangerLoad(100)
+                .build();
+        try (FileSystemStorage storage = new FileSystemStorage.Builder().setBaseDirectory
+                (TEST_DIRECTORY).build();
+             ObjectCacheImpl objectsCache = new ObjectCacheImpl.Builder()
+                     .setCacheMovingStrategy(strategy).setCacheLevelModel(new
+                             SimpleChacheListHierarchy.Builder().addCache(inMemoryCache)
+                             .addCache(new SerializableStorageCache.Builder()
+                                     .setSerializableStorage(storage).build()).build()).build()) {
+            List<Integer> objects = new ArrayList<>();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                objects.add(i);
+            }
+            List<CachedObject> cachedObjects = objectsCache.cacheAll(objects);
+            Assert.assertEquals(reallocations.get(), 1, "Batch must be reallocated once");
+            Assert.assertEquals(inMemoryCache.getConfigurationValues().stream().filter
+                    (value -> !value.isResponding()).count(), 0L, "Overloaded cache must be " +
+                    "drained by the reallocation");
+
+            List<CachedObject> reversedObjects = new ArrayList<>(cachedObjects);
+            Collections.reverse(reversedObjects);
+            List<Object> foundObjects = objectsCache.getAll(reversedObjects);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Assert.assertEquals(foundObjects.get(i), BATCH_SIZE - 1 - i, "Objects must be " +
+                        "returned in order of references");
+            }
+
+            reallocations.set(0);
+            objectsCache.releaseAll(cachedObjects);
+            Assert.assertEquals(reallocations.get(), 1, "Released batch must be reallocated " +
+                    "once");
+            Assert.assertEquals(storage.getOccupiedSize(), 0L, "Released objects must be " +
+                    "removed from the storage");
+            try {
+                objectsCache.getAll(cachedObjects.subList(0, 1));
+                Assert.fail("Released object must not be found");
+            } catch (ObjectNotFoundInCache e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expectedExceptions = AllocationException.class)
+    public void rejectNotSerializableBatch() throws Exception {
+        Cache lastCache = new SerializableStorageCache.Builder().setSerializableStorage(new
+                FileSystemStorage(TEST_DIRECTORY)).build();
+        ObjectCacheStrategyImpl strategy = new ObjectCacheStrategyImpl();
+        try (ObjectCacheImpl objectsCache = new ObjectCacheImpl.Builder()
+                .setCacheMovingStrategy(strategy).setCacheLevelModel(new
+                        SimpleChacheListHierarchy.Builder().addCache(lastCache).build()).build()) {
+            try {
+                objectsCache.cacheAll(Arrays.asList("serializable", new
+                        TestNonSerializableObject()));
+            } finally {
+                Assert.assertEquals(strategy.getTrackedObjectsCount(), 0, "Objects of failed " +
+                        "batch must be released");
+            }
+        }
+    }
+
+    private static final int BATCH_SIZE = 200;
+    private static final String TEST_DIRECTORY = "./target/batch_operations";
+}
@@ -0,0 +1,108 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.codec.BinaryCodec;
+import com.dantonov.wiley.objectscache.impl.codec.Codec;
+import com.dantonov.wiley.objectscache.impl.codec.JavaSerializationCodec;
+import com.dantonov.wiley.objectscache.impl.codec.TypeSerializer;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Test {@link BinaryCodec}.<br>
+ * Registered types must be encoded without class descriptors, other types must be encoded by
+ * the fallback codec.
+ */
+public class BinaryCodecTest {
+
+    @BeforeTest
+    public void buildCodec() throws UnacceptableCacheBuildParameter {
+        codec = new BinaryCodec.Builder().register(TestSerializableObject.class, 1, new
+                TypeSerializer<TestSerializableObject>() {
+                    @Override
+                    public void write(TestSerializableObject object, DataOutput output) throws
+                            IOException {
+                        output.writeInt(object.getIntValue());
+                        output.writeUTF(object.getStringValue());
+                        output.writeBoolean(object.isBooleanValue());
+                    }
+
+                    @Override
+                    public TestSerializableObject read(DataInput input) throws IOException {
+                        return new TestSerializableObject(input.readInt(), input.readUTF(),
+                                input.readBoolean());
+                    }
+                }).build();
+    }
+
+    @Test
+    public void encodeRegisteredType() throws IOException, ClassNotFoundException {
+        TestSerializableObject object = new TestSerializableObject(10, "10", true);
+        byte[] binaryBytes = codec.encode(object);
+        byte[] javaBytes = new JavaSerializationCodec().encode(object);
+        Assert.assertTrue(binaryBytes.length < javaBytes.length / 4, String.format("Registered " +
+                "type must be encoded compactly. Binary: %s bytes, Java: %s bytes", binaryBytes
+                .length, javaBytes.length));
+        Assert.assertEquals(codec.decode(binaryBytes), object, "Decoded object must be equal " +
+                "to the encoded one");
+    }
+
+    @Test
+    public void encodeBuiltInTypes() throws IOException, ClassNotFoundException {
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 70_000; i++) {
+            longString.append('\u044B');
+        }
+        for (Object object : new Object[]{"test string", longString.toString(), 28, 28L, null}) {
+            Assert.assertEquals(codec.decode(codec.encode(object)), object, "Decoded object " +
+                    "must be equal to the encoded one");
+        }
+        byte[] bytes = {1, 2, 3};
+        Assert.assertEquals((byte[]) codec.decode(codec.encode(bytes)), bytes, "Decoded bytes " +
+                "must be equal to the encoded ones");
+    }
+
+    @Test
+    public void encodeByFallback() throws IOException, ClassNotFoundException {
+        Double object = 2.8;
+        Assert.assertEquals(codec.decode(codec.encode(object)), object, "Not registered type " +
+                "must be encoded by fallback codec");
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void registerTypeTwice() throws UnacceptableCacheBuildParameter {
+        TypeSerializer<Double> serializer = new TypeSerializer<Double>() {
+            @Override
+            public void write(Double object, DataOutput output) throws IOException {
+                output.writeDouble(object);
+            }
+
+            @Override
+            public Double read(DataInput input) throws IOException {
+                return input.readDouble();
+            }
+        };
+        new BinaryCodec.Builder().register(Double.class, 1, serializer).register(Double.class,
+                2, serializer);
+    }
+
+    @Test
+    public void useCodecInCache() throws UnacceptableCacheBuildParameter,
+            AllocationInCacheException, ObjectNotFoundInCache {
+        OffHeapCache offHeapCache = new OffHeapCache.Builder().setCodec(codec).build();
+        TestSerializableObject object = new TestSerializableObject(20, "20", false);
+        ObjectInCache objectInCache = new ObjectInCache.Builder().setObject(object).build();
+        offHeapCache.allocateObject(objectInCache);
+        Assert.assertEquals(offHeapCache.freeObject(objectInCache).objectRef(), object, "Object " +
+                "must be decoded by configured codec");
+    }
+
+    private Codec codec;
+}
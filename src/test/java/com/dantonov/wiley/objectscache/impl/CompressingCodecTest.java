@@ -0,0 +1,128 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.codec.Codec;
+import com.dantonov.wiley.objectscache.impl.codec.CompressingCodec;
+import com.dantonov.wiley.objectscache.impl.codec.JavaSerializationCodec;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import com.dantonov.wiley.objectscache.impl.storage.exceptions.FileSystemBadDirectoryException;
+import org.testng.Assert;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test {@link CompressingCodec}.<br>
+ * Text-heavy objects must be stored compressed, small objects must be stored as they are, and
+ * storage must account compressed bytes. Corrupted length of compressed bytes must be
+ * rejected.
+ */
+public class CompressingCodecTest {
+
+    @BeforeTest
+    public void buildCodec() throws UnacceptableCacheBuildParameter {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+        codec = new CompressingCodec.Builder().setCompressionThreshold(COMPRESSION_THRESHOLD)
+                .build();
+    }
+
+    @AfterTest
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void compressLargeObject() throws IOException, ClassNotFoundException {
+        List<String> object = createTextObject();
+        byte[] rawBytes = new JavaSerializationCodec().encode(object);
+        byte[] compressedBytes = codec.encode(object);
+        Assert.assertTrue(compressedBytes.length < rawBytes.length / 5, String.format("Text " +
+                "must be compressed. Raw: %s bytes, compressed: %s bytes", rawBytes.length,
+                compressedBytes.length));
+        Assert.assertEquals(codec.decode(compressedBytes), object, "Decoded object must be " +
+                "equal to the encoded one");
+    }
+
+    @Test
+    public void keepSmallObject() throws IOException, ClassNotFoundException {
+        String object = "small";
+        byte[] rawBytes = new JavaSerializationCodec().encode(object);
+        byte[] encodedBytes = codec.encode(object);
+        Assert.assertEquals(encodedBytes.length, rawBytes.length + 1, "Object below threshold " +
+                "must be stored with compression type only");
+        Assert.assertEquals(codec.decode(encodedBytes), object, "Decoded object must be equal " +
+                "to the encoded one");
+    }
+
+    @Test
+    public void accountCompressedBytes() throws IOException, FileSystemBadDirectoryException,
+            UnacceptableCacheBuildParameter, AllocationInCacheException, ObjectNotFoundInCache {
+        List<String> object = createTextObject();
+        try (FileSystemStorage storage = new FileSystemStorage.Builder().setBaseDirectory
+                (TEST_DIRECTORY).build()) {
+            SerializableStorageCache cache = new SerializableStorageCache.Builder()
+                    .setSerializableStorage(storage).setCodec(codec).build();
+            ObjectInCache objectInCache = new ObjectInCache.Builder().setObject(object).build();
+            cache.allocateObject(objectInCache);
+            Assert.assertEquals(storage.getOccupiedSize(), (long) codec.encode(object).length +
+                    FileSystemStorage.HEADER_SIZE, "Storage must account compressed bytes");
+            Assert.assertEquals(cache.freeObject(objectInCache).objectRef(), object, "Object " +
+                    "must be decompressed");
+        }
+    }
+
+    @Test
+    public void rejectCorruptedLength() throws IOException, ClassNotFoundException {
+        byte[] compressedBytes = codec.encode(createTextObject());
+        int inflatedLength = readLength(compressedBytes);
+        assertCorrupted(compressedBytes, -1, "Negative length must be rejected");
+        assertCorrupted(compressedBytes, Integer.MAX_VALUE, "Length which can not be produced " +
+                "from compressed bytes must be rejected");
+        assertCorrupted(compressedBytes, inflatedLength + 1, "Length greater than inflated " +
+                "size must be rejected");
+        // previous decoding leaves inflated bytes in the buffer of the thread
+        Assert.assertEquals(codec.decode(compressedBytes), createTextObject(), "Not corrupted " +
+                "object must be decoded");
+        assertCorrupted(compressedBytes, inflatedLength + 1, "Bytes of a previous object must " +
+                "not be decoded");
+    }
+
+    private void assertCorrupted(byte[] compressedBytes, int inflatedLength, String message)
+            throws IOException, ClassNotFoundException {
+        byte[] corruptedBytes = compressedBytes.clone();
+        for (int i = 0; i < 4; i++) {
+            corruptedBytes[1 + i] = (byte) (inflatedLength >>> (24 - 8 * i));
+        }
+        try {
+            codec.decode(corruptedBytes);
+            Assert.fail(message);
+        } catch (StreamCorruptedException e) {
+            // expected
+        }
+    }
+
+    private static int readLength(byte[] compressedBytes) {
+        return (compressedBytes[1] & 0xFF) << 24 | (compressedBytes[2] & 0xFF) << 16 |
+                (compressedBytes[3] & 0xFF) << 8 | compressedBytes[4] & 0xFF;
+    }
+
+    private static List<String> createTextObject() {
+        List<String> object = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            object.add("Text line number " + i + " of the object which is compressed well");
+        }
+        return object;
+    }
+
+    private Codec codec;
+
+    private static final int COMPRESSION_THRESHOLD = 256;
+    private static final String TEST_DIRECTORY = "./target/compressing_codec";
+}
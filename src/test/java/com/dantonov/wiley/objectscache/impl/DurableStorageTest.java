@@ -0,0 +1,137 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.Crc32c;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToRetrieveStorageData;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test crash safety of {@link FileSystemStorage}.<br>
+ * Data must be written without leaving temporary files in every durability mode, and damaged
+ * files must be detected by the checksum.
+ */
+public class DurableStorageTest {
+
+    @BeforeMethod
+    public void prepareDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @AfterMethod
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void calculateCrc32c() {
+        Crc32c crc = new Crc32c();
+        byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+        crc.update(bytes, 0, bytes.length);
+        Assert.assertEquals(crc.getValue(), 0xE3069283L, "Checksum of check string must match");
+        crc.reset();
+        for (byte b : bytes) {
+            crc.update(b);
+        }
+        Assert.assertEquals(crc.getValue(), 0xE3069283L, "Checksum of single bytes must match");
+    }
+
+    @Test
+    public void storeWithEachDurability() throws Exception {
+        for (FileSystemStorage.Durability durability : FileSystemStorage.Durability.values()) {
+            FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+            List<UUID> uuids = new ArrayList<>();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+            try (FileSystemStorage storage = new FileSystemStorage.Builder().setBaseDirectory
+                    (TEST_DIRECTORY).setShardingLevels(1).setDurability(durability)
+                    .setGroupCommit(8, 5, TimeUnit.MILLISECONDS).build()) {
+                List<Future<UUID>> futures = new ArrayList<>();
+                for (int i = 0; i < OBJECTS_COUNT; i++) {
+                    byte[] data = createData(i);
+                    futures.add(executor.submit(() -> {
+                        UUID uuid = UUID.randomUUID();
+                        storage.store(uuid, data);
+                        return uuid;
+                    }));
+                }
+                for (Future<UUID> future : futures) {
+                    uuids.add(future.get());
+                }
+                for (int i = 0; i < OBJECTS_COUNT; i++) {
+                    Assert.assertEquals(storage.retrieve(uuids.get(i)), createData(i), "Stored " +
+                            "data must be retrieved with " + durability + " durability");
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            Assert.assertEquals(listFiles().size(), OBJECTS_COUNT, "Only files of keys must be " +
+                    "left with " + durability + " durability");
+        }
+    }
+
+    @Test
+    public void detectDamagedFiles() throws Exception {
+        try (FileSystemStorage storage = new FileSystemStorage.Builder().setBaseDirectory
+                (TEST_DIRECTORY).build()) {
+            UUID changedUuid = UUID.randomUUID();
+            UUID truncatedUuid = UUID.randomUUID();
+            storage.store(changedUuid, createData(1));
+            storage.store(truncatedUuid, createData(2));
+
+            Path changedPath = Paths.get(TEST_DIRECTORY, changedUuid.toString());
+            byte[] bytes = Files.readAllBytes(changedPath);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(changedPath, bytes);
+            Path truncatedPath = Paths.get(TEST_DIRECTORY, truncatedUuid.toString());
+            bytes = Files.readAllBytes(truncatedPath);
+            Files.write(truncatedPath, Arrays.copyOf(bytes, bytes.length / 2));
+
+            for (UUID uuid : new UUID[]{changedUuid, truncatedUuid}) {
+                try {
+                    storage.retrieve(uuid);
+                    Assert.fail("Damaged data must not be retrieved");
+                } catch (FailedToRetrieveStorageData e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void rejectEmptyGroup() throws UnacceptableCacheBuildParameter {
+        new FileSystemStorage.Builder().setGroupCommit(0, 10, TimeUnit.MILLISECONDS);
+    }
+
+    private static byte[] createData(int index) {
+        return ("data of object " + index).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static List<Path> listFiles() throws Exception {
+        try (Stream<Path> paths = Files.walk(Paths.get(TEST_DIRECTORY))) {
+            return paths.filter(path -> Files.isRegularFile(path) && !path.getFileName()
+                    .toString().startsWith("storage.manifest")).collect(Collectors.toList());
+        }
+    }
+
+    private static final int OBJECTS_COUNT = 200;
+    private static final int THREADS_COUNT = 4;
+    private static final String TEST_DIRECTORY = "./target/durable_storage";
+}
@@ -0,0 +1,162 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.Expiry;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToDeleteDataInStorage;
+import com.dantonov.wiley.objectscache.impl.storage.exceptions.FileSystemBadDirectoryException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test expiration of objects in {@link ObjectCacheImpl}.<br>
+ * Expired objects must be removed from all caches in batches, must not be returned, and
+ * access must prolong life of objects expiring after access. Deadlines are measured by a
+ * manual clock, so the results do not depend on how fast objects are cached.
+ */
+public class ExpiryTest {
+
+    @BeforeMethod
+    public void prepareDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @AfterMethod
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void expireAfterWrite() throws Exception {
+        Cache inMemoryCache = new InMemoryCache.Builder().setMaxCacheSize(10).setDangerLoad(100)
+                .build();
+        AtomicLong clock = new AtomicLong(START_TIME);
+        try (CountingStorage storage = new CountingStorage();
+             ObjectCacheImpl objectsCache = buildObjectsCache(inMemoryCache, storage, new
+                     Expiry.Builder().setExpireAfterWrite(200, TimeUnit.MILLISECONDS).build(),
+                     clock)) {
+            List<CachedObject> cachedObjects = new ArrayList<>();
+            for (int i = 0; i < OBJECTS_COUNT; i++) {
+                cachedObjects.add(objectsCache.cacheObject(i));
+            }
+            Assert.assertTrue(storage.getOccupiedSize() > 0, "Objects must be moved to the " +
+                    "storage");
+            Assert.assertEquals(cachedObjects.get(0).getObject(), 0, "Object must be returned " +
+                    "before it expires");
+
+            clock.addAndGet(300);
+            waitFor(() -> storage.getOccupiedSize() == 0);
+            Assert.assertTrue(storage.deleteAllCalls.get() > 0, "Stored objects must be " +
+                    "deleted in batches");
+            Assert.assertTrue(storage.deleteAllCalls.get() < OBJECTS_COUNT, "Stored objects " +
+                    "must not be deleted one by one");
+            for (CachedObject cachedObject : cachedObjects) {
+                try {
+                    cachedObject.getObject();
+                    Assert.fail("Expired object must not be returned");
+                } catch (ObjectNotFoundInCache e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void prolongByAccess() throws Exception {
+        Cache inMemoryCache = new InMemoryCache.Builder().setMaxCacheSize(10).setDangerLoad(100)
+                .build();
+        AtomicLong clock = new AtomicLong(START_TIME);
+        try (CountingStorage storage = new CountingStorage();
+             ObjectCacheImpl objectsCache = buildObjectsCache(inMemoryCache, storage, new
+                     Expiry.Builder().setExpireAfterAccess(300, TimeUnit.MILLISECONDS).build(),
+                     clock)) {
+            CachedObject accessedObject = objectsCache.cacheObject("accessed");
+            CachedObject idleObject = objectsCache.cacheObject("idle");
+            CachedObject eternalObject = objectsCache.cacheObject("eternal", new Expiry.Builder()
+                    .build());
+
+            for (int i = 0; i < 9; i++) {
+                clock.addAndGet(100);
+                Assert.assertEquals(accessedObject.getObject(), "accessed", "Accessed object " +
+                        "must not expire");
+            }
+            try {
+                idleObject.getObject();
+                Assert.fail("Idle object must expire");
+            } catch (ObjectNotFoundInCache e) {
+                // expected
+            }
+
+            clock.addAndGet(400);
+            try {
+                accessedObject.getObject();
+                Assert.fail("Object must expire when it is not accessed");
+            } catch (ObjectNotFoundInCache e) {
+                // expected
+            }
+            Assert.assertEquals(eternalObject.getObject(), "eternal", "Object cached with " +
+                    "eternal expiry must not expire");
+        }
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void rejectNegativeDuration() throws UnacceptableCacheBuildParameter {
+        new Expiry.Builder().setExpireAfterAccess(-1, TimeUnit.SECONDS);
+    }
+
+    private static ObjectCacheImpl buildObjectsCache(Cache inMemoryCache, FileSystemStorage
+            storage, Expiry expiry, AtomicLong clock) throws UnacceptableCacheBuildParameter {
+        return new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                ObjectCacheStrategyImpl()).setCacheLevelModel(new SimpleChacheListHierarchy
+                .Builder().addCache(inMemoryCache).addCache(new SerializableStorageCache.Builder()
+                .setSerializableStorage(storage).build()).build()).setExpiry(expiry)
+                .setExpirationScheduler(new ExpirationScheduler.Builder().setTick(10, TimeUnit
+                        .MILLISECONDS).setBatchSize(16).setClock(clock::get)).build();
+    }
+
+    private static void waitFor(Condition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.isMet()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline, "Condition must be met in " +
+                    "time");
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet() throws Exception;
+    }
+
+    // storage which counts batch deletions
+    private static class CountingStorage extends FileSystemStorage {
+
+        CountingStorage() throws FileSystemBadDirectoryException {
+            super(TEST_DIRECTORY);
+        }
+
+        @Override
+        public void deleteAll(Collection<UUID> uuids) throws FailedToDeleteDataInStorage {
+            deleteAllCalls.incrementAndGet();
+            super.deleteAll(uuids);
+        }
+
+        private final AtomicInteger deleteAllCalls = new AtomicInteger();
+    }
+
+    private static final int OBJECTS_COUNT = 100;
+    private static final long START_TIME = 1000;
+    private static final String TEST_DIRECTORY = "./target/expiry";
+}
@@ -11,6 +11,7 @@ import org.testng.annotations.Test;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -83,12 +84,34 @@ public class FileSystemStorageTest {
         });
     }
 
+    /**
+     * Occupied size must be tracked on store and calculated from the directory on start
+     */
+    @Test(dependsOnMethods = "storeObjects")
+    public void checkOccupiedSize() throws FileSystemBadDirectoryException {
+        long expectedSize = testObjectMap.keySet().stream().mapToLong(uuid -> {
+            try {
+                return Files.size(Paths.get(TEST_DIRECTORY, uuid.toString()));
+            } catch (IOException e) {
+                Assert.assertNull(e, "Stored file must exist");
+                return 0;
+            }
+        }).sum();
+        Assert.assertEquals(fileSystemStorage.getOccupiedSize(), expectedSize, "Occupied size " +
+                "must be equal to size of stored files");
+        try (FileSystemStorage reopenedStorage = new FileSystemStorage.Builder()
+                .setBaseDirectory(TEST_DIRECTORY).build()) {
+            Assert.assertEquals(reopenedStorage.getOccupiedSize(), expectedSize, "Occupied " +
+                    "size must be calculated on start");
+        }
+    }
+
     /**
      * Check deletion of cached objects from {@link FileSystemStorage}
      * <b>NOTE: test checks file on file system. this depends on how {@link FileSystemStorage}
      * saves files</b>
      */
-    @Test(dependsOnMethods = "checkStoredObjects")
+    @Test(dependsOnMethods = {"checkStoredObjects", "checkOccupiedSize"})
     public void checkDeleteFromStorage() {
         testObjectMap.entrySet().forEach((entry) -> {
 
@@ -105,6 +128,8 @@ public class FileSystemStorageTest {
                     "must not exist on file system after removing cached object from cache");
 
         });
+        Assert.assertEquals(fileSystemStorage.getOccupiedSize(), 0L, "Occupied size must be 0 " +
+                "when all files are deleted");
     }
 
     /**
@@ -115,14 +140,14 @@ public class FileSystemStorageTest {
     public static void removeDirectory(String dir) {
         if (Files.exists(Paths.get(dir))) {
             try {
-                Files.list(Paths.get(dir)).forEach((file) -> {
+                // files are deleted before their directories
+                Files.walk(Paths.get(dir)).sorted(Comparator.reverseOrder()).forEach((file) -> {
                     try {
                         Files.deleteIfExists(file);
                     } catch (IOException e) {
                         Assert.assertNull(e, "Exception on file remove is unexpected");
                     }
                 });
-                Files.deleteIfExists(Paths.get(dir));
             } catch (Exception e) {
                 Assert.assertNull(e, "Exception on directory remove is unexpected");
             }
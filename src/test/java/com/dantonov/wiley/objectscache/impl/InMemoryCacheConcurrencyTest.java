@@ -0,0 +1,80 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.ConfigurationValue;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Test {@link InMemoryCache} used by several threads at once.<br>
+ * Each thread allocates, reads and frees its own objects. Configuration values must track
+ * exact amount of objects when all threads are done.
+ */
+public class InMemoryCacheConcurrencyTest {
+
+    @BeforeTest
+    public void initInMemoryCache() throws UnacceptableCacheBuildParameter {
+        inMemoryCache = new InMemoryCache.Builder().setMaxCacheSize(THREADS * OBJECTS_PER_THREAD)
+                .setDangerLoad(50).build();
+    }
+
+    @Test
+    public void allocateReadAndFreeConcurrently() throws InterruptedException, ExecutionException {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier startBarrier = new CyclicBarrier(THREADS);
+        List<Future<List<ObjectInCache>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executorService.submit(() -> {
+                startBarrier.await();
+                List<ObjectInCache> kept = new ArrayList<>();
+                for (int i = 0; i < OBJECTS_PER_THREAD; i++) {
+                    ObjectInCache objectInCache = new ObjectInCache.Builder().setObject(i).build();
+                    inMemoryCache.allocateObject(objectInCache);
+                    Assert.assertEquals(inMemoryCache.returnObject(objectInCache).objectRef(), i,
+                            "Object must be readable right after allocation");
+                    if (i % 2 == 0) {
+                        inMemoryCache.freeObject(objectInCache);
+                        Assert.assertFalse(inMemoryCache.contains(objectInCache), "Object must " +
+                                "not be in cache after it has been freed");
+                    } else {
+                        kept.add(objectInCache);
+                    }
+                }
+                return kept;
+            }));
+        }
+
+        List<ObjectInCache> keptObjects = new ArrayList<>();
+        for (Future<List<ObjectInCache>> future : futures) {
+            keptObjects.addAll(future.get());
+        }
+        executorService.shutdown();
+
+        keptObjects.forEach(objectInCache -> Assert.assertTrue(inMemoryCache.contains
+                (objectInCache), "All not freed objects must stay in cache"));
+        Assert.assertEquals(inMemoryCache.getConfigurationValues().stream().filter
+                (configurationValue -> configurationValue.getWarnLevel() == ConfigurationValue
+                        .WARN_LEVEL.CRITICAL).findFirst().get().presentCurrentState(), String
+                .format("Current amount of objects in cache = %s", keptObjects.size()), "Objects " +
+                "count must be exact when all threads are done");
+        Assert.assertTrue(inMemoryCache.getConfigurationValues().stream().allMatch
+                (ConfigurationValue::isResponding), "Half of objects are freed, so 50 percents " +
+                "danger load must be responding");
+    }
+
+    @Test(expectedExceptions = ObjectNotFoundInCache.class)
+    public void freeMissingObject() throws ObjectNotFoundInCache, AllocationInCacheException {
+        inMemoryCache.freeObject(new ObjectInCache.Builder().build());
+    }
+
+    private InMemoryCache inMemoryCache;
+    private static final int THREADS = 8;
+    private static final int OBJECTS_PER_THREAD = 2000;
+}
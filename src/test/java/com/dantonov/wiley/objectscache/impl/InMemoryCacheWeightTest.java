@@ -0,0 +1,83 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ConfigurationValue;
+import com.dantonov.wiley.objectscache.ObjectsCache;
+import com.dantonov.wiley.objectscache.Weigher;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test {@link InMemoryCache} configured with {@link Weigher}.<br>
+ * Configuration values must track total weight of objects, and the strategy must move objects
+ * to the next cache till the weight is within the limit.
+ */
+public class InMemoryCacheWeightTest {
+
+    @Test
+    public void trackWeight() throws UnacceptableCacheBuildParameter,
+            AllocationInCacheException, ObjectNotFoundInCache {
+        Cache cache = new InMemoryCache.Builder().setWeigher(BYTES_WEIGHER).setMaxCacheWeight
+                (MAX_WEIGHT).setDangerLoad(50).build();
+        ObjectInCache smallObject = new ObjectInCache.Builder().setObject(new byte[10]).build();
+        cache.allocateObject(smallObject);
+        Assert.assertEquals(getRespondingValuesCount(cache), 2L, "Small object must not " +
+                "exceed any limit");
+
+        ObjectInCache bigObject = new ObjectInCache.Builder().setObject(new byte[600]).build();
+        cache.allocateObject(bigObject);
+        Assert.assertEquals(getRespondingValuesCount(cache), 1L, "Danger load must be " +
+                "exceeded by weight, not by amount of objects");
+
+        ObjectInCache hugeObject = new ObjectInCache.Builder().setObject(new byte[MAX_WEIGHT])
+                .build();
+        cache.allocateObject(hugeObject);
+        Assert.assertEquals(getRespondingValuesCount(cache), 0L, "Max weight must be exceeded");
+
+        cache.freeObject(hugeObject);
+        cache.freeObject(bigObject);
+        Assert.assertEquals(getRespondingValuesCount(cache), 2L, "Freed objects must not be " +
+                "weighted");
+    }
+
+    @Test
+    public void moveObjectsByWeight() throws UnacceptableCacheBuildParameter,
+            AllocationException, ObjectNotFoundInCache, AllocationInCacheException {
+        Cache cache1 = new InMemoryCache.Builder().setWeigher(BYTES_WEIGHER).setMaxCacheWeight
+                (MAX_WEIGHT).setDangerLoad(100).build();
+        Cache cache2 = new InMemoryCache.Builder().setMaxCacheSize(1000).build();
+        ObjectsCache objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                ObjectCacheStrategyImpl()).setCacheLevelModel(new SimpleChacheListHierarchy
+                .Builder().addCache(cache1).addCache(cache2).build()).build();
+
+        List<CachedObject> cachedObjects = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            cachedObjects.add(objectsCache.cacheObject(new byte[300]));
+        }
+        long objectsInFirstCache = cachedObjects.stream().filter(cachedObject -> cache1
+                .contains(ObjectInCache.from(cachedObject.getUuid()))).count();
+        Assert.assertEquals(objectsInFirstCache, 3L, "Only 3 objects of 300 bytes fit 1000 " +
+                "bytes");
+        for (CachedObject cachedObject : cachedObjects) {
+            Assert.assertEquals(((byte[]) cachedObject.getObject()).length, 300, "Object must " +
+                    "be found in any cache");
+        }
+    }
+
+    private static long getRespondingValuesCount(Cache cache) {
+        return cache.getConfigurationValues().stream().filter(ConfigurationValue::isResponding)
+                .count();
+    }
+
+    private static final int MAX_WEIGHT = 1000;
+    private static final Weigher BYTES_WEIGHER = object -> object instanceof byte[] ?
+            ((byte[]) object).length : 0;
+}
@@ -0,0 +1,122 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test {@link IndexedCacheHierarchy}.<br>
+ * Tiers must be navigated by index, the hierarchy must not be changed by copy-on-write
+ * methods, and {@link ObjectCacheImpl} must use a reconfigured hierarchy.
+ */
+public class IndexedCacheHierarchyTest {
+
+    @BeforeMethod
+    public void prepareDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @AfterMethod
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void navigateTiers() throws UnacceptableCacheBuildParameter {
+        Cache first = buildInMemoryCache();
+        Cache second = buildInMemoryCache();
+        Cache third = buildInMemoryCache();
+        IndexedCacheHierarchy hierarchy = new IndexedCacheHierarchy.Builder().addCache(first)
+                .addCache(second).addCache(third).build();
+
+        Assert.assertEquals(hierarchy.getTierCount(), 3);
+        Assert.assertSame(hierarchy.getTier(1), second);
+        Assert.assertEquals(hierarchy.indexOf(third), 2);
+        Assert.assertEquals(hierarchy.indexOf(buildInMemoryCache()), -1, "Cache which is not " +
+                "in the hierarchy must not have index");
+        Assert.assertSame(hierarchy.getNextCache(first), second);
+        Assert.assertNull(hierarchy.getNextCache(third), "Last cache must not have next one");
+        Assert.assertSame(hierarchy.getPreviousCache(second), first);
+        Assert.assertNull(hierarchy.getPreviousCache(first), "Top cache must not have " +
+                "previous one");
+        Assert.assertSame(hierarchy.getCacheList(), hierarchy.getCacheList(), "Cache list must " +
+                "not be copied");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void rejectListModification() throws UnacceptableCacheBuildParameter {
+        IndexedCacheHierarchy hierarchy = new IndexedCacheHierarchy.Builder().addCache
+                (buildInMemoryCache()).build();
+        hierarchy.getCacheList().add(buildInMemoryCache());
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void rejectDuplicateCache() throws UnacceptableCacheBuildParameter {
+        Cache cache = buildInMemoryCache();
+        new IndexedCacheHierarchy.Builder().addCache(cache).addCache(cache);
+    }
+
+    @Test
+    public void copyOnWrite() throws UnacceptableCacheBuildParameter {
+        Cache first = buildInMemoryCache();
+        Cache second = buildInMemoryCache();
+        Cache inserted = buildInMemoryCache();
+        IndexedCacheHierarchy hierarchy = new IndexedCacheHierarchy.Builder().addCache(first)
+                .addCache(second).build();
+
+        IndexedCacheHierarchy extended = hierarchy.withCache(1, inserted);
+        Assert.assertEquals(hierarchy.getTierCount(), 2, "Original hierarchy must not be " +
+                "changed");
+        Assert.assertSame(hierarchy.getNextCache(first), second);
+        Assert.assertEquals(extended.getTierCount(), 3);
+        Assert.assertSame(extended.getNextCache(first), inserted);
+        Assert.assertSame(extended.getNextCache(inserted), second);
+
+        IndexedCacheHierarchy reduced = extended.withoutCache(first);
+        Assert.assertEquals(extended.getTierCount(), 3, "Original hierarchy must not be changed");
+        Assert.assertSame(reduced.getTier(0), inserted);
+        Assert.assertEquals(reduced.indexOf(second), 1);
+        Assert.assertEquals(reduced.indexOf(first), -1);
+    }
+
+    @Test
+    public void reconfigureObjectsCache() throws Exception {
+        Cache inMemoryCache = buildInMemoryCache();
+        IndexedCacheHierarchy hierarchy = new IndexedCacheHierarchy.Builder().addCache
+                (inMemoryCache).build();
+        try (FileSystemStorage storage = new FileSystemStorage(TEST_DIRECTORY);
+             ObjectCacheImpl objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy
+                     (new ObjectCacheStrategyImpl()).setCacheLevelModel(hierarchy).build()) {
+            List<CachedObject> cachedObjects = new ArrayList<>();
+            for (int i = 0; i < OBJECTS_COUNT; i++) {
+                cachedObjects.add(objectsCache.cacheObject(i));
+            }
+            Assert.assertEquals(storage.getOccupiedSize(), 0L, "Objects must stay in the only " +
+                    "cache");
+
+            objectsCache.setCacheLevelModel(hierarchy.withCache(new SerializableStorageCache
+                    .Builder().setSerializableStorage(storage).build()));
+            Assert.assertTrue(storage.getOccupiedSize() > 0, "Objects must be moved to the " +
+                    "added cache");
+            for (int i = 0; i < OBJECTS_COUNT; i++) {
+                Assert.assertEquals(cachedObjects.get(i).getObject(), i, "Object must be " +
+                        "returned after reconfiguration");
+            }
+        }
+    }
+
+    private static Cache buildInMemoryCache() throws UnacceptableCacheBuildParameter {
+        return new InMemoryCache.Builder().setMaxCacheSize(10).setDangerLoad(100).build();
+    }
+
+    private static final int OBJECTS_COUNT = 30;
+    private static final String TEST_DIRECTORY = "./target/indexed-hierarchy";
+}
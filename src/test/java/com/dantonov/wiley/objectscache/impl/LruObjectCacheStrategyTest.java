@@ -0,0 +1,64 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ObjectsCache;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test {@link LruObjectCacheStrategy}.<br>
+ * Object cached first but used often must stay in the first cache, while objects that are
+ * not used are moved to the second cache.
+ */
+public class LruObjectCacheStrategyTest {
+
+    @BeforeTest
+    public void configureAll() throws UnacceptableCacheBuildParameter {
+        cache1 = new InMemoryCache.Builder().setMaxCacheSize(FIRST_CACHE_SIZE).setDangerLoad(100)
+                .build();
+        cache2 = new InMemoryCache.Builder().setMaxCacheSize(1000).build();
+        objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                LruObjectCacheStrategy()).setCacheLevelModel(new SimpleChacheListHierarchy
+                .Builder().addCache(cache1).addCache(cache2).build()).build();
+    }
+
+    @Test
+    public void keepRecentlyUsedObjects() throws AllocationException, ObjectNotFoundInCache,
+            AllocationInCacheException {
+        List<CachedObject> cachedObjects = new ArrayList<>();
+        for (int i = 0; i < FIRST_CACHE_SIZE; i++) {
+            cachedObjects.add(objectsCache.cacheObject(i));
+        }
+        CachedObject hotObject = cachedObjects.get(0);
+
+        for (int i = FIRST_CACHE_SIZE; i < FIRST_CACHE_SIZE * 2; i++) {
+            // hot object is used between caching of new objects
+            Assert.assertEquals(hotObject.getObject(), 0, "Hot object must be retrieved");
+            cachedObjects.add(objectsCache.cacheObject(i));
+        }
+
+        Assert.assertTrue(cache1.contains(ObjectInCache.from(hotObject.getUuid())), "Recently " +
+                "used object must stay in the first cache although it was cached first");
+        for (int i = 1; i <= FIRST_CACHE_SIZE; i++) {
+            Assert.assertTrue(cache2.contains(ObjectInCache.from(cachedObjects.get(i).getUuid())),
+                    String.format("Not used object #%s must be moved to the second cache", i));
+        }
+        for (int i = 0; i < cachedObjects.size(); i++) {
+            Assert.assertEquals(cachedObjects.get(i).getObject(), i, "All objects must be found");
+        }
+    }
+
+    private static final int FIRST_CACHE_SIZE = 10;
+    private Cache cache1;
+    private Cache cache2;
+    private ObjectsCache objectsCache;
+}
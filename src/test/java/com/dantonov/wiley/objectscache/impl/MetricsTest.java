@@ -0,0 +1,201 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.impl.metrics.CacheStatistics;
+import com.dantonov.wiley.objectscache.impl.metrics.CacheStatisticsBean;
+import com.dantonov.wiley.objectscache.impl.metrics.HistogramSnapshot;
+import com.dantonov.wiley.objectscache.impl.metrics.LatencyHistogram;
+import com.dantonov.wiley.objectscache.impl.metrics.TierStatistics;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test metrics of {@link ObjectCacheImpl}.<br>
+ * Histogram must report percentiles within its precision and must not lose concurrent
+ * records, hits, misses and moves must be counted per cache, every retrieval must be timed,
+ * and statistics must be readable by JMX while the cache is open.
+ */
+public class MetricsTest {
+
+    @BeforeMethod
+    public void prepareDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @AfterMethod
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void reportPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        HistogramSnapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(snapshot.getCount(), 100_000L, "All values must be counted");
+        Assert.assertEquals(snapshot.getMax(), 100_000_000L, "Max must be exact");
+        Assert.assertEquals(snapshot.getMean(), 50_000_500.0, 1.0, "Mean must be exact");
+        assertClose(snapshot.getMedian(), 50_000_000L);
+        assertClose(snapshot.getPercentile99(), 99_000_000L);
+        assertClose(snapshot.getPercentile999(), 99_900_000L);
+        Assert.assertEquals(snapshot.getValueAtPercentile(100), 100_000_000L, "Top percentile " +
+                "must be the max");
+        Assert.assertEquals(new LatencyHistogram().getSnapshot().getMedian(), 0L, "Empty " +
+                "histogram must report 0");
+    }
+
+    @Test
+    public void recordConcurrently() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS_COUNT; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < RECORDS_PER_THREAD; j++) {
+                        histogram.record(j % 1000);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(histogram.getSnapshot().getCount(), (long) THREADS_COUNT *
+                RECORDS_PER_THREAD, "Concurrent records must not be lost");
+    }
+
+    @Test
+    public void countPerTier() throws Exception {
+        try (FileSystemStorage storage = new FileSystemStorage.Builder().setBaseDirectory
+                (TEST_DIRECTORY).build();
+             ObjectCacheImpl objectsCache = buildObjectsCache(storage, null)) {
+            List<CachedObject> cachedObjects = new ArrayList<>();
+            for (int i = 0; i < OBJECTS_COUNT; i++) {
+                cachedObjects.add(objectsCache.cacheObject(i));
+            }
+            for (CachedObject cachedObject : cachedObjects) {
+                cachedObject.getObject();
+            }
+
+            CacheStatistics statistics = objectsCache.getStatistics();
+            Assert.assertEquals(statistics.getGetLatency().getCount(), (long) OBJECTS_COUNT,
+                    "Each retrieval must be timed");
+            Assert.assertTrue(statistics.getReallocations() > 0, "Reallocations must be timed");
+            TierStatistics memoryTier = statistics.getTiers().get(0);
+            TierStatistics storageTier = statistics.getTiers().get(1);
+            Assert.assertEquals(memoryTier.getHits() + storageTier.getHits(), (long)
+                    OBJECTS_COUNT, "Each object must be hit once");
+            Assert.assertEquals(memoryTier.getMisses(), storageTier.getHits(), "Objects hit in " +
+                    "the storage must be missed in memory");
+            Assert.assertEquals(storageTier.getMisses(), 0L, "Storage must not miss objects");
+            Assert.assertTrue(memoryTier.getHitRatio() > 0 && memoryTier.getHitRatio() < 1,
+                    "Memory must hit a part of objects");
+            Assert.assertTrue(storageTier.getMovedIn() > 0, "Objects must be moved to the " +
+                    "storage");
+            Assert.assertEquals(storageTier.getMovedIn(), memoryTier.getMovedOut(), "Objects " +
+                    "moved out of memory must be moved to the storage");
+            Assert.assertEquals(statistics.getMovedObjects(), storageTier.getMovedIn(), "All " +
+                    "moves must be counted");
+            Assert.assertTrue(storageTier.getSerializationLatency().getCount() >= storageTier
+                    .getMovedIn(), "Each object written to the storage must be serialized");
+            Assert.assertTrue(storageTier.getDeserializationLatency().getCount() >= storageTier
+                    .getHits(), "Each object read from the storage must be deserialized");
+            Assert.assertEquals(memoryTier.getSerializationLatency().getCount(), 0L, "Memory " +
+                    "must not serialize objects");
+        }
+    }
+
+    @Test
+    public void timeEveryRetrieval() throws Exception {
+        try (FileSystemStorage storage = new FileSystemStorage.Builder().setBaseDirectory
+                (TEST_DIRECTORY).build();
+             ObjectCacheImpl objectsCache = buildObjectsCache(storage, null)) {
+            CachedObject cachedObject = objectsCache.cacheObject("object");
+            objectsCache.releaseCachedObject(cachedObject);
+            try {
+                cachedObject.getObject();
+                Assert.fail("Released object must not be returned");
+            } catch (ObjectNotFoundInCache e) {
+                // expected
+            }
+            Assert.assertEquals(objectsCache.getStatistics().getGetLatency().getCount(), 1L,
+                    "Miss must be timed");
+
+            CachedObject asyncObject = objectsCache.cacheObject("async");
+            Assert.assertEquals(objectsCache.getObjectAsync(asyncObject).get(), "async");
+            Assert.assertEquals(objectsCache.getStatistics().getGetLatency().getCount(), 2L,
+                    "Hit completed without I/O thread must be timed");
+            try {
+                objectsCache.getObjectAsync(cachedObject).get();
+                Assert.fail("Released object must not be returned");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof ObjectNotFoundInCache);
+            }
+            Assert.assertEquals(objectsCache.getStatistics().getGetLatency().getCount(), 3L,
+                    "Asynchronous miss must be timed");
+        }
+    }
+
+    @Test
+    public void exposeByJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName beanName = CacheStatisticsBean.getObjectName(JMX_NAME);
+        try (FileSystemStorage storage = new FileSystemStorage.Builder().setBaseDirectory
+                (TEST_DIRECTORY).build();
+             ObjectCacheImpl objectsCache = buildObjectsCache(storage, JMX_NAME)) {
+            objectsCache.cacheObject("object").getObject();
+
+            Assert.assertTrue(server.isRegistered(beanName), "Bean must be registered");
+            CompositeData getLatency = (CompositeData) server.getAttribute(beanName,
+                    "GetLatency");
+            Assert.assertEquals(getLatency.get("count"), 1L, "Retrieval must be exposed");
+            CompositeData[] tiers = (CompositeData[]) server.getAttribute(beanName, "Tiers");
+            Assert.assertEquals(tiers.length, 2, "Each cache must be exposed");
+            Assert.assertEquals(tiers[0].get("hits"), 1L, "Hits must be exposed");
+            Assert.assertTrue(((CompositeData) tiers[0].get("readLatency")).containsKey
+                    ("percentile99"), "Percentiles must be exposed");
+        }
+        Assert.assertFalse(server.isRegistered(beanName), "Bean must be unregistered on close");
+    }
+
+    private static ObjectCacheImpl buildObjectsCache(FileSystemStorage storage, String jmxName)
+            throws Exception {
+        return new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                ObjectCacheStrategyImpl()).setCacheLevelModel(new SimpleChacheListHierarchy
+                .Builder().addCache(new InMemoryCache.Builder().setMaxCacheSize(10)
+                .setDangerLoad(100).build()).addCache(new SerializableStorageCache.Builder()
+                .setSerializableStorage(storage).build()).build()).setJmxName(jmxName).build();
+    }
+
+    private static void assertClose(long actual, long expected) {
+        Assert.assertTrue(Math.abs(actual - expected) <= expected * PRECISION, String.format(
+                "Value %s must be close to %s", actual, expected));
+    }
+
+    private static final double PRECISION = 1.0 / 32;
+    private static final int THREADS_COUNT = 4;
+    private static final int RECORDS_PER_THREAD = 100_000;
+    private static final int OBJECTS_COUNT = 50;
+    private static final String JMX_NAME = "metrics-test";
+    private static final String TEST_DIRECTORY = "./target/metrics";
+}
@@ -0,0 +1,115 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.CacheHierarchy;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ObjectsCache;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Concurrency test for {@link ObjectCacheStrategyImpl}.<br>
+ * Threads run a mix of {@link ObjectsCache#cacheObject(Object)},
+ * {@link CachedObject#getObject()} and {@link ObjectsCache#releaseCachedObject(CachedObject)}
+ * calls on their own objects, while objects are moved between caches. Every retrieved object
+ * is verified, live objects must not be lost and released ones must not be returned.<br>
+ * Throughput of the same mix is measured by <code>MixedWorkloadBenchmark</code> of the
+ * benchmarks module.
+ */
+public class ObjectCacheStrategyConcurrencyTest {
+
+    @Test
+    public void keepObjectsOfConcurrentThreads() throws Exception {
+        ObjectCacheStrategyImpl strategy = new ObjectCacheStrategyImpl();
+        ObjectsCache objectsCache = buildObjectsCache(strategy);
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            CyclicBarrier startBarrier = new CyclicBarrier(THREADS);
+            List<Future<ThreadObjects>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int threadNumber = t;
+                futures.add(executorService.submit(() -> {
+                    startBarrier.await();
+                    return runWorkload(objectsCache, threadNumber);
+                }));
+            }
+            int liveObjectsCount = 0;
+            for (Future<ThreadObjects> future : futures) {
+                ThreadObjects objects = future.get(30, TimeUnit.SECONDS);
+                for (int i = 0; i < objects.liveObjects.size(); i++) {
+                    Assert.assertEquals(objects.liveObjects.get(i).getObject(), objects
+                            .originalObjects.get(i), "Live object must not be lost");
+                }
+                for (CachedObject releasedObject : objects.releasedObjects) {
+                    try {
+                        releasedObject.getObject();
+                        Assert.fail("Released object must not be returned");
+                    } catch (ObjectNotFoundInCache e) {
+                        // expected
+                    }
+                }
+                liveObjectsCount += objects.liveObjects.size();
+            }
+            Assert.assertEquals(strategy.getTrackedObjectsCount(), liveObjectsCount, "Only live " +
+                    "objects must be tracked");
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static ThreadObjects runWorkload(ObjectsCache objectsCache, int threadNumber) throws
+            Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ThreadObjects objects = new ThreadObjects();
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            String object = threadNumber + "-" + i;
+            objects.liveObjects.add(objectsCache.cacheObject(object));
+            objects.originalObjects.add(object);
+
+            for (int read = 0; read < READS_PER_WRITE; read++) {
+                int index = random.nextInt(objects.liveObjects.size());
+                Assert.assertEquals(objects.liveObjects.get(index).getObject(), objects
+                        .originalObjects.get(index), "Cached object must be returned by any " +
+                        "thread");
+            }
+
+            if (objects.liveObjects.size() > LIVE_OBJECTS_PER_THREAD) {
+                int index = random.nextInt(objects.liveObjects.size());
+                CachedObject releasedObject = objects.liveObjects.remove(index);
+                objectsCache.releaseCachedObject(releasedObject);
+                objects.originalObjects.remove(index);
+                objects.releasedObjects.add(releasedObject);
+            }
+        }
+        return objects;
+    }
+
+    private static ObjectsCache buildObjectsCache(ObjectCacheStrategyImpl strategy) throws
+            UnacceptableCacheBuildParameter {
+        CacheHierarchy cacheHierarchy = new SimpleChacheListHierarchy.Builder()
+                .addCache(new InMemoryCache.Builder().setMaxCacheSize(100).setDangerLoad(80)
+                        .build())
+                .addCache(new InMemoryCache.Builder().setMaxCacheSize(1_000_000).build())
+                .build();
+        return new ObjectCacheImpl.Builder().setCacheMovingStrategy(strategy)
+                .setCacheLevelModel(cacheHierarchy).build();
+    }
+
+    // objects of one thread
+    private static class ThreadObjects {
+
+        private final List<CachedObject> liveObjects = new ArrayList<>();
+        private final List<String> originalObjects = new ArrayList<>();
+        private final List<CachedObject> releasedObjects = new ArrayList<>();
+    }
+
+    private static final int THREADS = 4;
+    private static final int OPERATIONS_PER_THREAD = 1000;
+    private static final int READS_PER_WRITE = 4;
+    private static final int LIVE_OBJECTS_PER_THREAD = 100;
+}
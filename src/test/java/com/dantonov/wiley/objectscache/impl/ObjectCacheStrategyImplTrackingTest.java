@@ -0,0 +1,86 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ObjectsCache;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test objects tracking by {@link ObjectCacheStrategyImpl}.<br>
+ * Released objects must be forgotten by the strategy, and objects must be moved to the next
+ * cache in allocation order.
+ */
+public class ObjectCacheStrategyImplTrackingTest {
+
+    @BeforeTest
+    public void configureAll() throws UnacceptableCacheBuildParameter {
+        cache1 = new InMemoryCache.Builder().setMaxCacheSize(10).setDangerLoad(100).build();
+        cache2 = new InMemoryCache.Builder().setMaxCacheSize(100_000).build();
+        cacheStrategy = new ObjectCacheStrategyImpl();
+        objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(cacheStrategy)
+                .setCacheLevelModel(new SimpleChacheListHierarchy.Builder().addCache(cache1)
+                        .addCache(cache2).build()).build();
+    }
+
+    /**
+     * Objects cached first must be moved to the second cache first
+     */
+    @Test
+    public void moveInAllocationOrder() throws AllocationException {
+        List<CachedObject> cachedObjects = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            cachedObjects.add(objectsCache.cacheObject(i));
+        }
+        for (int i = 0; i < cachedObjects.size(); i++) {
+            ObjectInCache objectInCache = ObjectInCache.from(cachedObjects.get(i).getUuid());
+            Assert.assertEquals(cache1.contains(objectInCache).booleanValue(), i >= 5, String
+                    .format("Object #%s must be in the first cache only if it is one of the " +
+                            "last 10 cached objects", i));
+            Assert.assertEquals(cache2.contains(objectInCache).booleanValue(), i < 5, String
+                    .format("Object #%s must be in the second cache only if it is one of the " +
+                            "first 5 cached objects", i));
+        }
+        cachedObjects.forEach(objectsCache::releaseCachedObject);
+        Assert.assertEquals(cacheStrategy.getTrackedObjectsCount(), 0, "Released objects must " +
+                "not be tracked");
+    }
+
+    /**
+     * Tracking memory must stay bounded by the amount of live objects
+     */
+    @Test(dependsOnMethods = "moveInAllocationOrder")
+    public void forgetReleasedObjects() throws AllocationException, ObjectNotFoundInCache {
+        List<CachedObject> liveObjects = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            CachedObject cachedObject = objectsCache.cacheObject(i);
+            if (i % 100 == 0) {
+                liveObjects.add(cachedObject);
+            } else {
+                objectsCache.releaseCachedObject(cachedObject);
+            }
+        }
+        Assert.assertEquals(cacheStrategy.getTrackedObjectsCount(), liveObjects.size(),
+                "Only live objects must be tracked");
+        for (CachedObject cachedObject : liveObjects) {
+            try {
+                Assert.assertNotNull(cachedObject.getObject(), "Live object must be found");
+            } catch (AllocationInCacheException e) {
+                Assert.assertNull(e, "AllocationInCacheException is not expected");
+            }
+        }
+    }
+
+    private Cache cache1;
+    private Cache cache2;
+    private ObjectCacheStrategyImpl cacheStrategy;
+    private ObjectsCache objectsCache;
+}
@@ -0,0 +1,103 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ObjectsCache;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test promotion of frequently read objects to the first cache by
+ * {@link ObjectCacheStrategyImpl}.<br>
+ * Object read from a lower cache threshold times must be moved to the first cache, object read
+ * less often must stay where it is. Object which promotion has not been claimed must be
+ * promoted later.
+ */
+public class ObjectPromotionTest {
+
+    @BeforeTest
+    public void configureAll() throws UnacceptableCacheBuildParameter, AllocationException {
+        cache1 = new InMemoryCache.Builder().setMaxCacheSize(FIRST_CACHE_SIZE).setDangerLoad(100)
+                .build();
+        cache2 = new InMemoryCache.Builder().setMaxCacheSize(1000).build();
+        strategy = new ObjectCacheStrategyImpl(PROMOTION_THRESHOLD);
+        objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(strategy)
+                .setCacheLevelModel(new SimpleChacheListHierarchy.Builder().addCache(cache1)
+                        .addCache(cache2).build()).build();
+        cachedObjects = new ArrayList<>();
+        for (int i = 0; i < FIRST_CACHE_SIZE * 2; i++) {
+            cachedObjects.add(objectsCache.cacheObject(i));
+        }
+    }
+
+    @Test
+    public void promoteHotObject() throws ObjectNotFoundInCache, AllocationInCacheException {
+        CachedObject hotObject = cachedObjects.get(0);
+        Assert.assertTrue(cache2.contains(ObjectInCache.from(hotObject.getUuid())), "First " +
+                "cached object must be moved to the second cache");
+        for (int i = 0; i < PROMOTION_THRESHOLD; i++) {
+            Assert.assertEquals(hotObject.getObject(), 0, "Object must be found");
+        }
+        // promotion is done by the next reallocation
+        Assert.assertEquals(hotObject.getObject(), 0, "Object must be found");
+        Assert.assertTrue(cache1.contains(ObjectInCache.from(hotObject.getUuid())), "Hot " +
+                "object must be promoted to the first cache");
+        Assert.assertFalse(cache2.contains(ObjectInCache.from(hotObject.getUuid())), "Promoted " +
+                "object must be removed from the second cache");
+        Assert.assertEquals(cache1.getConfigurationValues().stream().filter(value -> !value
+                .isResponding()).count(), 0L, "First cache must stay within its limits");
+    }
+
+    @Test(dependsOnMethods = "promoteHotObject")
+    public void keepRareObject() throws ObjectNotFoundInCache, AllocationInCacheException {
+        CachedObject rareObject = cachedObjects.get(1);
+        for (int i = 0; i < PROMOTION_THRESHOLD - 1; i++) {
+            Assert.assertEquals(rareObject.getObject(), 1, "Object must be found");
+        }
+        // any read runs reallocation
+        Assert.assertEquals(cachedObjects.get(FIRST_CACHE_SIZE * 2 - 1).getObject(),
+                FIRST_CACHE_SIZE * 2 - 1, "Object must be found");
+        Assert.assertTrue(cache2.contains(ObjectInCache.from(rareObject.getUuid())), "Object " +
+                "read less than threshold times must stay in the second cache");
+    }
+
+    @Test(dependsOnMethods = "keepRareObject")
+    public void retryNotClaimedPromotion() throws ObjectNotFoundInCache,
+            AllocationInCacheException {
+        CachedObject object = cachedObjects.get(2);
+        CacheOrderIndex.Entry entry = strategy.getEntry(object.getUuid());
+        CacheOrderIndex orderIndex = strategy.getOrderIndex(cache2);
+        // the entry is held by another thread, so the promotion can not be claimed
+        Assert.assertTrue(orderIndex.unlink(entry), "Object must be in the second cache");
+        for (int i = 0; i <= PROMOTION_THRESHOLD; i++) {
+            Assert.assertEquals(object.getObject(), 2, "Object must be found");
+        }
+        Assert.assertTrue(cache2.contains(ObjectInCache.from(object.getUuid())), "Not " +
+                "claimed object must stay in the second cache");
+
+        strategy.linkLast(entry, orderIndex);
+        for (int i = 0; i <= PROMOTION_THRESHOLD * 2 && !cache1.contains(ObjectInCache.from
+                (object.getUuid())); i++) {
+            Assert.assertEquals(object.getObject(), 2, "Object must be found");
+        }
+        Assert.assertTrue(cache1.contains(ObjectInCache.from(object.getUuid())), "Object " +
+                "must be promoted after the failed claim");
+    }
+
+    private static final int FIRST_CACHE_SIZE = 10;
+    private static final int PROMOTION_THRESHOLD = 3;
+
+    private Cache cache1;
+    private Cache cache2;
+    private ObjectCacheStrategyImpl strategy;
+    private ObjectsCache objectsCache;
+    private List<CachedObject> cachedObjects;
+}
@@ -0,0 +1,156 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ConfigurationValue;
+import com.dantonov.wiley.objectscache.ObjectsCache;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Test {@link OffHeapCache} and {@link OffHeapIndex}.<br>
+ * Objects must be stored and returned by the cache, freed chunks must be reused, and the cache
+ * must work as a middle tier of {@link SimpleChacheListHierarchy}.
+ */
+public class OffHeapCacheTest {
+
+    @BeforeTest
+    public void initOffHeapCache() throws UnacceptableCacheBuildParameter {
+        offHeapCache = new OffHeapCache.Builder().setMaxCacheSize(MAX_CACHE_SIZE).setDangerLoad
+                (50).setSlabSize(SLAB_SIZE).build();
+    }
+
+    @Test
+    public void storeObjects() throws AllocationInCacheException, ObjectNotFoundInCache {
+        for (int i = 0; i < 100; i++) {
+            ObjectInCache objectInCache = new ObjectInCache.Builder().setObject("object" + i)
+                    .build();
+            offHeapCache.allocateObject(objectInCache);
+            Assert.assertNull(objectInCache.objectRef(), "Cache must clear object reference");
+            storedObjects.put(objectInCache, "object" + i);
+        }
+        for (Map.Entry<ObjectInCache, String> entry : storedObjects.entrySet()) {
+            Assert.assertTrue(offHeapCache.contains(entry.getKey()), "Stored object must be " +
+                    "contained");
+            Assert.assertEquals(offHeapCache.returnObject(entry.getKey()).objectRef(), entry
+                    .getValue(), "Returned object must be equal to the stored one");
+        }
+        Assert.assertEquals(getRespondingValuesCount(), 2L, "100 small objects must not " +
+                "exceed any limit");
+    }
+
+    @Test(dependsOnMethods = "storeObjects")
+    public void reuseFreedChunks() throws AllocationInCacheException, ObjectNotFoundInCache {
+        for (Map.Entry<ObjectInCache, String> entry : storedObjects.entrySet()) {
+            Assert.assertEquals(offHeapCache.freeObject(entry.getKey()).objectRef(), entry
+                    .getValue(), "Freed object must be equal to the stored one");
+            Assert.assertFalse(offHeapCache.contains(entry.getKey()), "Freed object must not " +
+                    "be contained");
+        }
+        Assert.assertEquals(offHeapCache.getConfigurationValues().stream().filter(value -> value
+                .getWarnLevel() == ConfigurationValue.WARN_LEVEL.CRITICAL).findFirst().get()
+                .presentCurrentState(), "Current occupied off-heap size in bytes is 0", "All " +
+                "chunks must be free");
+        int slabsCount = offHeapCache.getSlabsCount();
+        for (int round = 0; round < 10; round++) {
+            List<ObjectInCache> objects = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                ObjectInCache objectInCache = new ObjectInCache.Builder().setObject("object" + i)
+                        .build();
+                offHeapCache.allocateObject(objectInCache);
+                objects.add(objectInCache);
+            }
+            for (ObjectInCache objectInCache : objects) {
+                offHeapCache.freeObject(objectInCache);
+            }
+        }
+        Assert.assertEquals(offHeapCache.getSlabsCount(), slabsCount, "Freed chunks must be " +
+                "reused instead of allocating new slabs");
+    }
+
+    @Test(expectedExceptions = AllocationInCacheException.class)
+    public void rejectObjectLargerThanSlab() throws AllocationInCacheException {
+        offHeapCache.allocateObject(new ObjectInCache.Builder().setObject(new byte[SLAB_SIZE])
+                .build());
+    }
+
+    @Test(expectedExceptions = ObjectNotFoundInCache.class)
+    public void returnMissingObject() throws ObjectNotFoundInCache, AllocationInCacheException {
+        offHeapCache.returnObject(new ObjectInCache.Builder().build());
+    }
+
+    @Test
+    public void indexObjects() {
+        OffHeapIndex index = new OffHeapIndex(16);
+        Map<UUID, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        for (int i = 0; i < 20_000; i++) {
+            UUID uuid = uuids.get(random.nextInt(uuids.size()));
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(uuid);
+                Assert.assertEquals(index.remove(uuid), removed == null ? OffHeapIndex
+                        .NO_ADDRESS : removed, "Removed address must match");
+            } else {
+                long address = random.nextInt(Integer.MAX_VALUE);
+                Long replaced = expected.put(uuid, address);
+                Assert.assertEquals(index.put(uuid, address), replaced == null ? OffHeapIndex
+                        .NO_ADDRESS : replaced, "Replaced address must match");
+            }
+        }
+        Assert.assertEquals(index.size(), expected.size(), "Index size must match");
+        for (UUID uuid : uuids) {
+            Long address = expected.get(uuid);
+            Assert.assertEquals(index.get(uuid), address == null ? OffHeapIndex.NO_ADDRESS :
+                    address, "Indexed address must match");
+        }
+    }
+
+    @Test
+    public void moveObjectsThroughOffHeapTier() throws UnacceptableCacheBuildParameter,
+            AllocationException, ObjectNotFoundInCache, AllocationInCacheException {
+        Cache inMemoryCache = new InMemoryCache.Builder().setMaxCacheSize(5).setDangerLoad(100)
+                .build();
+        Cache middleCache = new OffHeapCache.Builder().setMaxCacheSize(128 * 10)
+                .setDangerLoad(100).setSlabSize(SLAB_SIZE).build();
+        Cache lastCache = new InMemoryCache.Builder().setMaxCacheSize(1000).build();
+        ObjectsCache objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                ObjectCacheStrategyImpl()).setCacheLevelModel(new SimpleChacheListHierarchy
+                .Builder().addCache(inMemoryCache).addCache(middleCache).addCache(lastCache)
+                .build()).build();
+
+        List<CachedObject> cachedObjects = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            cachedObjects.add(objectsCache.cacheObject(i));
+        }
+        long inMiddleCache = cachedObjects.stream().filter(cachedObject -> middleCache.contains
+                (ObjectInCache.from(cachedObject.getUuid()))).count();
+        Assert.assertEquals(inMiddleCache, 10L, "Off-heap cache must keep 10 serialized " +
+                "Integers in 128 byte chunks");
+        for (int i = 0; i < cachedObjects.size(); i++) {
+            Assert.assertEquals(cachedObjects.get(i).getObject(), i, "Object must be found in " +
+                    "any cache");
+        }
+    }
+
+    private long getRespondingValuesCount() {
+        return offHeapCache.getConfigurationValues().stream().filter
+                (ConfigurationValue::isResponding).count();
+    }
+
+    private static final long MAX_CACHE_SIZE = 1024 * 1024;
+    private static final int SLAB_SIZE = 64 * 1024;
+
+    private OffHeapCache offHeapCache;
+    private final Map<ObjectInCache, String> storedObjects = new HashMap<>();
+}
@@ -0,0 +1,136 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ConfigurationValue;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Test {@link ReallocationScheduler} and {@link ObjectCacheImpl} configured with it
+ */
+public class ReallocationSchedulerTest {
+
+    /**
+     * Many signals sent at once must be served by a few passes
+     */
+    @Test
+    public void coalesceSignals() throws InterruptedException, UnacceptableCacheBuildParameter {
+        AtomicInteger passes = new AtomicInteger();
+        try (ReallocationScheduler scheduler = new ReallocationScheduler.Builder()
+                .setReallocationPass(passes::incrementAndGet)
+                .setCoalescingDelay(50, TimeUnit.MILLISECONDS).build()) {
+            for (int i = 0; i < SIGNALS; i++) {
+                scheduler.signal();
+            }
+            waitFor(() -> passes.get() > 0);
+        }
+        Assert.assertTrue(passes.get() > 0, "At least one pass must be run on signals");
+        Assert.assertTrue(passes.get() < SIGNALS, "Signals must be coalesced");
+    }
+
+    /**
+     * Pass must be run with configured cadence without any signal
+     */
+    @Test
+    public void runPassesWithCadence() throws InterruptedException,
+            UnacceptableCacheBuildParameter {
+        AtomicInteger passes = new AtomicInteger();
+        ReallocationScheduler scheduler = new ReallocationScheduler.Builder()
+                .setReallocationPass(passes::incrementAndGet)
+                .setCadence(10, TimeUnit.MILLISECONDS).build();
+        try {
+            waitFor(() -> passes.get() >= 3);
+        } finally {
+            scheduler.close();
+        }
+        Assert.assertTrue(passes.get() >= 3, "Passes must be run with cadence");
+    }
+
+    /**
+     * Signals received after close must be dropped without an exception
+     */
+    @Test
+    public void dropSignalsAfterClose() throws UnacceptableCacheBuildParameter {
+        AtomicInteger passes = new AtomicInteger();
+        ReallocationScheduler scheduler = new ReallocationScheduler.Builder()
+                .setReallocationPass(passes::incrementAndGet).build();
+        scheduler.close();
+        for (int i = 0; i < SIGNALS; i++) {
+            scheduler.signal();
+        }
+        Assert.assertEquals(passes.get(), 0, "Pass must not be run after close");
+    }
+
+    /**
+     * Objects must be moved to the second cache by the scheduler thread
+     */
+    @Test
+    public void reallocateInBackground() throws UnacceptableCacheBuildParameter,
+            AllocationException, ObjectNotFoundInCache, InterruptedException {
+        Cache cache1 = new InMemoryCache.Builder().setMaxCacheSize(10).setDangerLoad(80).build();
+        Cache cache2 = new InMemoryCache.Builder().setMaxCacheSize(1000).build();
+        List<CachedObject> cachedObjects = new ArrayList<>();
+        try (ObjectCacheImpl objectsCache = new ObjectCacheImpl.Builder()
+                .setCacheMovingStrategy(new ObjectCacheStrategyImpl())
+                .setCacheLevelModel(new SimpleChacheListHierarchy.Builder().addCache(cache1)
+                        .addCache(cache2).build())
+                .setReallocationScheduler(new ReallocationScheduler.Builder()).build()) {
+            for (int i = 0; i < 20; i++) {
+                cachedObjects.add(objectsCache.cacheObject(i));
+            }
+            waitFor(() -> cache1.getConfigurationValues().stream().allMatch
+                    (ConfigurationValue::isResponding));
+            Assert.assertTrue(cache1.getConfigurationValues().stream().allMatch
+                    (ConfigurationValue::isResponding), "Scheduler must move objects out of " +
+                    "the first cache");
+            for (int i = 0; i < cachedObjects.size(); i++) {
+                try {
+                    Assert.assertEquals(cachedObjects.get(i).getObject(), i, "Object must be " +
+                            "found after it has been moved in background");
+                } catch (AllocationInCacheException e) {
+                    Assert.assertNull(e, "AllocationInCacheException is not expected");
+                }
+            }
+        }
+    }
+
+    /**
+     * Negative delays and missing pass must be rejected by the builder
+     */
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void rejectNegativeCoalescingDelay() throws UnacceptableCacheBuildParameter {
+        new ReallocationScheduler.Builder().setCoalescingDelay(-1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void rejectNegativeCadence() throws UnacceptableCacheBuildParameter {
+        new ReallocationScheduler.Builder().setCadence(-1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void rejectMissingPass() throws UnacceptableCacheBuildParameter {
+        new ReallocationScheduler.Builder().build();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws
+            InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static final int SIGNALS = 10000;
+    private static final long WAIT_TIMEOUT_MILLIS = 5000;
+}
@@ -0,0 +1,130 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.SegmentedFileStorage;
+import com.dantonov.wiley.objectscache.impl.storage.exceptions.*;
+import org.testng.Assert;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Test {@link SegmentedFileStorage}.<br>
+ * Stored data must be retrieved, survive reopening of the storage, and compaction must
+ * reclaim space of deleted data.
+ */
+public class SegmentedFileStorageTest {
+
+    @BeforeTest
+    public void prepareDirectory() throws FileSystemBadDirectoryException,
+            UnacceptableCacheBuildParameter {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+        storage = openStorage();
+    }
+
+    @AfterTest
+    public void clearDirectory() {
+        storage.close();
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void storeData() throws FailedToStoreDataInStorage, FailedToRetrieveStorageData,
+            DataNotFoundInStorage {
+        for (int i = 0; i < 100; i++) {
+            UUID uuid = UUID.randomUUID();
+            byte[] data = generateData(i);
+            storage.store(uuid, data);
+            storedData.put(uuid, data);
+        }
+        // replace some data
+        for (UUID uuid : new ArrayList<>(storedData.keySet()).subList(0, 10)) {
+            byte[] data = generateData(500);
+            storage.store(uuid, data);
+            storedData.put(uuid, data);
+        }
+        checkStoredData(storage);
+        Assert.assertTrue(storage.getSegmentsCount() > 1, "Data must be split to segments");
+    }
+
+    @Test(dependsOnMethods = "storeData")
+    public void deleteData() throws DataNotFoundInStorage, FailedToDeleteDataInStorage,
+            FailedToRetrieveStorageData {
+        Iterator<UUID> iterator = storedData.keySet().iterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+            UUID uuid = iterator.next();
+            if (i % 10 != 0) {
+                storage.delete(uuid);
+                iterator.remove();
+                try {
+                    storage.retrieve(uuid);
+                    Assert.fail("Deleted data must not be found");
+                } catch (DataNotFoundInStorage e) {
+                    // expected
+                }
+            }
+        }
+        checkStoredData(storage);
+    }
+
+    @Test(dependsOnMethods = "deleteData")
+    public void compactSegments() throws IOException, FailedToRetrieveStorageData,
+            DataNotFoundInStorage {
+        long occupiedSize = storage.getOccupiedSize();
+        int segmentsCount = storage.getSegmentsCount();
+        storage.compact();
+        Assert.assertTrue(storage.getOccupiedSize() < occupiedSize, "Compaction must reclaim " +
+                "space of deleted data");
+        Assert.assertTrue(storage.getSegmentsCount() < segmentsCount, "Compacted segments " +
+                "must be deleted");
+        checkStoredData(storage);
+    }
+
+    @Test(dependsOnMethods = "compactSegments")
+    public void reopenStorage() throws FileSystemBadDirectoryException,
+            UnacceptableCacheBuildParameter, FailedToRetrieveStorageData, DataNotFoundInStorage,
+            FailedToStoreDataInStorage {
+        long occupiedSize = storage.getOccupiedSize();
+        storage.close();
+        storage = openStorage();
+        Assert.assertEquals(storage.getOccupiedSize(), occupiedSize, "Occupied size must be " +
+                "restored");
+        checkStoredData(storage);
+        UUID deletedUuid = UUID.randomUUID();
+        try {
+            storage.retrieve(deletedUuid);
+            Assert.fail("Unknown data must not be found");
+        } catch (DataNotFoundInStorage e) {
+            // expected
+        }
+    }
+
+    private void checkStoredData(SegmentedFileStorage storage) throws
+            FailedToRetrieveStorageData, DataNotFoundInStorage {
+        for (Map.Entry<UUID, byte[]> entry : storedData.entrySet()) {
+            Assert.assertEquals(storage.retrieve(entry.getKey()), entry.getValue(), "Retrieved " +
+                    "data must be equal to the stored one");
+        }
+    }
+
+    private static SegmentedFileStorage openStorage() throws FileSystemBadDirectoryException,
+            UnacceptableCacheBuildParameter {
+        return new SegmentedFileStorage.Builder().setBaseDirectory(TEST_DIRECTORY)
+                .setSegmentSize(SEGMENT_SIZE).setBackgroundCompaction(false).build();
+    }
+
+    private static byte[] generateData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private SegmentedFileStorage storage;
+    private final Map<UUID, byte[]> storedData = new LinkedHashMap<>();
+
+    private static final long SEGMENT_SIZE = 4096;
+    private static final String TEST_DIRECTORY = "./target/segmented_file_storage";
+}
@@ -0,0 +1,90 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.IdGenerator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Test {@link SequentialIdGenerator}.<br>
+ * Identifiers generated by concurrent threads must be unique, generators must not share
+ * prefixes, and a generator with the same prefix created later must not repeat identifiers.
+ */
+public class SequentialIdGeneratorTest {
+
+    @Test
+    public void generateUniqueIds() throws Exception {
+        IdGenerator idGenerator = new SequentialIdGenerator(NODE_ID);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<UUID>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    List<UUID> ids = new ArrayList<>(IDS_PER_THREAD);
+                    for (int j = 0; j < IDS_PER_THREAD; j++) {
+                        ids.add(idGenerator.nextId());
+                    }
+                    return ids;
+                }));
+            }
+            Set<UUID> ids = new HashSet<>();
+            for (Future<List<UUID>> future : futures) {
+                for (UUID id : future.get(10, TimeUnit.SECONDS)) {
+                    Assert.assertTrue(ids.add(id), "Identifier must be unique: " + id);
+                    Assert.assertEquals(id.version(), 8, "Identifier must be of custom version");
+                    Assert.assertEquals(id.variant(), 2, "Identifier must be of RFC variant");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void useRandomPrefix() {
+        Assert.assertNotEquals(new SequentialIdGenerator().nextId().getMostSignificantBits(),
+                new SequentialIdGenerator().nextId().getMostSignificantBits(), "Generators " +
+                "must have different prefixes");
+    }
+
+    @Test
+    public void continueAfterRestart() throws Exception {
+        IdGenerator idGenerator = new SequentialIdGenerator(NODE_ID);
+        long created = System.currentTimeMillis();
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < IDS_PER_THREAD; i++) {
+            ids.add(idGenerator.nextId());
+        }
+        // restarted generator is created at least a millisecond later
+        while (System.currentTimeMillis() <= created) {
+            Thread.sleep(1);
+        }
+        IdGenerator restartedIdGenerator = new SequentialIdGenerator(NODE_ID);
+        for (int i = 0; i < IDS_PER_THREAD; i++) {
+            UUID id = restartedIdGenerator.nextId();
+            Assert.assertFalse(ids.contains(id), "Identifier must not be repeated after " +
+                    "restart: " + id);
+        }
+    }
+
+    @Test
+    public void cacheObjectsWithGeneratedIds() throws Exception {
+        try (ObjectCacheImpl objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy
+                (new ObjectCacheStrategyImpl()).setCacheLevelModel(new SimpleChacheListHierarchy
+                .Builder().addCache(new InMemoryCache.Builder().build()).build()).setIdGenerator
+                (new SequentialIdGenerator(NODE_ID)).build()) {
+            CachedObject cachedObject = objectsCache.cacheObject("object");
+            Assert.assertEquals(cachedObject.getUuid().getMostSignificantBits() & ~0xF000L,
+                    NODE_ID & ~0xF000L, "Identifier must start with the node prefix");
+            Assert.assertEquals(cachedObject.getObject(), "object", "Object must be found by " +
+                    "generated identifier");
+        }
+    }
+
+    private static final long NODE_ID = 0x1234_5678_9ABC_DEF0L;
+    private static final int IDS_PER_THREAD = 50_000;
+}
@@ -0,0 +1,81 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.impl.codec.BinaryCodec;
+import com.dantonov.wiley.objectscache.impl.codec.Codec;
+import com.dantonov.wiley.objectscache.impl.storage.SerializationUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+/**
+ * Measure heap allocated per serialized object.<br>
+ * Serialization to the reused buffer of the thread must allocate less than serialization to a
+ * new array. Bytes per operation are logged for both ways.
+ */
+public class SerializationAllocationTest {
+
+    @Test
+    public void serializeToReusedBuffer() throws Exception {
+        TestSerializableObject object = new TestSerializableObject(10, "10", true);
+        long newArrayBytes = measureAllocatedBytes(() -> SerializationUtil.serializeObject
+                (object));
+        long reusedBufferBytes = measureAllocatedBytes(() -> SerializationUtil
+                .serializeObjectToBuffer(object));
+        LOGGER.info(String.format("Java serialization: %s bytes per object to new array, %s " +
+                "bytes per object to reused buffer", newArrayBytes, reusedBufferBytes));
+        Assert.assertTrue(reusedBufferBytes < newArrayBytes, "Serialization to reused buffer " +
+                "must allocate less");
+    }
+
+    @Test
+    public void encodeToReusedBuffer() throws Exception {
+        Codec codec = new BinaryCodec.Builder().build();
+        String object = "object to be encoded by binary codec";
+        long newArrayBytes = measureAllocatedBytes(() -> codec.encode(object));
+        long reusedBufferBytes = measureAllocatedBytes(() -> codec.encodeToBuffer(object));
+        LOGGER.info(String.format("Binary codec: %s bytes per object to new array, %s bytes " +
+                "per object to reused buffer", newArrayBytes, reusedBufferBytes));
+        Assert.assertTrue(reusedBufferBytes < newArrayBytes, "Encoding to reused buffer must " +
+                "allocate less");
+        ByteBuffer encoded = codec.encodeToBuffer(object);
+        Assert.assertEquals(codec.decode(encoded.array(), encoded.arrayOffset() + encoded
+                .position(), encoded.remaining()), object, "Object must be decoded from buffer");
+    }
+
+    // bytes allocated by the current thread per one operation
+    private static long measureAllocatedBytes(Operation operation) throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            throw new SkipException("Allocated bytes can not be measured on this JVM");
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)
+                threadBean;
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARM_UP_OPERATIONS; i++) {
+            operation.run();
+        }
+        long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_OPERATIONS; i++) {
+            operation.run();
+        }
+        return (allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore) /
+                MEASURED_OPERATIONS;
+    }
+
+    private interface Operation {
+        Object run() throws IOException;
+    }
+
+    private static final int WARM_UP_OPERATIONS = 10_000;
+    private static final int MEASURED_OPERATIONS = 10_000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerializationAllocationTest
+            .class);
+}
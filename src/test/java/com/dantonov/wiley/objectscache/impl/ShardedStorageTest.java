@@ -0,0 +1,134 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test sharding of {@link FileSystemStorage}.<br>
+ * Files must be placed into shard directories of configured depth, sequential keys must be
+ * spread over shards, and files stored with other sharding levels must be moved on start.
+ */
+public class ShardedStorageTest {
+
+    @BeforeMethod
+    public void prepareDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @AfterMethod
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+    }
+
+    @Test
+    public void storeInShards() throws Exception {
+        SequentialIdGenerator idGenerator = new SequentialIdGenerator();
+        List<UUID> uuids = new ArrayList<>();
+        try (FileSystemStorage storage = openStorage(2)) {
+            for (int i = 0; i < OBJECTS_COUNT; i++) {
+                UUID uuid = idGenerator.nextId();
+                storage.store(uuid, new byte[]{(byte) i});
+                uuids.add(uuid);
+            }
+            Assert.assertEquals(listDataFiles(), filesOfDepth(3), "All files must be stored " +
+                    "two levels deep");
+            long shardsCount;
+            try (Stream<Path> shards = Files.list(Paths.get(TEST_DIRECTORY))) {
+                shardsCount = shards.filter(Files::isDirectory).count();
+            }
+            Assert.assertTrue(shardsCount > 100, "Sequential keys must be spread over shards, " +
+                    "used shards: " + shardsCount);
+
+            // stored data is replaced
+            storage.store(uuids.get(0), new byte[]{1, 2, 3});
+            Assert.assertEquals(storage.getOccupiedSize(), OBJECTS_COUNT * (1L + FileSystemStorage
+                    .HEADER_SIZE) + 2, "Replaced data must be accounted");
+            for (int i = 1; i < OBJECTS_COUNT; i++) {
+                Assert.assertEquals(storage.retrieve(uuids.get(i)), new byte[]{(byte) i},
+                        "Data must be retrieved from shard");
+                storage.delete(uuids.get(i));
+            }
+            Assert.assertEquals(storage.getOccupiedSize(), 3L + FileSystemStorage.HEADER_SIZE,
+                    "Deleted data must not be accounted");
+        }
+    }
+
+    @Test
+    public void moveFilesToShards() throws Exception {
+        List<UUID> uuids = new ArrayList<>();
+        try (FileSystemStorage storage = openStorage(0)) {
+            for (int i = 0; i < OBJECTS_COUNT; i++) {
+                UUID uuid = UUID.randomUUID();
+                storage.store(uuid, new byte[]{(byte) i});
+                uuids.add(uuid);
+            }
+        }
+        checkMovedFiles(2, uuids);
+        checkMovedFiles(1, uuids);
+        checkMovedFiles(0, uuids);
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void rejectTooManyLevels() throws UnacceptableCacheBuildParameter {
+        new FileSystemStorage.Builder().setShardingLevels(5);
+    }
+
+    private static void checkMovedFiles(int shardingLevels, List<UUID> uuids) throws
+            Exception {
+        try (FileSystemStorage storage = openStorage(shardingLevels)) {
+            Assert.assertEquals(storage.getStoredKeys().size(), uuids.size(), "All keys must " +
+                    "be found");
+            Assert.assertEquals(storage.getOccupiedSize(), uuids.size() * (1L +
+                    FileSystemStorage.HEADER_SIZE), "Size of all files must be accounted");
+            for (int i = 0; i < uuids.size(); i++) {
+                Assert.assertEquals(storage.retrieve(uuids.get(i)), new byte[]{(byte) i},
+                        "Data must be retrieved after move");
+            }
+            Assert.assertEquals(listDataFiles(), filesOfDepth(shardingLevels + 1), "Files must " +
+                    "be moved to shards of " + shardingLevels + " levels");
+            try (Stream<Path> paths = Files.walk(Paths.get(TEST_DIRECTORY))) {
+                Assert.assertFalse(paths.skip(1).anyMatch(path -> Files.isDirectory(path) &&
+                        depthOf(path) > shardingLevels), "Unused shards must be deleted");
+            }
+        }
+    }
+
+    private static List<Path> listDataFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(Paths.get(TEST_DIRECTORY))) {
+            return paths.filter(path -> Files.isRegularFile(path) && !path.getFileName()
+                    .toString().startsWith("storage.manifest")).sorted().collect(Collectors
+                    .toList());
+        }
+    }
+
+    private static List<Path> filesOfDepth(int depth) throws IOException {
+        return listDataFiles().stream().filter(path -> depthOf(path) == depth).collect
+                (Collectors.toList());
+    }
+
+    private static int depthOf(Path path) {
+        return Paths.get(TEST_DIRECTORY).relativize(path).getNameCount();
+    }
+
+    private static FileSystemStorage openStorage(int shardingLevels) throws Exception {
+        return new FileSystemStorage.Builder().setBaseDirectory(TEST_DIRECTORY)
+                .setShardingLevels(shardingLevels).build();
+    }
+
+    private static final int OBJECTS_COUNT = 1000;
+    private static final String TEST_DIRECTORY = "./target/sharded_storage";
+}
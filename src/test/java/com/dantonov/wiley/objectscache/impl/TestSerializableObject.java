@@ -18,6 +18,18 @@ public class TestSerializableObject implements Serializable {
         this.booleanValue = booleanValue;
     }
 
+    public int getIntValue() {
+        return intValue;
+    }
+
+    public String getStringValue() {
+        return stringValue;
+    }
+
+    public boolean isBooleanValue() {
+        return booleanValue;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
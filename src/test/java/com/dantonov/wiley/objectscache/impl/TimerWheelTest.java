@@ -0,0 +1,68 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Test {@link TimerWheel}.<br>
+ * Timer must be due at the first advance reaching its deadline, never earlier, on every level
+ * of the wheel and beyond it, and cancelled timer must never be due.
+ */
+public class TimerWheelTest {
+
+    @Test
+    public void expireAtDeadline() {
+        Random random = new Random(42);
+        long start = 1_000_003;
+        TimerWheel<Long> timerWheel = new TimerWheel<>(TICK_MILLIS, start);
+        Map<TimerWheel.Timer<Long>, Long> deadlines = new HashMap<>();
+        Set<TimerWheel.Timer<Long>> cancelledTimers = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            // deadlines up to far beyond the range of the wheel
+            long delay = (long) Math.pow(2, random.nextDouble() * 40);
+            long deadline = start + delay;
+            TimerWheel.Timer<Long> timer = new TimerWheel.Timer<>(deadline);
+            Assert.assertTrue(timerWheel.schedule(timer, deadline), "Future timer must be " +
+                    "scheduled");
+            deadlines.put(timer, deadline);
+            if (i % 10 == 0) {
+                cancelledTimers.add(timer);
+            }
+        }
+        cancelledTimers.forEach(timerWheel::cancel);
+
+        List<TimerWheel.Timer<Long>> dueTimers = new ArrayList<>();
+        long now = start;
+        long maxDeadline = Collections.max(deadlines.values());
+        while (now < maxDeadline + TICK_MILLIS) {
+            // steps grow to get far quickly, with small steps at the beginning
+            now += Math.max(1, (now - start) / 3);
+            dueTimers.clear();
+            timerWheel.advance(now, dueTimers);
+            for (TimerWheel.Timer<Long> timer : dueTimers) {
+                Assert.assertFalse(cancelledTimers.contains(timer), "Cancelled timer must not " +
+                        "be due");
+                Assert.assertTrue(timer.getValue() <= now, "Timer must not be due before its " +
+                        "deadline");
+                Assert.assertNotNull(deadlines.remove(timer), "Timer must be due once");
+            }
+            for (Long deadline : deadlines.values()) {
+                Assert.assertTrue(deadline > now - TICK_MILLIS, "Timer must be due not later " +
+                        "than a tick after its deadline");
+            }
+            deadlines.keySet().removeAll(cancelledTimers);
+        }
+        Assert.assertTrue(deadlines.isEmpty(), "All timers must be due");
+    }
+
+    @Test
+    public void rejectPassedDeadline() {
+        TimerWheel<String> timerWheel = new TimerWheel<>(TICK_MILLIS, 1000);
+        Assert.assertFalse(timerWheel.schedule(new TimerWheel.Timer<>("passed"), 999),
+                "Passed timer must not be scheduled");
+    }
+
+    private static final long TICK_MILLIS = 10;
+}
@@ -0,0 +1,101 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.Cache;
+import com.dantonov.wiley.objectscache.CachedObject;
+import com.dantonov.wiley.objectscache.ObjectsCache;
+import com.dantonov.wiley.objectscache.exceptions.AllocationException;
+import com.dantonov.wiley.objectscache.exceptions.AllocationInCacheException;
+import com.dantonov.wiley.objectscache.exceptions.ObjectNotFoundInCache;
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test {@link TinyLfuObjectCacheStrategy} and {@link FrequencySketch}.<br>
+ * Frequently used objects must survive a scan of new objects in the first cache.
+ */
+public class TinyLfuObjectCacheStrategyTest {
+
+    @Test
+    public void keepFrequentObjectsOnScan() throws UnacceptableCacheBuildParameter,
+            AllocationException, ObjectNotFoundInCache, AllocationInCacheException {
+        Cache cache1 = new InMemoryCache.Builder().setMaxCacheSize(FIRST_CACHE_SIZE)
+                .setDangerLoad(100).build();
+        Cache cache2 = new InMemoryCache.Builder().setMaxCacheSize(1000).build();
+        ObjectsCache objectsCache = new ObjectCacheImpl.Builder().setCacheMovingStrategy(new
+                TinyLfuObjectCacheStrategy.Builder().setExpectedSize(100).build())
+                .setCacheLevelModel(new SimpleChacheListHierarchy.Builder().addCache(cache1)
+                        .addCache(cache2).build()).build();
+
+        List<CachedObject> hotObjects = new ArrayList<>();
+        for (int i = 0; i < FIRST_CACHE_SIZE; i++) {
+            hotObjects.add(objectsCache.cacheObject("hot" + i));
+        }
+        for (int access = 0; access < 5; access++) {
+            for (CachedObject hotObject : hotObjects) {
+                hotObject.getObject();
+            }
+        }
+        List<CachedObject> scannedObjects = new ArrayList<>();
+        for (int i = 0; i < FIRST_CACHE_SIZE * 5; i++) {
+            scannedObjects.add(objectsCache.cacheObject("scan" + i));
+        }
+
+        long hotObjectsInFirstCache = hotObjects.stream().filter(cachedObject -> cache1.contains
+                (ObjectInCache.from(cachedObject.getUuid()))).count();
+        Assert.assertTrue(hotObjectsInFirstCache >= FIRST_CACHE_SIZE - 2, String.format("Most " +
+                "of hot objects must stay in the first cache after scan, but only %s stayed",
+                hotObjectsInFirstCache));
+        for (int i = 0; i < scannedObjects.size(); i++) {
+            Assert.assertEquals(scannedObjects.get(i).getObject(), "scan" + i, "Scanned objects " +
+                    "must be found in any cache");
+        }
+    }
+
+    @Test
+    public void estimateFrequency() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(42);
+        }
+        sketch.increment(7);
+        Assert.assertEquals(sketch.frequency(42), 10, "Frequency of counted item must be " +
+                "estimated exactly when there are no collisions");
+        Assert.assertTrue(sketch.frequency(7) < sketch.frequency(42), "Rare item must be " +
+                "estimated as less frequent");
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(42);
+        }
+        Assert.assertEquals(sketch.frequency(42), 15, "Counter must be saturated at 15");
+    }
+
+    @Test
+    public void ageFrequencies() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 8; i++) {
+            sketch.increment(1);
+        }
+        // 10 * 16 distinct increments reach the sample size and halve all counters
+        for (int i = 100; i < 100 + 10 * 16; i++) {
+            sketch.increment(i);
+        }
+        Assert.assertTrue(sketch.frequency(1) <= 4, "Counters must be halved on aging");
+    }
+
+    @DataProvider(name = "unacceptable percents")
+    public Object[][] generateUnacceptablePercents() {
+        return new Object[][]{{-1}, {101}};
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class, dataProvider =
+            "unacceptable percents")
+    public void configureUnacceptableWindow(int percent) throws UnacceptableCacheBuildParameter {
+        new TinyLfuObjectCacheStrategy.Builder().setWindowPercent(percent).build();
+    }
+
+    private static final int FIRST_CACHE_SIZE = 10;
+}
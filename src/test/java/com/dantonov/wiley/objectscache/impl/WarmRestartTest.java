@@ -0,0 +1,147 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.impl.storage.FileSystemStorage;
+import org.testng.Assert;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Test warm restart of {@link SerializableStorageCache} on {@link FileSystemStorage}.<br>
+ * Objects stored before restart must be found after it, by the manifest written on close or
+ * by the directory scan after a crash, and orphan files must be deleted. Files which are not
+ * written by the storage must be kept.
+ */
+public class WarmRestartTest {
+
+    @BeforeTest
+    public void prepareDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+        FileSystemStorageTest.removeDirectory(SHARED_DIRECTORY);
+    }
+
+    @AfterTest
+    public void clearDirectory() {
+        FileSystemStorageTest.removeDirectory(TEST_DIRECTORY);
+        FileSystemStorageTest.removeDirectory(SHARED_DIRECTORY);
+    }
+
+    @Test
+    public void restoreStoredObjects() throws Exception {
+        List<ObjectInCache> objects = new ArrayList<>();
+        long occupiedSize;
+        try (FileSystemStorage storage = openStorage()) {
+            SerializableStorageCache cache = new SerializableStorageCache.Builder()
+                    .setSerializableStorage(storage).build();
+            for (int i = 0; i < 100; i++) {
+                ObjectInCache objectInCache = new ObjectInCache.Builder().setObject("object" + i)
+                        .build();
+                cache.allocateObject(objectInCache);
+                objects.add(objectInCache);
+            }
+            occupiedSize = storage.getOccupiedSize();
+        }
+        Assert.assertTrue(Files.exists(Paths.get(TEST_DIRECTORY, MANIFEST_FILE_NAME)),
+                "Manifest must be written on close");
+        Path notListedFile = createOldFile(TEST_DIRECTORY, UUID.randomUUID().toString());
+        Path temporaryFile = createOldFile(TEST_DIRECTORY, MANIFEST_FILE_NAME + ".tmp");
+
+        // restart with manifest
+        try (FileSystemStorage storage = openStorage()) {
+            Assert.assertFalse(Files.exists(Paths.get(TEST_DIRECTORY, MANIFEST_FILE_NAME)),
+                    "Manifest must be deleted on start");
+            Assert.assertEquals(storage.getOccupiedSize(), occupiedSize, "Occupied size must " +
+                    "be read from manifest");
+            checkObjects(storage, objects);
+            waitForDeletion(notListedFile);
+            waitForDeletion(temporaryFile);
+        }
+
+        // restart after crash: there is no manifest
+        Files.delete(Paths.get(TEST_DIRECTORY, MANIFEST_FILE_NAME));
+        try (FileSystemStorage storage = openStorage()) {
+            Assert.assertEquals(storage.getOccupiedSize(), occupiedSize, "Occupied size must " +
+                    "be calculated by scan");
+            checkObjects(storage, objects);
+        }
+    }
+
+    @Test
+    public void keepForeignFiles() throws Exception {
+        UUID storedUuid = UUID.randomUUID();
+        try (FileSystemStorage storage = openStorage(SHARED_DIRECTORY)) {
+            storage.store(storedUuid, new byte[]{1, 2, 3});
+        }
+        // crash: the directory is scanned on restart
+        Files.delete(Paths.get(SHARED_DIRECTORY, MANIFEST_FILE_NAME));
+        Path notesFile = createOldFile(SHARED_DIRECTORY, "notes.txt");
+        Path lockFile = createOldFile(SHARED_DIRECTORY, "storage.lock.tmp");
+        Files.createDirectories(Paths.get(SHARED_DIRECTORY, "docs"));
+        UUID foreignUuid = UUID.randomUUID();
+        Path foreignKeyFile = createOldFile(SHARED_DIRECTORY, "docs/" + foreignUuid);
+        Path orphanFile = createOldFile(SHARED_DIRECTORY, UUID.randomUUID() + ".1.tmp");
+
+        try (FileSystemStorage storage = openStorage(SHARED_DIRECTORY)) {
+            waitForDeletion(orphanFile);
+            Assert.assertEquals(storage.getStoredKeys(), Collections.singleton(storedUuid),
+                    "Only keys stored by the storage must be restored");
+            Assert.assertTrue(Files.exists(notesFile), "Foreign file must be kept");
+            Assert.assertTrue(Files.exists(lockFile), "Foreign temporary file must be kept");
+            Assert.assertTrue(Files.exists(foreignKeyFile), "File of other directory must not " +
+                    "be moved");
+        }
+    }
+
+    private static void checkObjects(FileSystemStorage storage, List<ObjectInCache> objects)
+            throws Exception {
+        SerializableStorageCache cache = new SerializableStorageCache.Builder()
+                .setSerializableStorage(storage).build();
+        Assert.assertEquals(storage.getStoredKeys().size(), objects.size(), "All keys must be " +
+                "restored");
+        for (int i = 0; i < objects.size(); i++) {
+            ObjectInCache objectInCache = ObjectInCache.from(objects.get(i).getUuid());
+            Assert.assertTrue(cache.contains(objectInCache), "Restored object must be " +
+                    "contained");
+            Assert.assertEquals(cache.returnObject(objectInCache).objectRef(), "object" + i,
+                    "Restored object must be returned");
+        }
+    }
+
+    private static Path createOldFile(String directory, String fileName) throws Exception {
+        Path path = Paths.get(directory, fileName);
+        Files.write(path, new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() -
+                60_000));
+        return path;
+    }
+
+    private static void waitForDeletion(Path path) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (Files.exists(path) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(Files.exists(path), "Orphan file must be deleted: " + path);
+    }
+
+    private static FileSystemStorage openStorage() throws Exception {
+        return openStorage(TEST_DIRECTORY);
+    }
+
+    private static FileSystemStorage openStorage(String directory) throws Exception {
+        return new FileSystemStorage.Builder().setBaseDirectory(directory).setOrphansCleanup
+                (true).build();
+    }
+
+    private static final String MANIFEST_FILE_NAME = "storage.manifest";
+    private static final String TEST_DIRECTORY = "./target/warm_restart";
+    private static final String SHARED_DIRECTORY = "./target/warm_restart_shared";
+}
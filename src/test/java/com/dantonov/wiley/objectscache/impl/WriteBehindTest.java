@@ -0,0 +1,177 @@
+package com.dantonov.wiley.objectscache.impl;
+
+import com.dantonov.wiley.objectscache.exceptions.UnacceptableCacheBuildParameter;
+import com.dantonov.wiley.objectscache.impl.storage.SerializableStorage;
+import com.dantonov.wiley.objectscache.impl.storage.exceptions.DataNotFoundInStorage;
+import com.dantonov.wiley.objectscache.impl.storage.exceptions.FailedToStoreDataInStorage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Test write-behind mode of {@link SerializableStorageCache}.<br>
+ * Staged objects must be served while the storage is blocked, allocation must wait when the
+ * staging buffer is full, and all objects must be written after the storage is released.
+ * Objects failed to be written must be written again once the storage recovers.
+ */
+public class WriteBehindTest {
+
+    @Test
+    public void serveStagedObjects() throws Exception {
+        BlockingStorage storage = new BlockingStorage();
+        try (SerializableStorageCache cache = new SerializableStorageCache.Builder()
+                .setSerializableStorage(storage).setWriteBehind(MAX_STAGED_SIZE, 4).build()) {
+            List<ObjectInCache> objects = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                ObjectInCache objectInCache = new ObjectInCache.Builder().setObject(i).build();
+                cache.allocateObject(objectInCache);
+                objects.add(objectInCache);
+            }
+            for (int i = 0; i < objects.size(); i++) {
+                Assert.assertTrue(cache.contains(objects.get(i)), "Staged object must be " +
+                        "contained");
+                Assert.assertEquals(cache.returnObject(objects.get(i)).objectRef(), i, "Staged " +
+                        "object must be returned while storage is blocked");
+            }
+            Assert.assertEquals(cache.freeObject(objects.get(9)).objectRef(), 9, "Staged " +
+                    "object must be freed while storage is blocked");
+            Assert.assertTrue(cache.getOccupiedSize() > 0, "Staged bytes must be accounted");
+
+            storage.release();
+            cache.flush();
+            Assert.assertEquals(storage.data.size(), 9, "Not freed objects must be written");
+            for (int i = 0; i < 9; i++) {
+                Assert.assertEquals(cache.freeObject(objects.get(i)).objectRef(), i, "Written " +
+                        "object must be read from storage");
+            }
+            Assert.assertTrue(storage.data.isEmpty(), "Freed objects must be deleted");
+            Assert.assertEquals(cache.getOccupiedSize(), 0L, "Nothing must be occupied");
+        }
+    }
+
+    @Test
+    public void applyBackpressure() throws Exception {
+        BlockingStorage storage = new BlockingStorage();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (SerializableStorageCache cache = new SerializableStorageCache.Builder()
+                .setSerializableStorage(storage).setWriteBehind(MAX_STAGED_SIZE, 4).build()) {
+            Future<?> allocation = executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    cache.allocateObject(new ObjectInCache.Builder().setObject(i).build());
+                }
+                return null;
+            });
+            try {
+                allocation.get(200, TimeUnit.MILLISECONDS);
+                Assert.fail("Allocation must wait while staging buffer is full");
+            } catch (TimeoutException e) {
+                // expected
+            }
+            Assert.assertTrue(cache.getOccupiedSize() <= MAX_STAGED_SIZE, "Staged size must " +
+                    "not exceed the limit");
+            storage.release();
+            allocation.get(10, TimeUnit.SECONDS);
+            cache.flush();
+            Assert.assertEquals(storage.data.size(), 100, "All objects must be written");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void retryFailedWrites() throws Exception {
+        BlockingStorage storage = new BlockingStorage();
+        storage.release();
+        storage.failing = true;
+        try (SerializableStorageCache cache = new SerializableStorageCache.Builder()
+                .setSerializableStorage(storage).setWriteBehind(MAX_STAGED_SIZE, 4).build()) {
+            List<ObjectInCache> objects = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                ObjectInCache objectInCache = new ObjectInCache.Builder().setObject(i).build();
+                cache.allocateObject(objectInCache);
+                objects.add(objectInCache);
+            }
+            try {
+                cache.flush();
+                Assert.fail("Flush must report failed writes");
+            } catch (FailedToStoreDataInStorage e) {
+                // expected
+            }
+            Assert.assertTrue(storage.data.isEmpty(), "Nothing must be written");
+            Assert.assertEquals(cache.returnObject(objects.get(0)).objectRef(), 0, "Not " +
+                    "written object must stay staged");
+
+            storage.failing = false;
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (true) {
+                try {
+                    cache.flush();
+                    break;
+                } catch (FailedToStoreDataInStorage e) {
+                    // the failed batch is retried after a delay
+                    Assert.assertTrue(System.currentTimeMillis() < deadline, "Failed writes " +
+                            "must be retried");
+                    Thread.sleep(10);
+                }
+            }
+            Assert.assertEquals(storage.data.size(), 6, "Failed objects must be written");
+            Assert.assertEquals(cache.getOccupiedSize(), storage.getOccupiedSize(), "Written " +
+                    "objects must not stay in staged size");
+        }
+    }
+
+    @Test(expectedExceptions = UnacceptableCacheBuildParameter.class)
+    public void rejectZeroStagedSize() throws UnacceptableCacheBuildParameter {
+        new SerializableStorageCache.Builder().setWriteBehind(0, 4);
+    }
+
+    // storage which blocks writes until it is released, and fails them while it is failing
+    private static class BlockingStorage implements SerializableStorage {
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void store(UUID uuid, byte[] context) throws FailedToStoreDataInStorage {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new FailedToStoreDataInStorage(uuid);
+            }
+            data.put(uuid, context);
+        }
+
+        @Override
+        public byte[] retrieve(UUID uuid) throws DataNotFoundInStorage {
+            byte[] bytes = data.get(uuid);
+            if (bytes == null) {
+                throw new DataNotFoundInStorage(uuid);
+            }
+            return bytes;
+        }
+
+        @Override
+        public void delete(UUID uuid) throws DataNotFoundInStorage {
+            if (data.remove(uuid) == null) {
+                throw new DataNotFoundInStorage(uuid);
+            }
+        }
+
+        @Override
+        public long getOccupiedSize() {
+            return data.values().stream().mapToLong(bytes -> bytes.length).sum();
+        }
+
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final Map<UUID, byte[]> data = new ConcurrentHashMap<>();
+        private volatile boolean failing;
+    }
+
+    private static final long MAX_STAGED_SIZE = 1024;
+}